@@ -0,0 +1,129 @@
+package shop.zailushang.bench;
+
+import shop.zailushang.entity.Chapter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 基准数据生成器：按站点真实格式构造 明文章节、密文、章节列表、页面
+ * 加密算法为 decode.js 的逆运算：UTF-8 → base64 → 字母 ROT13（解密中的字母轮转恰为 ROT13，互逆）
+ */
+public final class BenchData {
+    // 常用汉字样本，全部为 3 字节 UTF-8，与真实章节一致
+    private static final String HANZI = "天地玄黄宇宙洪荒日月盈昃辰宿列张寒来暑往秋收冬藏闰余成岁律吕调阳云腾致雨露结为霜金生丽水玉出昆冈剑号巨阙珠称夜光果珍李柰菜重芥姜海咸河淡鳞潜羽翔龙师火帝鸟官人皇萧炎药老斗气大陆";
+    // 标点与全角空格
+    private static final String PUNCTUATION = "，。！？“”：；";
+    private static final char INDENT = '　';
+
+    private BenchData() {
+    }
+
+    // 生成约 chars 个字符的章节明文，段落以 <br/> 分隔，夹杂空白行与行首缩进（与站点返回的未排版内容一致）
+    public static String plaintext(int chars, long seed) {
+        var random = new SplittableRandom(seed);
+        var sb = new StringBuilder(chars + chars / 8);
+        while (sb.length() < chars) {
+            sb.append(INDENT).append(INDENT);
+            var paragraph = random.nextInt(40, 160);
+            for (int i = 0; i < paragraph; i++) {
+                sb.append(random.nextInt(12) == 0
+                        ? PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length()))
+                        : HANZI.charAt(random.nextInt(HANZI.length())));
+            }
+            sb.append("<br/>");
+            if (random.nextInt(4) == 0) sb.append("  <br/>");// 空白行
+        }
+        return sb.toString();
+    }
+
+    // 加密：decode.js 的逆运算
+    public static String encrypt(String plaintext) {
+        var base64 = Base64.getEncoder().encodeToString(plaintext.getBytes(StandardCharsets.UTF_8));
+        var sb = new StringBuilder(base64.length());
+        for (int i = 0; i < base64.length(); i++) {
+            var c = base64.charAt(i);
+            if (c >= 'A' && c <= 'Z') sb.append((char) ('A' + (c - 'A' + 13) % 26));
+            else if (c >= 'a' && c <= 'z') sb.append((char) ('a' + (c - 'a' + 13) % 26));
+            else sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    // 章节内容接口的响应体：{"state":"200","message":"success","ChapterContent":"..."}
+    public static String contentJson(String ciphertext) {
+        return """
+                {"state":"200","message":"success","ChapterContent":"%s"}""".formatted(ciphertext);
+    }
+
+    // 章节列表 JSON：{bookName, chapterList:[{volumeList:[{chapterId,chapterName,chapterOrdid,contUrlSuffix}]}]}，每卷 100 章
+    public static String chapterListJson(String bookName, int chapters) {
+        var sb = new StringBuilder(chapters * 160);
+        sb.append("{\"bookId\":\"53258\",\"bookName\":\"").append(bookName).append("\",\"chapterList\":[");
+        for (int volume = 0; volume * 100 < chapters; volume++) {
+            if (volume > 0) sb.append(',');
+            sb.append("{\"volumeId\":").append(volume + 1).append(",\"volumeName\":\"第").append(volume + 1).append("卷\",\"volumeList\":[");
+            var start = volume * 100 + 1;
+            var end = Math.min(chapters, start + 99);
+            for (int ordid = start; ordid <= end; ordid++) {
+                if (ordid > start) sb.append(',');
+                sb.append("{\"chapterId\":\"").append(1000000 + ordid)
+                        .append("\",\"chapterName\":\"第").append(ordid).append("章 萧炎\"")
+                        .append(",\"chapterOrdid\":").append(ordid)
+                        .append(",\"isFreeRead\":true,\"shortContUrlSuffix\":\"").append(ordid)
+                        .append("\",\"contUrlSuffix\":\"?bookId=53258&chapterId=").append(1000000 + ordid)
+                        .append("&ut=1700000000&num=1&ver=1&aut=1700000000&sign=").append(Integer.toHexString(ordid * 7919)).append("\"}");
+            }
+            sb.append("]}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    // 章节列表页面：数据位于 /html/body/i[5]
+    public static String chapterListPage(String bookName, int chapters) {
+        return chapterListPage0(bookName, chapterListJson(bookName, chapters));
+    }
+
+    // 章节列表页面：章节由调用方给出（单卷），请求地址后缀原样写入，供替身服务区分书籍与章节
+    public static String chapterListPage(String bookName, List<Chapter.Chapter4Read> chapter4Reads) {
+        var volumeList = chapter4Reads.stream()
+                .map(chapter4Read -> "{\"chapterName\":\"%s\",\"chapterOrdid\":%d,\"isFreeRead\":true,\"contUrlSuffix\":\"%s\"}"
+                        .formatted(chapter4Read.chapterName(), chapter4Read.chapterOrdid(), chapter4Read.contUrlSuffix()))
+                .collect(Collectors.joining(","));
+        return chapterListPage0(bookName, "{\"bookId\":\"53258\",\"bookName\":\"%s\",\"chapterList\":[{\"volumeId\":1,\"volumeName\":\"第1卷\",\"volumeList\":[%s]}]}".formatted(bookName, volumeList));
+    }
+
+    private static String chapterListPage0(String bookName, String json) {
+        return """
+                <!DOCTYPE html><html><head><title>%s</title></head><body>
+                <i>0</i><i>1</i><i>2</i><i>3</i><i class="page-data">%s</i><i>5</i>
+                </body></html>""".formatted(bookName, json);
+    }
+
+    // 搜索页面：bid 位于 /html/body/div[1]/div[3]/div/div[4]/div/span[2]@data-bid
+    public static String searchPage(String bid) {
+        var noise = IntStream.range(0, 40)
+                .mapToObj(i -> "<li class=\"item\"><a href=\"/book/%d.html\">推荐书籍%d</a><span>%d万字</span></li>".formatted(i, i, i * 13))
+                .reduce("", String::concat);
+        return """
+                <!DOCTYPE html><html><head><title>search</title><script>var x = 1;</script></head><body>
+                <div class="page"><div class="header"><ul>%s</ul></div><div class="nav"></div>
+                <div class="content"><div class="result">
+                  <div class="cover"></div><div class="title"></div><div class="desc"></div>
+                  <div class="ops"><div class="btns"><span class="btn read">阅读</span><span class="btn js-addShelf disable" data-bid="%s" data-clog="shelf-shelf$$bid=%s">+书架</span></div></div>
+                </div></div></div>
+                <div class="footer"><ul>%s</ul></div>
+                </body></html>""".formatted(noise, bid, bid, noise);
+    }
+
+    // 构造 N 条 Chapter4Read
+    public static List<Chapter.Chapter4Read> chapter4Reads(String bookName, int chapters) {
+        return IntStream.rangeClosed(1, chapters)
+                .mapToObj(ordid -> new Chapter.Chapter4Read(bookName, "第%d章".formatted(ordid), ordid, "?chapterId=%d".formatted(ordid)))
+                .toList();
+    }
+}
@@ -0,0 +1,22 @@
+package shop.zailushang.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准入口：默认附加 gc 分析器，输出 吞吐量 + 分配速率（gc.alloc.rate / gc.alloc.rate.norm）
+ * 用法：java -jar target/benchmarks.jar [JMH 参数，如 Decoder -p chars=3000]
+ */
+public class BenchRunner {
+
+    public static void main(String[] args) throws Exception {
+        var commandLine = new CommandLineOptions(args);
+        var options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,25 @@
+package shop.zailushang.bench;
+
+import shop.zailushang.util.ScopedExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 基准辅助：组件内部依赖 ScopedExecutors.KEY（书名）构建线程池，调用前须先绑定作用域变量
+ */
+public final class BenchSupport {
+
+    private BenchSupport() {
+    }
+
+    // 在书名作用域内执行并等待异步组件完成
+    public static <R> R join(String bookName, Supplier<CompletableFuture<R>> supplier) {
+        return ScopedValue.where(ScopedExecutor.ScopedExecutors.KEY, bookName).call(() -> supplier.get().join());
+    }
+
+    // 在书名作用域内执行同步逻辑
+    public static <R> R call(String bookName, Supplier<R> supplier) {
+        return ScopedValue.where(ScopedExecutor.ScopedExecutors.KEY, bookName).call(supplier::get);
+    }
+}
@@ -0,0 +1,45 @@
+package shop.zailushang.bench;
+
+import org.openjdk.jmh.annotations.*;
+import shop.zailushang.entity.Content;
+import shop.zailushang.util.CheckedExceptionFucker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 章节内容响应体：String 路径（ofString 解码 + Jackson 解析 String）与 字节路径（Jackson 直接解析 UTF-8 字节）的对比
+ * 关注 gc.alloc.rate.norm（每章分配字节数）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BodyPathBenchmark {
+
+    // 明文字数：短章 / 常规 / 长章
+    @Param({"1000", "3000", "10000"})
+    public int chars;
+
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        body = BenchData.contentJson(BenchData.encrypt(BenchData.plaintext(chars, 42L))).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 旧路径：响应体先解码为 String，再由 Jackson 解析
+    @Benchmark
+    public String stringPath() {
+        var jsonStr = new String(body, StandardCharsets.UTF_8);
+        return CheckedExceptionFucker.readValue(jsonStr, Content.class).ChapterContent();
+    }
+
+    // 新路径：Jackson 直接解析字节
+    @Benchmark
+    public String bytePath() {
+        return CheckedExceptionFucker.readValue(body, Content.class).ChapterContent();
+    }
+}
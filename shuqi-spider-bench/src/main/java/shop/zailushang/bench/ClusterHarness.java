@@ -0,0 +1,228 @@
+package shop.zailushang.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import shop.zailushang.component.Formatter;
+import shop.zailushang.entity.Chapter;
+import shop.zailushang.flow.FlowEngine;
+import shop.zailushang.util.Assert;
+import shop.zailushang.util.BookCache;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 分布式模式联调：本进程充当搜索页、章节列表页与章节内容接口的替身服务，另起一个协调者与若干工作节点子进程（见 {@link ClusterNode}）
+ * 协调者经 Coordinator.submit(书名) 自替身服务获取 bid 与章节列表，与正常运行时的入口一致
+ * 下载过程中强制终止一个工作节点，其租约过期后由其余节点接手；结束后校验每本书的合并结果与逐章内容完全一致、零散章节已清理，不一致时以非零状态退出（见基准模块的 cluster profile）
+ * 用法：java -cp target/benchmarks.jar shop.zailushang.bench.ClusterHarness [工作节点数] [书籍数] [每本章节数]
+ */
+public class ClusterHarness {
+    // 替身服务单章最大延时（毫秒）
+    private static final long MAX_DELAY_MILLIS = 80;
+    // 搜索关键字末尾的书籍序号
+    private static final Pattern KEYWORD = Pattern.compile("keyword=[^&]*?(\\d+)(?:&|$)");
+    // 子进程的流控、租约配置：租约较短，便于观察失联节点的租约被收回
+    private static final List<String> NODE_PROPERTIES = List.of(
+            "-Dshuqi.cache=false",
+            "-Dshuqi.rate.max=20",
+            "-Dshuqi.cluster.lease.ttl=3",
+            "-Dshuqi.cluster.lease.size=10");
+
+    public static void main(String[] args) throws Exception {
+        var workers = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        var books = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        var chapters = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        var workDir = Files.createTempDirectory("shuqi-cluster");
+        var served = new AtomicInteger();
+        // 书籍序号:章节序号 → 请求次数
+        var requests = new ConcurrentHashMap<String, AtomicInteger>();
+        var standIn = standIn(served, requests, chapters);
+        var origin = "http://127.0.0.1:%d/".formatted(standIn.getAddress().getPort());
+        var processes = new ArrayList<Process>();
+        try {
+            // 协调者：输出 READY 端口号 后开始接受工作节点
+            var coordinatorOutput = new CopyOnWriteArrayList<String>();
+            var port = new AtomicReference<String>();
+            var ready = new CountDownLatch(1);
+            var coordinator = start(workDir, "coordinator", List.of("-Dshuqi.site.origin=" + origin, ClusterNode.class.getName(), "coordinator", String.valueOf(books)), line -> {
+                coordinatorOutput.add(line);
+                if (line.startsWith("READY ")) {
+                    port.set(line.substring(6));
+                    ready.countDown();
+                }
+            });
+            processes.add(coordinator);
+            if (!ready.await(60, TimeUnit.SECONDS)) throw new IllegalStateException("coordinator not ready:\n" + String.join("\n", coordinatorOutput));
+            var coordinatorUri = "http://127.0.0.1:%s/".formatted(port.get());
+            // 未持有租约的章节提交须被拒收（租约号自 1 起）
+            var stray = strayChapter(coordinatorUri);
+            for (int i = 1; i <= workers; i++) {
+                var command = new ArrayList<>(List.of("-Dshuqi.content.origin=" + origin));
+                command.addAll(List.of(ClusterNode.class.getName(), "worker", coordinatorUri, "worker-" + i));
+                processes.add(start(workDir, "worker-" + i, command, _ -> {
+                }));
+            }
+            // 约四分之一的章节下载后强制终止第一个工作节点
+            var total = books * (FlowEngine.IS_TEST ? Math.min(20, chapters) : chapters);
+            var start = System.nanoTime();
+            while (served.get() < total / 4 && coordinator.isAlive()) Thread.sleep(10);
+            if (workers > 1) {
+                processes.get(1).destroyForcibly().waitFor();
+                System.out.printf("killed worker-1 after %d requests%n", served.get());
+            }
+            if (!coordinator.waitFor(120, TimeUnit.SECONDS)) throw new IllegalStateException("coordinator timed out:\n" + String.join("\n", coordinatorOutput));
+            var elapsed = (System.nanoTime() - start) / 1_000_000;
+            for (var process : processes) process.waitFor(30, TimeUnit.SECONDS);
+            coordinatorOutput.stream().filter(line -> line.startsWith("STATS")).forEach(System.out::println);
+            var refetched = requests.values().stream().filter(count -> count.get() > 1).count();
+            var ok = stray == 410 && coordinator.exitValue() == 0 && IntStream.rangeClosed(1, books).allMatch(book -> verify(workDir, book, chapters));
+            System.out.printf("workers => %d, books => %d, chapters => %d, requests => %d, refetched => %d, stray => %d, elapsed => %d ms, verify => %s%n",
+                    workers, books, total, served.get(), refetched, stray, elapsed, ok ? "OK" : "FAILED");
+            if (!ok) System.out.println(String.join("\n", coordinatorOutput));
+            System.exit(ok ? 0 : 1);
+        } finally {
+            processes.forEach(Process::destroyForcibly);
+            standIn.stop(0);
+        }
+    }
+
+    // 书名
+    static String bookName(int book) {
+        return "分布式" + book;
+    }
+
+    // 第 book 本书的章节列表，请求地址后缀中带书籍序号，供替身服务区分
+    static List<Chapter.Chapter4Read> chapter4Reads(int book, int chapters) {
+        return IntStream.rangeClosed(1, chapters)
+                .mapToObj(ordid -> new Chapter.Chapter4Read(bookName(book), "第%d章".formatted(ordid), ordid, "?book=%d&chapterId=%d".formatted(book, ordid)))
+                .toList();
+    }
+
+    // 未排版的章节明文（确定性生成，供替身服务与校验共用）
+    static String plaintext(int book, int ordid) {
+        return BenchData.plaintext(2000, book * 100_000L + ordid);
+    }
+
+    /*
+     * 替身服务：按章节内容接口的格式返回加密后的章节，每次请求随机延时
+     */
+    static HttpServer standIn(AtomicInteger served, Map<String, AtomicInteger> requests) throws IOException {
+        return standIn(served, requests, 0);
+    }
+
+    /*
+     * 替身服务：chapters 大于 0 时另按站点格式提供搜索页（bid 即书籍序号）与每本 chapters 章的章节列表页
+     */
+    static HttpServer standIn(AtomicInteger served, Map<String, AtomicInteger> requests, int chapters) throws IOException {
+        var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        if (chapters > 0) {
+            // 书名中的中文未必按 UTF-8 编码送达，取关键字末尾的书籍序号
+            server.createContext("/search", exchange -> page(exchange, () -> {
+                var matcher = KEYWORD.matcher(exchange.getRequestURI().getRawQuery());
+                Assert.isTrue(matcher, Matcher::find, () -> new IllegalArgumentException("unknown keyword: " + exchange.getRequestURI()));
+                return BenchData.searchPage(matcher.group(1));
+            }));
+            server.createContext("/reader", exchange -> page(exchange, () -> {
+                var book = Integer.parseInt(exchange.getRequestURI().getRawQuery().replaceFirst("^bid=", ""));
+                return BenchData.chapterListPage(bookName(book), chapter4Reads(book, chapters));
+            }));
+        }
+        server.createContext("/pcapi/chapter/contentfree/", exchange -> {
+            try (exchange) {
+                var params = Map.<String, String>of();
+                var query = exchange.getRequestURI().getRawQuery();
+                if (query != null) params = Arrays.stream(query.split("&"))
+                        .map(pair -> pair.split("=", 2))
+                        .collect(Collectors.toMap(pair -> pair[0], pair -> pair[1]));
+                var book = Integer.parseInt(params.get("book"));
+                var ordid = Integer.parseInt(params.get("chapterId"));
+                Thread.sleep(ThreadLocalRandom.current().nextLong(MAX_DELAY_MILLIS + 1));
+                var body = BenchData.contentJson(BenchData.encrypt(plaintext(book, ordid))).getBytes(StandardCharsets.UTF_8);
+                requests.computeIfAbsent(book + ":" + ordid, _ -> new AtomicInteger()).incrementAndGet();
+                served.incrementAndGet();
+                exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    // 以不存在的租约提交一章，返回状态码
+    private static int strayChapter(String coordinatorUri) throws IOException, InterruptedException {
+        try (var client = HttpClient.newHttpClient()) {
+            var request = HttpRequest.newBuilder(URI.create(coordinatorUri + "chapter?lease=0&worker=stray&ordid=1"))
+                    .POST(HttpRequest.BodyPublishers.ofString("stray"))
+                    .build();
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        }
+    }
+
+    // 以 UTF-8 写回页面
+    private static void page(HttpExchange exchange, Supplier<String> html) throws IOException {
+        try (exchange) {
+            var body = html.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html;charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    // 于工作目录中启动子进程，逐行转交其输出
+    private static Process start(Path workDir, String name, List<String> args, Consumer<String> onLine) throws IOException {
+        var command = new ArrayList<>(List.of(ProcessHandle.current().info().command().orElse("java"), "-cp", System.getProperty("java.class.path")));
+        command.addAll(NODE_PROPERTIES);
+        command.addAll(args);
+        var process = new ProcessBuilder(command)
+                .directory(workDir.toFile())
+                .redirectErrorStream(true)
+                .start();
+        Thread.ofVirtual().name(name).start(() -> process.inputReader(StandardCharsets.UTF_8).lines().forEach(onLine));
+        return process;
+    }
+
+    // 校验合并结果：与逐章排版后的内容拼接一致，零散章节文件已删除
+    private static boolean verify(Path workDir, int book, int chapters) {
+        try {
+            var bookName = bookName(book);
+            var expected = chapter4Reads(book, FlowEngine.IS_TEST ? Math.min(20, chapters) : chapters).stream()
+                    .map(chapter4Read -> new String(Formatter.format0(chapter4Read.chapterName(), plaintext(book, chapter4Read.chapterOrdid())), StandardCharsets.UTF_8))
+                    .collect(Collectors.joining());
+            var actual = Files.readString(workDir.resolve(BookCache.getTargetFilePath(bookName)), StandardCharsets.UTF_8);
+            var cleaned = Files.notExists(workDir.resolve(BookCache.getFilePath(bookName, 1)));
+            return expected.equals(actual) && cleaned;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
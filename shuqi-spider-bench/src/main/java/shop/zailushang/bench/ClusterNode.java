@@ -0,0 +1,37 @@
+package shop.zailushang.bench;
+
+import shop.zailushang.flow.Coordinator;
+import shop.zailushang.flow.Worker;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+/**
+ * 分布式模式联调子进程，由 {@link ClusterHarness} 启动
+ * 用法：ClusterNode coordinator 书籍数 | ClusterNode worker 协调者地址 节点标识
+ */
+public class ClusterNode {
+
+    public static void main(String[] args) {
+        switch (args[0]) {
+            case "coordinator" -> coordinator(Integer.parseInt(args[1]));
+            case "worker" -> new Worker(URI.create(args[1]), args[2]).run();
+            default -> throw new IllegalArgumentException("unknown role: " + args[0]);
+        }
+        System.exit(0);
+    }
+
+    // 按书名提交，bid 与章节列表取自替身服务（-Dshuqi.site.origin），全部书籍合并完成后关闭，工作节点随之退出
+    private static void coordinator(int books) {
+        try (var coordinator = new Coordinator(0)) {
+            // 通知测试进程：启动完成，输出监听端口
+            System.out.println("READY " + coordinator.port());
+            var futures = IntStream.rangeClosed(1, books)
+                    .mapToObj(book -> coordinator.submit(ClusterHarness.bookName(book)))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(futures).join();
+            System.out.println("STATS " + coordinator.stats());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package shop.zailushang.bench;
+
+import org.openjdk.jmh.annotations.*;
+import shop.zailushang.component.Decoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解密：本地实现 vs 原始本地实现（基线） vs js 引擎池（首次使用 ContextPool 时的初始化开销计入 Setup，不计入测量）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecoderBenchmark {
+
+    // 明文字符数：短章 / 常规章 / 长章
+    @Param({"1000", "3000", "10000"})
+    public int chars;
+
+    private String ciphertext;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ciphertext = BenchData.encrypt(BenchData.plaintext(chars, 42L));
+        // 预热 js 引擎池
+        Decoder.withJsDecode(ciphertext);
+    }
+
+    @Benchmark
+    public String nativeDecode() {
+        return Decoder.withNativeDecode(ciphertext);
+    }
+
+    @Benchmark
+    public String legacyNativeDecode() {
+        return LegacyDecoder.decode(ciphertext);
+    }
+
+    @Benchmark
+    public String jsDecode() {
+        return Decoder.withJsDecode(ciphertext);
+    }
+}
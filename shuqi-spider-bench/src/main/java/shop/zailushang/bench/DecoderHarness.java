@@ -0,0 +1,118 @@
+package shop.zailushang.bench;
+
+import shop.zailushang.component.Decoder;
+import shop.zailushang.util.NativeDecoder;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 解密一致性测试：随机生成明文（1、2、3 字节 UTF-8 混排，长度覆盖 base64 末尾分组的各种情形），加密后夹杂换行、空白等非字母表字符
+ * 以 decode.js（js 引擎池）与原始本地实现（LegacyDecoder）为准，逐一比较 NativeDecoder 的各个重载：
+ * 1. decode(CharSequence) 返回的字符串
+ * 2. decode(CharSequence, char[], int)：随机偏移、恰好容纳时结果与返回值一致且偏移之前不被改写，少一个字符时抛出 IndexOutOfBoundsException
+ * 3. decode(CharSequence, CharBuffer)：带偏移的堆缓冲区与直接缓冲区，恰好容纳时结果一致，少一个字符时抛出 BufferOverflowException
+ * 4. maxDecodedLength 不小于实际解密长度
+ * 任一不一致时以非零状态退出
+ * 用法：java -cp target/benchmarks.jar shop.zailushang.bench.DecoderHarness [用例数] [随机种子]，或 mvn -f shuqi-spider-bench/pom.xml verify -Pdecoder
+ */
+public class DecoderHarness {
+    // 明文字符：1 字节、2 字节、3 字节 UTF-8
+    private static final String[] CHARS = {"a", "Z", "0", " ", "<br/>", "\n", "é", "©", "ü", "天", "萧", "炎", "，", "　", "“"};
+    // 密文中夹杂的非字母表字符，解密时丢弃
+    private static final String[] NOISE = {"\n", "\r\n", " ", "\t", "\\", "-", "_", "."};
+    // 偏移之前的哨兵字符
+    private static final char SENTINEL = '￿';
+
+    public static void main(String[] args) {
+        var cases = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        var seed = args.length > 1 ? Long.parseLong(args[1]) : 20250101L;
+        var random = new SplittableRandom(seed);
+        var mismatches = new ArrayList<String>();
+        var ciphertexts = new ArrayList<String>();
+        // 基准数据：与 DecoderBenchmark 相同的章节
+        for (var chars : List.of(1000, 3000, 10000)) ciphertexts.add(BenchData.encrypt(BenchData.plaintext(chars, 42L)));
+        ciphertexts.add(BenchData.encrypt(""));
+        for (int i = 0; i < cases; i++) ciphertexts.add(noisy(random, BenchData.encrypt(plaintext(random))));
+        for (var ciphertext : ciphertexts) check(random, ciphertext, mismatches);
+        mismatches.stream().limit(5).forEach(System.out::println);
+        System.out.printf("cases => %d, seed => %d, mismatches => %d, result => %s%n", ciphertexts.size(), seed, mismatches.size(), mismatches.isEmpty() ? "OK" : "FAILED");
+        System.exit(mismatches.isEmpty() ? 0 : 1);
+    }
+
+    private static void check(SplittableRandom random, String ciphertext, List<String> mismatches) {
+        var expected = LegacyDecoder.decode(ciphertext);
+        var js = Decoder.withJsDecode(ciphertext);
+        if (!expected.equals(js)) mismatches.add("legacy != js for " + ciphertext);
+        var length = expected.length();
+        if (!expected.equals(NativeDecoder.decode(ciphertext))) mismatches.add("decode(CharSequence) for " + ciphertext);
+        if (NativeDecoder.maxDecodedLength(ciphertext.length()) < length) mismatches.add("maxDecodedLength for " + ciphertext);
+
+        // 数组：随机偏移，恰好容纳
+        var offset = random.nextInt(8);
+        var array = new char[offset + length];
+        Arrays.fill(array, SENTINEL);
+        var written = NativeDecoder.decode(ciphertext, array, offset);
+        if (written != length || !expected.equals(new String(array, offset, length)) || !untouched(array, offset))
+            mismatches.add("decode(CharSequence, char[], %d) for %s".formatted(offset, ciphertext));
+        if (length > 0 && !overflows(() -> NativeDecoder.decode(ciphertext, new char[offset + length - 1], offset), IndexOutOfBoundsException.class))
+            mismatches.add("decode(CharSequence, char[], %d) did not overflow for %s".formatted(offset, ciphertext));
+
+        // 堆缓冲区：以偏移包装，position 前移
+        var backing = new char[offset + length];
+        Arrays.fill(backing, SENTINEL);
+        var heap = CharBuffer.wrap(backing, offset, length).slice();
+        NativeDecoder.decode(ciphertext, heap);
+        if (heap.position() != length || !expected.equals(new String(backing, offset, length)) || !untouched(backing, offset))
+            mismatches.add("decode(CharSequence, heap CharBuffer) for " + ciphertext);
+        if (length > 0 && !overflows(() -> NativeDecoder.decode(ciphertext, CharBuffer.allocate(length - 1)), BufferOverflowException.class))
+            mismatches.add("decode(CharSequence, heap CharBuffer) did not overflow for " + ciphertext);
+
+        // 直接缓冲区
+        var direct = ByteBuffer.allocateDirect(length * 2).asCharBuffer();
+        NativeDecoder.decode(ciphertext, direct);
+        if (direct.position() != length || !expected.equals(direct.flip().toString()))
+            mismatches.add("decode(CharSequence, direct CharBuffer) for " + ciphertext);
+        if (length > 0 && !overflows(() -> NativeDecoder.decode(ciphertext, ByteBuffer.allocateDirect((length - 1) * 2).asCharBuffer()), BufferOverflowException.class))
+            mismatches.add("decode(CharSequence, direct CharBuffer) did not overflow for " + ciphertext);
+    }
+
+    // 随机明文：长度 0 - 200 个片段，末尾分组 0、1、2 字节的情形均会出现
+    private static String plaintext(SplittableRandom random) {
+        var sb = new StringBuilder();
+        var pieces = random.nextInt(200);
+        for (int i = 0; i < pieces; i++) sb.append(CHARS[random.nextInt(CHARS.length)]);
+        return sb.toString();
+    }
+
+    // 于密文中随机插入非字母表字符（填充符之后不插入，decode.js 不支持）
+    private static String noisy(SplittableRandom random, String ciphertext) {
+        var padding = ciphertext.indexOf('=');
+        var body = padding < 0 ? ciphertext : ciphertext.substring(0, padding);
+        var sb = new StringBuilder(ciphertext.length() + 16);
+        for (int i = 0; i < body.length(); i++) {
+            if (random.nextInt(16) == 0) sb.append(NOISE[random.nextInt(NOISE.length)]);
+            sb.append(body.charAt(i));
+        }
+        return sb.append(ciphertext, body.length(), ciphertext.length()).toString();
+    }
+
+    private static boolean untouched(char[] array, int offset) {
+        for (int i = 0; i < offset; i++) if (array[i] != SENTINEL) return false;
+        return true;
+    }
+
+    private static boolean overflows(Runnable decode, Class<? extends RuntimeException> expected) {
+        try {
+            decode.run();
+            return false;
+        } catch (RuntimeException e) {
+            return expected.isInstance(e);
+        }
+    }
+}
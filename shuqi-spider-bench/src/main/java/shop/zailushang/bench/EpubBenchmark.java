@@ -0,0 +1,69 @@
+package shop.zailushang.bench;
+
+import org.openjdk.jmh.annotations.*;
+import shop.zailushang.component.Formatter;
+import shop.zailushang.util.BookCache;
+import shop.zailushang.util.EpubBook;
+
+import java.io.BufferedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * EPUB 成书：ZipOutputStream 单线程逐章压缩写出（事后转换的做法），对比 EpubBook 各章于虚拟线程中并行压缩、仅容器顺序写出
+ * 两者输入均为排版后的章节字节，单线程的 XHTML 转换开销计入基线
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EpubBenchmark {
+
+    @Param({"20", "2000"})
+    public int chapters;
+
+    private String bookName;
+    private List<byte[]> formatted;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        bookName = "bench-epub-" + chapters;
+        Files.createDirectories(BookCache.getFolderPath(bookName));
+        formatted = IntStream.rangeClosed(1, chapters)
+                .mapToObj(ordid -> Formatter.format0("第%d章".formatted(ordid), BenchData.plaintext(3000, ordid)))
+                .toList();
+    }
+
+    @Benchmark
+    public long zipOutputStream() throws Exception {
+        var targetPath = BookCache.getEpubFilePath(bookName);
+        try (var zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(targetPath), 1 << 16))) {
+            for (int i = 0; i < formatted.size(); i++) {
+                zip.putNextEntry(new ZipEntry("OEBPS/text/%05d.xhtml".formatted(i + 1)));
+                var lines = new String(formatted.get(i), StandardCharsets.UTF_8).lines().map(line -> "<p>" + line + "</p>\n");
+                zip.write(String.join("", lines.toList()).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return Files.size(targetPath);
+    }
+
+    @Benchmark
+    public long epubBook() {
+        try (var epub = new EpubBook(bookName); var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture.allOf(IntStream.range(0, formatted.size())
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> epub.put(i + 1, "第%d章".formatted(i + 1), formatted.get(i)), executor))
+                    .toArray(CompletableFuture[]::new)).join();
+            return epub.writeTo(BookCache.getEpubFilePath(bookName));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package shop.zailushang.bench;
+
+import org.openjdk.jmh.annotations.*;
+import shop.zailushang.component.Formatter;
+import shop.zailushang.entity.Chapter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 格式化：Formatter.Formatters.contentFormatter 完整异步链，与原始多趟实现对比
+ * 计时之前先校验单趟实现与完整异步链的输出与原始实现逐字节一致，不一致时 Setup 失败
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatterBenchmark {
+
+    private static final String BOOK_NAME = "bench";
+    // 边界情形：空内容、仅空白行、\r\n 与 \r 换行、行内与行尾空白、全角空格、相邻及首尾的 <br/>、4 字节字符
+    private static final List<String> EDGE_CASES = List.of(
+            "", "<br/>", "  <br/>\t<br/>", "\r\n\r\n", "第一段\r\n第二段\r第三段\n",
+            "　　行首缩进<br/>行尾空白　 \t<br/><br/><br/>末行", " 中 间 空 白 ", "<br/<br/>>", "<br/>首尾<br/>",
+            "\u2028分隔\u2029段落\u0085下一行\u000B垂直制表\u000C换页", "\uD83D\uDE00表情\uD840\uDC00");
+
+    @Param({"1000", "3000", "10000"})
+    public int chars;
+
+    private Chapter.Chapter4Format chapter4Format;
+    private Formatter formatter;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        chapter4Format = new Chapter.Chapter4Format(BOOK_NAME, "第1章 陨落的天才", 1, BenchData.plaintext(chars, 42L));
+        formatter = Formatter.Formatters.contentFormatter();
+        verify(chapter4Format);
+        EDGE_CASES.forEach(content -> verify(new Chapter.Chapter4Format(BOOK_NAME, chapter4Format.chapterName(), 1, content)));
+    }
+
+    // 单趟实现、完整异步链均须与原始实现逐字节一致
+    private void verify(Chapter.Chapter4Format chapter4Format) {
+        var expected = LegacyFormatter.format(chapter4Format.chapterName(), chapter4Format.unformattedChapterContent());
+        var singlePass = Formatter.format0(chapter4Format.chapterName(), chapter4Format.unformattedChapterContent());
+        var chained = BenchSupport.join(BOOK_NAME, () -> formatter.apply(chapter4Format)).chapterBytes();
+        if (!Arrays.equals(expected, singlePass) || !Arrays.equals(expected, chained))
+            throw new IllegalStateException("formatter output differs from LegacyFormatter for " + chapter4Format.unformattedChapterContent());
+    }
+
+    @Benchmark
+    public Chapter.Chapter4Write contentFormatter() {
+        return BenchSupport.join(BOOK_NAME, () -> formatter.apply(chapter4Format));
+    }
+
+    @Benchmark
+    public byte[] singlePass() {
+        return Formatter.format0(chapter4Format.chapterName(), chapter4Format.unformattedChapterContent());
+    }
+
+    @Benchmark
+    public byte[] legacyFormatter() {
+        return LegacyFormatter.format(chapter4Format.chapterName(), chapter4Format.unformattedChapterContent());
+    }
+}
@@ -0,0 +1,81 @@
+package shop.zailushang.bench;
+
+import org.openjdk.jmh.annotations.*;
+import shop.zailushang.component.*;
+import shop.zailushang.entity.Chapter;
+import shop.zailushang.flow.Flow;
+import shop.zailushang.util.ScopedExecutor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 阶段融合：对比 融合 / 非融合 模式下，章节从 Selector 到 Formatter 的 调度任务数 与 单章延迟
+ * FlowEngine.USE_FUSION 为静态常量，两种模式分别在独立的 JVM 中运行，单章调度任务数于每轮结束时打印
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FusionBenchmark {
+
+    private static final String BOOK_NAME = "bench";
+    // 每次调用处理的章节数
+    private static final int CHAPTERS = 200;
+
+    private List<Chapter.Chapter4Select> chapter4Selects;
+    private Task<List<Chapter.Chapter4Select>, List<Chapter.Chapter4Write>> task;
+
+    // 累计处理的章节数、调度任务数、内联任务数
+    private long chapters;
+    private long scheduledTasks;
+    private long inlinedTasks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var ciphertext = BenchData.encrypt(BenchData.plaintext(3000, 42L));
+        var jsonCiphertext = BenchData.contentJson(ciphertext);
+        chapter4Selects = IntStream.rangeClosed(1, CHAPTERS)
+                .mapToObj(ordid -> new Chapter.Chapter4Select(BOOK_NAME, "第%d章".formatted(ordid), ordid, jsonCiphertext))
+                .toList();
+        // 去除网络与文件写入，仅保留 CPU 型组件
+        Flow<Chapter.Chapter4Select, Chapter.Chapter4Write> flow = () -> Selector.Selectors.contentSelector()
+                .thenAsync(Parser.Parsers.contentParser())
+                .thenAsync(Decoder.Decoders.contentDecoder())
+                .thenAsync(Formatter.Formatters.contentFormatter());
+        task = Task.parallelTask(flow.head());
+    }
+
+    // 输出单章平均调度任务数（随基准日志一并打印）
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.printf("%n[fusion=%s] scheduled tasks/chapter = %.2f, inlined tasks/chapter = %.2f%n",
+                System.getProperty("shuqi.fusion"), (double) scheduledTasks / chapters, (double) inlinedTasks / chapters);
+    }
+
+    private List<Chapter.Chapter4Write> run() {
+        var scheduled = ScopedExecutor.ScopedExecutors.scheduledCount();
+        var inlined = ScopedExecutor.ScopedExecutors.inlinedCount();
+        var result = BenchSupport.join(BOOK_NAME, () -> task.apply(chapter4Selects));
+        scheduledTasks += ScopedExecutor.ScopedExecutors.scheduledCount() - scheduled;
+        inlinedTasks += ScopedExecutor.ScopedExecutors.inlinedCount() - inlined;
+        chapters += CHAPTERS;
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHAPTERS)
+    @Fork(value = 1, jvmArgsAppend = "-Dshuqi.fusion=true")
+    public List<Chapter.Chapter4Write> fused() {
+        return run();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHAPTERS)
+    @Fork(value = 1, jvmArgsAppend = "-Dshuqi.fusion=false")
+    public List<Chapter.Chapter4Write> unfused() {
+        return run();
+    }
+}
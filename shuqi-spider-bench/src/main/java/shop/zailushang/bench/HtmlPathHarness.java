@@ -0,0 +1,139 @@
+package shop.zailushang.bench;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import shop.zailushang.util.HtmlPath;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+/**
+ * 流式路径匹配与 jsoup 的差异测试：随机生成含隐式闭合、错误嵌套、属性值内含 >、注释、原始文本、实体的页面，
+ * 对 jsoup 树中每个元素的绝对路径（及越界序号）比较 HtmlPath 与 jsoup selectXpath 的文本、属性（含两者均找不到），并校验找到目标元素后即停止读取
+ * 存在差异时以非零状态退出
+ * 用法：java -cp target/benchmarks.jar shop.zailushang.bench.HtmlPathHarness [页面数] [随机种子]，或 mvn -f shuqi-spider-bench/pom.xml verify -Phtmlpath
+ */
+public class HtmlPathHarness {
+    // 普通元素
+    private static final String[] TAGS = {"div", "span", "p", "li", "ul", "i", "b", "a", "em", "section"};
+    // 文本片段：含实体、中文与空白
+    private static final String[] WORDS = {"第一章", "斗破苍穹", "a &amp; b", "1 &lt; 2", "&#20013;&#x6587;", "&nbsp;", "  \n\t", "x>y", "&copy", "tom&jerry"};
+    // 单页最多比较的路径数
+    private static final int MAX_PATHS = 64;
+
+    public static void main(String[] args) {
+        var pages = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        var seed = args.length > 1 ? Long.parseLong(args[1]) : 20250101L;
+        var random = new SplittableRandom(seed);
+        long agreed = 0;
+        var mismatches = new ArrayList<String>();
+        // 按站点格式生成的页面须由流式匹配直接命中，且与 jsoup 一致
+        site("attr", BenchData.searchPage("53258"), "/html/body/div[1]/div[3]/div/div[4]/div/span[2]", "data-bid", mismatches);
+        site("text", BenchData.chapterListPage("bench", 200), "/html/body/i[5]", null, mismatches);
+        stop(mismatches);
+        for (int page = 0; page < pages; page++) {
+            var html = page(random);
+            var bytes = html.getBytes(StandardCharsets.UTF_8);
+            var document = Jsoup.parse(html);
+            var elements = document.body().getAllElements();
+            for (int i = 0; i < Math.min(MAX_PATHS, elements.size()); i++) {
+                var element = elements.get(random.nextInt(elements.size()));
+                var path = pathOf(element);
+                // 越界序号：两者均应找不到
+                var paths = List.of(path, path.replaceFirst("\\[(\\d+)]$", "[9$1]"));
+                for (var xpath : paths) {
+                    var expected = document.selectXpath(xpath).stream().findFirst();
+                    var htmlPath = HtmlPath.compile(xpath);
+                    for (var check : List.of("text", "attr")) {
+                        var actual = "text".equals(check) ? htmlPath.text(bytes) : htmlPath.attr(bytes, "data-x");
+                        Optional<String> want = expected.map(el -> "text".equals(check) ? el.text() : el.hasAttr("data-x") ? el.attr("data-x") : null);
+                        if (want.equals(actual)) agreed++;
+                        else mismatches.add("%s %s => htmlPath %s, jsoup %s%n%s".formatted(check, xpath, actual.orElse("<none>"), want.orElse("<none>"), html));
+                    }
+                }
+            }
+        }
+        mismatches.stream().limit(5).forEach(System.out::println);
+        System.out.printf("pages => %d, seed => %d, agreed => %d, mismatches => %d, result => %s%n",
+                pages, seed, agreed, mismatches.size(), mismatches.isEmpty() ? "OK" : "FAILED");
+        System.exit(mismatches.isEmpty() ? 0 : 1);
+    }
+
+    // 站点页面：流式匹配找不到或与 jsoup 不一致均计为差异
+    private static void site(String check, String html, String xpath, String attribute, List<String> mismatches) {
+        var bytes = html.getBytes(StandardCharsets.UTF_8);
+        var htmlPath = HtmlPath.compile(xpath);
+        var element = Jsoup.parse(html).selectXpath(xpath).getFirst();
+        var actual = "text".equals(check) ? htmlPath.text(bytes) : htmlPath.attr(bytes, attribute);
+        var expected = "text".equals(check) ? element.text() : element.attr(attribute);
+        if (!actual.map(expected::equals).orElse(false)) mismatches.add("site %s %s => htmlPath %s, jsoup %s".formatted(check, xpath, actual.orElse("<none>"), expected));
+    }
+
+    // 提前停止：目标元素之后追加约 3MB 内容，找到目标后读取的字节数应远小于页面大小
+    private static void stop(List<String> mismatches) {
+        var page = BenchData.chapterListPage("bench", 20).replace("</body>", "<p>尾部</p>".repeat(1 << 18) + "</body>");
+        var bytes = page.getBytes(StandardCharsets.UTF_8);
+        var in = new ByteArrayInputStream(bytes);
+        var actual = HtmlPath.compile("/html/body/i[5]").text(in);
+        var read = bytes.length - in.available();
+        if (actual.isEmpty() || read > bytes.length / 4) mismatches.add("stop => found %s, read %d of %d bytes".formatted(actual.isPresent(), read, bytes.length));
+    }
+
+    // 元素的绝对路径：每层带同名兄弟中的序号 e.g. /html/body[1]/div[2]/span[1]
+    private static String pathOf(Element element) {
+        var steps = new ArrayList<String>();
+        for (var current = element; current != null && !"#root".equals(current.tagName()); current = current.parent()) {
+            var name = current.tagName();
+            var parent = current.parent();
+            if (parent == null || "#root".equals(parent.tagName())) {
+                steps.addFirst(name);
+                continue;
+            }
+            var index = 1;
+            for (var sibling : parent.children()) {
+                if (sibling == current) break;
+                if (sibling.tagName().equals(name)) index++;
+            }
+            steps.addFirst(name + "[" + index + "]");
+        }
+        return "/" + String.join("/", steps);
+    }
+
+    // 随机页面：偶尔省略 html / head
+    private static String page(SplittableRandom random) {
+        var body = new StringBuilder();
+        var nodes = 1 + random.nextInt(6);
+        for (int i = 0; i < nodes; i++) node(random, body, 0);
+        return switch (random.nextInt(4)) {
+            case 0 -> "<body>" + body + "</body>";
+            case 1 -> "<!DOCTYPE html><html><head><title>a<b>c</title><meta charset=\"utf-8\"></head><body>" + body;
+            default -> "<!DOCTYPE html>\n<html>\n<head><title>书旗</title><script>var a = '<div>';</script></head>\n<body>" + body + "</body>\n</html>";
+        };
+    }
+
+    private static void node(SplittableRandom random, StringBuilder out, int depth) {
+        switch (depth > 4 ? 0 : random.nextInt(10)) {
+            case 0, 1 -> out.append(WORDS[random.nextInt(WORDS.length)]);
+            case 2 -> out.append(random.nextBoolean() ? "<!-- <div>注释</div> -->" : "<br>");
+            case 3 -> out.append(random.nextBoolean() ? "<script>if (a < b) document.write('<span>')</script>" : "<img src=\"a>b.png\" data-x=\"图\">");
+            // 错误嵌套
+            case 4 -> out.append("<b>").append(WORDS[random.nextInt(WORDS.length)]).append("<i>x</b>y</i>");
+            default -> {
+                var tag = TAGS[random.nextInt(TAGS.length)];
+                out.append('<').append(tag);
+                if (random.nextInt(3) == 0) out.append(" class=a");
+                if (random.nextBoolean()) out.append(random.nextBoolean() ? " data-x=\"v>" + depth + "\"" : " data-x='a &amp; " + random.nextInt(100) + "'");
+                out.append('>');
+                var children = random.nextInt(4);
+                for (int i = 0; i < children; i++) node(random, out, depth + 1);
+                // p、li 偶尔省略结束标签
+                if (("p".equals(tag) || "li".equals(tag)) && random.nextInt(3) == 0) return;
+                out.append("</").append(tag).append('>');
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package shop.zailushang.bench;
+
+import org.openjdk.jmh.annotations.*;
+import shop.zailushang.component.Formatter;
+import shop.zailushang.entity.Chapter;
+import shop.zailushang.util.BookCache;
+import shop.zailushang.util.BookIndex;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按章随机读取：逐行扫描书籍文件查找第 N 章的起止（下游的现有做法），对比 BookIndex 的定位读取与映射切片
+ * 章节以排版后的末尾空行分隔，扫描方式按空行计数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+    @Param({"2000"})
+    public int chapters;
+
+    private String bookName;
+    private BookIndex bookIndex;
+    private int ordid;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        bookName = "bench-index-" + chapters;
+        var targetPath = BookCache.getTargetFilePath(bookName);
+        Files.createDirectories(targetPath.getParent());
+        var chapter4Merges = new ArrayList<Chapter.Chapter4Merge>();
+        try (var out = Files.newOutputStream(targetPath)) {
+            var skip = 0L;
+            for (int i = 1; i <= chapters; i++) {
+                var bytes = Formatter.format0("第%d章".formatted(i), BenchData.plaintext(3000, i));
+                chapter4Merges.add(new Chapter.Chapter4Merge(bookName, i, null, null, skip));
+                out.write(bytes);
+                skip += bytes.length;
+            }
+        }
+        BookIndex.write(targetPath, chapter4Merges);
+        bookIndex = BookIndex.open(bookName);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bookIndex.close();
+    }
+
+    // 轮流读取书中各处的章节
+    private int next() {
+        return ordid = ordid % chapters + 1;
+    }
+
+    @Benchmark
+    public String rescan() throws Exception {
+        var ordid = next();
+        try (var lines = Files.lines(BookCache.getTargetFilePath(bookName), StandardCharsets.UTF_8)) {
+            var chapter = new StringBuilder();
+            var current = new int[]{1};
+            lines.takeWhile(_ -> current[0] <= ordid).forEach(line -> {
+                if (line.isEmpty()) current[0]++;
+                else if (current[0] == ordid) chapter.append(line).append('\n');
+            });
+            return chapter.toString();
+        }
+    }
+
+    @Benchmark
+    public byte[] indexRead() {
+        return bookIndex.read(next());
+    }
+
+    @Benchmark
+    public MemorySegment indexSlice() {
+        return bookIndex.slice(next());
+    }
+}
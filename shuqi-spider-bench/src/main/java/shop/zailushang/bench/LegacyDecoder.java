@@ -0,0 +1,50 @@
+package shop.zailushang.bench;
+
+import java.util.Base64;
+
+/**
+ * 基线：Decoder.withNativeDecode 的原始实现（多次整体复制 + 正则过滤），仅用于对比
+ */
+public final class LegacyDecoder {
+
+    private LegacyDecoder() {
+    }
+
+    public static String decode(String ciphertext) {
+        StringBuilder transformed = new StringBuilder();
+        for (char c : ciphertext.toCharArray()) {
+            if (Character.isLetter(c)) {
+                int e = c / 97;
+                char lowerChar = Character.toLowerCase(c);
+                int i = (lowerChar - 83) % 26;
+                if (i == 0) i = 26;
+                char decodedChar = (char) (i + (e == 0 ? 64 : 96));
+                transformed.append(decodedChar);
+            } else {
+                transformed.append(c);
+            }
+        }
+        String step1 = transformed.toString();
+        String cleaned = step1.replaceAll("[^A-Za-z0-9+/=]", "");
+        byte[] decodedBytes = Base64.getDecoder().decode(cleaned);
+        StringBuilder result = new StringBuilder();
+        int index = 0;
+        while (index < decodedBytes.length) {
+            int b = decodedBytes[index] & 0xFF;
+            if (b < 128) {
+                result.append((char) b);
+                index++;
+            } else if (b > 191 && b < 224) {
+                int b2 = decodedBytes[index + 1] & 0xFF;
+                result.append((char) ((31 & b) << 6 | (63 & b2)));
+                index += 2;
+            } else {
+                int b2 = decodedBytes[index + 1] & 0xFF;
+                int b3 = decodedBytes[index + 2] & 0xFF;
+                result.append((char) ((15 & b) << 12 | (63 & b2) << 6 | (63 & b3)));
+                index += 3;
+            }
+        }
+        return result.toString();
+    }
+}
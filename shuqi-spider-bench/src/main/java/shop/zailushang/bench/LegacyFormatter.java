@@ -0,0 +1,22 @@
+package shop.zailushang.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+
+/**
+ * 基线：Formatter.Formatters.contentFormatter 的原始实现（replaceAll + lines + filter + strip + joining + format），仅用于对比
+ */
+public final class LegacyFormatter {
+
+    private LegacyFormatter() {
+    }
+
+    public static byte[] format(String chapterName, String unformattedChapterContent) {
+        var chapterContext = unformattedChapterContent.replaceAll("<br/>", "\n")
+                .lines()
+                .filter(line -> !line.isBlank())
+                .map(String::strip)
+                .collect(Collectors.joining("\n"));
+        return String.format("%s\n%s\n\n", chapterName, chapterContext).getBytes(StandardCharsets.UTF_8);
+    }
+}
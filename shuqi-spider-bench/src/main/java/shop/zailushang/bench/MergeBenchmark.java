@@ -0,0 +1,95 @@
+package shop.zailushang.bench;
+
+import org.openjdk.jmh.annotations.*;
+import shop.zailushang.entity.Chapter;
+import shop.zailushang.entity.PartBook;
+import shop.zailushang.util.BookAssembler;
+import shop.zailushang.util.BookCache;
+import shop.zailushang.util.IOForkJoinTask;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 合并：PartBook.compute 分治合并 N 个章节文件，对比 BookAssembler 的三种写入方式（文件位于 FlowEngine.FOLDER_FORMATTER 指定目录）
+ * 10000 章约 90 MB，自动选择时为内存映射
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MergeBenchmark {
+
+    @Param({"20", "2000", "10000"})
+    public int chapters;
+
+    private String bookName;
+    private List<Chapter.Chapter4Merge> planned;
+    private PartBook partBook;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        bookName = "bench-merge-" + chapters;
+        var folderPath = BookCache.getFolderPath(bookName);
+        Files.createDirectories(folderPath);
+        for (int ordid = 1; ordid <= chapters; ordid++) {
+            var content = "第%d章\n%s\n\n".formatted(ordid, BenchData.plaintext(3000, ordid).replace("<br/>", "\n"));
+            Files.writeString(BookCache.getFilePath(bookName, ordid), content, StandardCharsets.UTF_8);
+        }
+    }
+
+    // 每次合并都会关闭源文件通道，需重新打开并清除上一次的合并结果
+    @Setup(Level.Invocation)
+    public void prepare() throws Exception {
+        Files.deleteIfExists(BookCache.getFolderPath(bookName).resolve(bookName + ".txt"));
+        List<Chapter.Chapter4Merge> chapter4Merges = IntStream.rangeClosed(1, chapters)
+                .mapToObj(ordid -> {
+                    try {
+                        var filePath = BookCache.getFilePath(bookName, ordid);
+                        return new Chapter.Chapter4Merge(bookName, ordid, filePath, FileChannel.open(filePath, StandardOpenOption.READ));
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                })
+                .toList();
+        planned = Chapter.Chapter4Merge.plan(chapter4Merges);
+        partBook = BenchSupport.call(bookName, () -> PartBook.of(planned));
+    }
+
+    @TearDown(Level.Invocation)
+    public void release() {
+        BookCache.removeFileChannel(bookName);
+    }
+
+    @Benchmark
+    public IOForkJoinTask.Result partBookCompute() {
+        return BenchSupport.call(bookName, partBook::compute);
+    }
+
+    @Benchmark
+    public IOForkJoinTask.Result assemblerAuto() {
+        return BenchSupport.call(bookName, () -> BookAssembler.assemble(bookName, planned));
+    }
+
+    @Benchmark
+    public IOForkJoinTask.Result assemblerConcat() {
+        return BenchSupport.call(bookName, () -> BookAssembler.assemble(bookName, planned, BookAssembler.Strategy.CONCAT));
+    }
+
+    @Benchmark
+    public IOForkJoinTask.Result assemblerTransfer() {
+        return BenchSupport.call(bookName, () -> BookAssembler.assemble(bookName, planned, BookAssembler.Strategy.TRANSFER));
+    }
+
+    @Benchmark
+    public IOForkJoinTask.Result assemblerMapped() {
+        return BenchSupport.call(bookName, () -> BookAssembler.assemble(bookName, planned, BookAssembler.Strategy.MAPPED));
+    }
+}
@@ -0,0 +1,66 @@
+package shop.zailushang.bench;
+
+import org.openjdk.jmh.annotations.*;
+import shop.zailushang.component.Parser;
+import shop.zailushang.entity.Chapter;
+import shop.zailushang.entity.ChapterListStream;
+import shop.zailushang.entity.RelayNode;
+import shop.zailushang.util.CheckedExceptionFucker;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析：章节列表（含 树模型 RelayNode.map2Chapter4ReadList 与 流式 ChapterListStream 的对比）与 章节内容
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final String BOOK_NAME = "bench";
+
+    // 章节数量：免费试读 / 常规长篇 / 超长篇
+    @Param({"20", "2000", "10000"})
+    public int chapters;
+
+    private String chapterListJson;
+    private Chapter.Chapter4Parse chapter4Parse;
+    private Parser<String, List<Chapter.Chapter4Read>> chapterParser;
+    private Parser<Chapter.Chapter4Parse, Chapter.Chapter4Decode> contentParser;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        chapterListJson = BenchData.chapterListJson(BOOK_NAME, chapters);
+        var ciphertext = BenchData.encrypt(BenchData.plaintext(3000, 42L));
+        chapter4Parse = new Chapter.Chapter4Parse(BOOK_NAME, "第1章", 1, BenchData.contentJson(ciphertext));
+        chapterParser = Parser.Parsers.chapterParser();
+        contentParser = Parser.Parsers.contentParser();
+    }
+
+    @Benchmark
+    public List<Chapter.Chapter4Read> chapterParser() {
+        return BenchSupport.join(BOOK_NAME, () -> chapterParser.apply(chapterListJson));
+    }
+
+    // 不经过异步链，仅测量树模型 → 中继节点 → Chapter4Read 的转换
+    @Benchmark
+    public List<Chapter.Chapter4Read> map2Chapter4ReadList() {
+        return RelayNode.of(CheckedExceptionFucker.readTree(chapterListJson)).map2Chapter4ReadList();
+    }
+
+    // 不经过异步链，仅测量逐 token 解析 → Chapter4Read（不排序）
+    @Benchmark
+    public List<Chapter.Chapter4Read> chapterListStream() {
+        return ChapterListStream.of(chapterListJson).toList();
+    }
+
+    // 与章节数无关，仅在最小参数下有意义
+    @Benchmark
+    public Chapter.Chapter4Decode contentParser() {
+        return BenchSupport.join(BOOK_NAME, () -> contentParser.apply(chapter4Parse));
+    }
+}
@@ -0,0 +1,138 @@
+package shop.zailushang.bench;
+
+import shop.zailushang.component.Formatter;
+import shop.zailushang.entity.Chapter;
+import shop.zailushang.flow.FlowEngine;
+import shop.zailushang.util.BookCache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 虚拟线程钉住与载体线程饥饿回归测试：本进程充当章节内容接口的替身服务，每种章节写入方式（见 FlowEngine.Sink）各启动一个 {@link PinningWorker} 子进程跑完整流程
+ * 子进程以 JFR 记录 jdk.VirtualThreadPinned 并采样载体线程；钉住次数、调度延迟超出阈值，或合并结果与逐章内容不一致时以非零状态退出，构建随之失败（见基准模块的 pinning profile）
+ * 钉住事件默认不设记录阈值，短而频繁的钉住同样计数，而非仅记录 JFR 默认配置中超过 20 毫秒的钉住
+ * 阈值：-Dshuqi.pinning.max 允许的钉住次数，-Dshuqi.pinning.threshold 钉住事件的记录阈值（毫秒），-Dshuqi.pinning.lag 调度延迟 p99 上限（毫秒），-Dshuqi.pinning.carriers 子进程的载体线程数
+ * 用法：java -cp target/benchmarks.jar shop.zailushang.bench.PinningHarness [书籍数] [每本章节数] [写入方式...]
+ */
+public class PinningHarness {
+    // 允许的钉住次数
+    public static final Long MAX_PINNED = Long.getLong("shuqi.pinning.max", 0L);
+    // 钉住事件的记录阈值（毫秒），0 为记录全部钉住
+    public static final Long PINNED_THRESHOLD = Long.getLong("shuqi.pinning.threshold", 0L);
+    // 调度延迟 p99 上限（毫秒）：含启动期 JS 引擎初始化、即时编译与载体线程争用 CPU 的延迟，单核环境下约数百毫秒
+    public static final Long MAX_LAG = Long.getLong("shuqi.pinning.lag", 1000L);
+    // 子进程的载体线程数：数量较少时，钉住与阻塞造成的饥饿更易显现
+    public static final Integer CARRIERS = Integer.getInteger("shuqi.pinning.carriers", 2);
+    // 子进程的流控配置：放宽速率，使全部章节请求尽快并发在途
+    private static final List<String> WORKER_PROPERTIES = List.of(
+            "-Dshuqi.cache=false",
+            "-Dshuqi.rate.max=500");
+
+    public static void main(String[] args) throws Exception {
+        var books = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        var chapters = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        var sinks = args.length > 2 ? Arrays.stream(args, 2, args.length).map(FlowEngine.Sink::valueOf).toList() : List.of(FlowEngine.Sink.values());
+        var served = new AtomicInteger();
+        var standIn = ClusterHarness.standIn(served, new ConcurrentHashMap<>());
+        var origin = "http://127.0.0.1:%d/".formatted(standIn.getAddress().getPort());
+        var failures = 0;
+        try {
+            for (var sink : sinks) {
+                var workDir = Files.createTempDirectory("shuqi-pinning");
+                var output = new ArrayList<String>();
+                var exitValue = runWorker(workDir, origin, sink, books, chapters, output);
+                // METRIC 名称 数值
+                var metrics = output.stream()
+                        .filter(line -> line.startsWith("METRIC "))
+                        .map(line -> line.split(" ", 3))
+                        .collect(Collectors.toMap(fields -> fields[1], fields -> fields[2], (left, _) -> left, HashMap::new));
+                var failed = new ArrayList<String>();
+                if (exitValue != 0 || !metrics.containsKey("pinned")) failed.add("exit " + exitValue);
+                else {
+                    if (Long.parseLong(metrics.get("pinned")) > MAX_PINNED) failed.add("pinned");
+                    if (Long.parseLong(metrics.get("submitFailed")) > 0) failed.add("submitFailed");
+                    if (Long.parseLong(metrics.get("lagP99Millis")) > MAX_LAG) failed.add("lag");
+                    if (!IntStream.rangeClosed(1, books).allMatch(book -> verify(workDir, sink, book, chapters))) failed.add("verify");
+                }
+                if (!failed.isEmpty()) failures++;
+                System.out.printf("sink => %s, books => %d, chapters => %d, elapsed => %s ms, pinned => %s (%s ms), submitFailed => %s, carriers => %s/%s, utilization => %s, lag p99/max => %s/%s ms, result => %s%n",
+                        sink, books, chapters, metrics.get("elapsedMillis"), metrics.get("pinned"), metrics.get("pinnedMillis"), metrics.get("submitFailed"),
+                        metrics.get("carrierPeak"), metrics.get("parallelism"), metrics.get("carrierUtilization"), metrics.get("lagP99Millis"), metrics.get("lagMaxMillis"), failed.isEmpty() ? "OK" : "FAILED " + failed);
+                // 钉住发生处，便于定位
+                output.stream().filter(line -> line.startsWith("PINNED ")).forEach(line -> System.out.println("  " + line));
+                if (exitValue != 0) System.out.println(String.join("\n", output));
+            }
+        } finally {
+            standIn.stop(0);
+        }
+        System.out.printf("%d/%d sinks passed (max pinned => %d, threshold => %d ms, max lag => %d ms, carriers => %d, requests => %d)%n",
+                sinks.size() - failures, sinks.size(), MAX_PINNED, PINNED_THRESHOLD, MAX_LAG, CARRIERS, served.get());
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // 书名
+    static String bookName(int book) {
+        return "钉住" + book;
+    }
+
+    // 第 book 本书的章节列表，请求地址后缀的格式与替身服务一致（见 ClusterHarness）
+    static List<Chapter.Chapter4Read> chapter4Reads(int book, int chapters) {
+        return IntStream.rangeClosed(1, chapters)
+                .mapToObj(ordid -> new Chapter.Chapter4Read(bookName(book), "第%d章".formatted(ordid), ordid, "?book=%d&chapterId=%d".formatted(book, ordid)))
+                .toList();
+    }
+
+    // 于工作目录中启动子进程，等待其结束并收集输出
+    private static int runWorker(Path workDir, String origin, FlowEngine.Sink sink, int books, int chapters, List<String> output) throws Exception {
+        var command = new ArrayList<>(List.of(ProcessHandle.current().info().command().orElse("java"), "-cp", System.getProperty("java.class.path")));
+        command.addAll(WORKER_PROPERTIES);
+        command.addAll(List.of(
+                "-Dshuqi.content.origin=" + origin,
+                "-Dshuqi.sink=" + sink.name(),
+                "-Djdk.virtualThreadScheduler.parallelism=" + CARRIERS));
+        command.addAll(List.of(PinningWorker.class.getName(), String.valueOf(books), String.valueOf(chapters), String.valueOf(PINNED_THRESHOLD)));
+        var process = new ProcessBuilder(command)
+                .directory(workDir.toFile())
+                .redirectErrorStream(true)
+                .start();
+        var reader = Thread.ofVirtual().start(() -> process.inputReader(StandardCharsets.UTF_8).lines().forEach(output::add));
+        if (!process.waitFor(120, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+            output.add("worker timed out");
+            return -1;
+        }
+        reader.join();
+        return process.exitValue();
+    }
+
+    // 校验合并结果：文本书籍与逐章排版后的内容拼接一致，EPUB 已写出；零散章节文件已删除
+    private static boolean verify(Path workDir, FlowEngine.Sink sink, int book, int chapters) {
+        try {
+            var bookName = bookName(book);
+            var cleaned = Files.notExists(workDir.resolve(BookCache.getFilePath(bookName, 1)));
+            if (sink == FlowEngine.Sink.EPUB) {
+                var epubPath = workDir.resolve(BookCache.getEpubFilePath(bookName));
+                return Files.exists(epubPath) && Files.size(epubPath) > 0 && cleaned;
+            }
+            var expected = chapter4Reads(book, FlowEngine.IS_TEST ? Math.min(20, chapters) : chapters).stream()
+                    .map(chapter4Read -> new String(Formatter.format0(chapter4Read.chapterName(), ClusterHarness.plaintext(book, chapter4Read.chapterOrdid())), StandardCharsets.UTF_8))
+                    .collect(Collectors.joining());
+            var actual = Files.readString(workDir.resolve(BookCache.getTargetFilePath(bookName)), StandardCharsets.UTF_8);
+            return expected.equals(actual) && cleaned;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package shop.zailushang.bench;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import shop.zailushang.flow.Flow;
+import shop.zailushang.flow.FlowEngine;
+import shop.zailushang.util.BookCache;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * 虚拟线程钉住测试子进程：章节内容请求发往替身服务，走真实的 contentListFlow + mergeFlow（读取、选择、解析、解密、排版、写入、合并、清理）
+ * 运行期间以 JFR 事件流记录 jdk.VirtualThreadPinned、jdk.VirtualThreadSubmitFailed，并采样载体线程的 CPU 占用与虚拟线程的调度延迟
+ * 结束时逐行输出 METRIC 名称 数值 与 PINNED 次数 栈帧，由 {@link PinningHarness} 判定
+ * 用法：PinningWorker 书籍数 每本章节数 钉住事件记录阈值（毫秒）
+ */
+public class PinningWorker {
+    // 固定 bid，与日志头部比对
+    static final String BID = "53258";
+    // 调度延迟探针的休眠间隔（毫秒）
+    private static final long PROBE_MILLIS = 10;
+    // 载体线程采样间隔（毫秒）
+    private static final long SAMPLE_MILLIS = 100;
+
+    public static void main(String[] args) throws Exception {
+        var books = Integer.parseInt(args[0]);
+        var chapters = Integer.parseInt(args[1]);
+        var threshold = Duration.ofMillis(Long.parseLong(args[2]));
+        var pinned = new LongAdder();
+        var pinnedNanos = new LongAdder();
+        var submitFailed = new LongAdder();
+        // 栈帧 → 钉住次数
+        var frames = new ConcurrentHashMap<String, LongAdder>();
+        try (var recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+            recording.enable("jdk.VirtualThreadSubmitFailed");
+            recording.onEvent("jdk.VirtualThreadPinned", event -> {
+                pinned.increment();
+                pinnedNanos.add(event.getDuration().toNanos());
+                frames.computeIfAbsent(frameOf(event), _ -> new LongAdder()).increment();
+            });
+            recording.onEvent("jdk.VirtualThreadSubmitFailed", _ -> submitFailed.increment());
+            recording.startAsync();
+
+            var sampler = new CarrierSampler();
+            var probe = new LagProbe();
+            var start = System.nanoTime();
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                CompletableFuture.allOf(IntStream.rangeClosed(1, books)
+                        .mapToObj(book -> CompletableFuture.runAsync(() -> download(book, chapters), executor))
+                        .toArray(CompletableFuture[]::new)).join();
+            }
+            var elapsed = System.nanoTime() - start;
+            probe.stop();
+            sampler.stop();
+            // 等待已产生的事件投递完毕
+            recording.stop();
+
+            metric("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsed));
+            metric("pinned", pinned.sum());
+            metric("pinnedMillis", TimeUnit.NANOSECONDS.toMillis(pinnedNanos.sum()));
+            metric("submitFailed", submitFailed.sum());
+            metric("parallelism", CarrierSampler.PARALLELISM);
+            metric("carrierPeak", sampler.peak);
+            metric("carrierUtilization", "%.2f".formatted(sampler.utilization()));
+            metric("lagP99Millis", probe.percentile(0.99));
+            metric("lagMaxMillis", probe.percentile(1.0));
+            frames.forEach((frame, count) -> System.out.printf("PINNED %d %s%n", count.sum(), frame));
+        }
+        System.exit(0);
+    }
+
+    // 下载一本书：章节列表由本地生成，其余步骤与正常下载一致
+    private static void download(int book, int chapters) {
+        var bookName = PinningHarness.bookName(book);
+        BenchSupport.join(bookName, () -> {
+            if (FlowEngine.USE_JOURNAL) BookCache.openJournal(bookName, BID);
+            return Flow.Flows.contentListFlow()
+                    .thenAsync(Flow.Flows.mergeFlow())
+                    .head()
+                    .apply(PinningHarness.chapter4Reads(book, chapters));
+        });
+    }
+
+    private static void metric(String name, Object value) {
+        System.out.printf("METRIC %s %s%n", name, value);
+    }
+
+    // 钉住发生处：优先取本工程的栈帧，其次为栈顶
+    private static String frameOf(RecordedEvent event) {
+        var stackTrace = event.getStackTrace();
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) return "<unknown>";
+        var frame = stackTrace.getFrames().stream()
+                .filter(recordedFrame -> recordedFrame.getMethod().getType().getName().startsWith("shop.zailushang."))
+                .findFirst()
+                .orElse(stackTrace.getFrames().getFirst());
+        return "%s.%s:%d".formatted(frame.getMethod().getType().getName(), frame.getMethod().getName(), frame.getLineNumber());
+    }
+
+    /**
+     * 载体线程采样：累计 CPU 占用（相对并行度）与峰值数量，峰值超出并行度说明调度器为阻塞操作补偿扩容
+     * 默认调度器的载体线程名为 ForkJoinPool-N-worker-M（公共池为 ForkJoinPool.commonPool-worker-M，不计入）
+     */
+    private static final class CarrierSampler {
+        static final int PARALLELISM = Integer.getInteger("jdk.virtualThreadScheduler.parallelism", Runtime.getRuntime().availableProcessors());
+        private final Map<Long, Long> cpuNanos = new HashMap<>();
+        private final long start = System.nanoTime();
+        private final Thread thread;
+        private volatile boolean running = true;
+        private long busyNanos;
+        private long elapsedNanos;
+        private int peak;
+
+        CarrierSampler() {
+            thread = Thread.ofPlatform().daemon().name("carrier-sampler").start(() -> {
+                while (running) {
+                    sample();
+                    try {
+                        Thread.sleep(SAMPLE_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        private void sample() {
+            var threads = ManagementFactory.getThreadMXBean();
+            var carriers = Arrays.stream(threads.getThreadInfo(threads.getAllThreadIds(), 0))
+                    .filter(info -> info != null && info.getThreadName().matches("ForkJoinPool-\\d+-worker-\\d+"))
+                    .toList();
+            peak = Math.max(peak, carriers.size());
+            carriers.forEach(info -> {
+                var cpu = threads.getThreadCpuTime(info.getThreadId());
+                if (cpu < 0) return;
+                var previous = cpuNanos.put(info.getThreadId(), cpu);
+                busyNanos += cpu - (previous == null ? 0 : previous);
+            });
+            elapsedNanos = System.nanoTime() - start;
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        // 载体线程平均占用率：1.0 为全部载体线程始终忙碌
+        double utilization() {
+            return elapsedNanos == 0 ? 0 : (double) busyNanos / elapsedNanos / PARALLELISM;
+        }
+    }
+
+    /**
+     * 调度延迟探针：虚拟线程反复短暂休眠，醒来的迟到时间即为等待载体线程的时间，载体线程被钉住或占满时随之升高
+     */
+    private static final class LagProbe {
+        private final List<Long> lagMillis = new ArrayList<>();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        LagProbe() {
+            thread = Thread.ofVirtual().name("lag-probe").start(() -> {
+                while (running) {
+                    var start = System.nanoTime();
+                    try {
+                        Thread.sleep(PROBE_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    lagMillis.add(Math.max(0, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) - PROBE_MILLIS));
+                }
+            });
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        long percentile(double p) {
+            if (lagMillis.isEmpty()) return 0;
+            var sorted = lagMillis.stream().sorted().toList();
+            return sorted.get((int) Math.ceil(p * sorted.size()) - 1);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package shop.zailushang.bench;
+
+import shop.zailushang.flow.FlowEngine;
+import shop.zailushang.util.BookCache;
+import shop.zailushang.util.BookJournal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 断点续传崩溃测试：反复启动 {@link ResumeWorker} 并在随机时刻 kill -9，期间随机损坏已写入的章节文件
+ * 直至某次运行正常结束，随后校验合并后的书籍与逐章内容完全一致、日志已删除
+ * 强制终止时刻、损坏位置与子进程的逐章延时均由种子确定，种子随结果输出，失败时可据此复现
+ * 用法：java -cp target/benchmarks.jar shop.zailushang.bench.ResumeHarness [轮数] [章节数] [种子]，或 mvn -f shuqi-spider-bench/pom.xml verify -Presume
+ */
+public class ResumeHarness {
+    // 单章最大延时（毫秒）
+    private static final long MAX_DELAY_MILLIS = 1500;
+
+    public static void main(String[] args) throws Exception {
+        var trials = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        var chapters = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        var seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        var random = new SplittableRandom(seed);
+        System.out.printf("trials => %d, chapters => %d, seed => %d%n", trials, chapters, seed);
+        var failures = 0;
+        for (int trial = 1; trial <= trials; trial++) {
+            var workDir = Files.createTempDirectory("shuqi-resume");
+            var bookName = "续传" + trial;
+            var kills = 0;
+            var corrupted = 0;
+            String done;
+            while ((done = runWorker(workDir, bookName, chapters, random)) == null) {
+                kills++;
+                if (random.nextInt(3) == 0 && corrupt(workDir, bookName, chapters, random)) corrupted++;
+            }
+            var ok = verify(workDir, bookName, chapters);
+            if (!ok) failures++;
+            System.out.printf("trial %d: kills => %d, corrupted => %d, last run %s, verify => %s%n", trial, kills, corrupted, done, ok ? "OK" : "FAILED");
+        }
+        System.out.printf("%d/%d trials passed, seed => %d, result => %s%n", trials - failures, trials, seed, failures == 0 ? "OK" : "FAILED");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // 启动子进程，待其就绪后于随机时刻强制终止；正常结束时返回其输出的 DONE 行
+    private static String runWorker(Path workDir, String bookName, int chapters, SplittableRandom random) throws Exception {
+        var command = new ArrayList<>(List.of(ProcessHandle.current().info().command().orElse("java")));
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), ResumeWorker.class.getName(), bookName, String.valueOf(chapters), String.valueOf(MAX_DELAY_MILLIS), String.valueOf(random.nextLong())));
+        var process = new ProcessBuilder(command)
+                .directory(workDir.toFile())
+                .redirectErrorStream(true)
+                .start();
+        // 持续读取子进程输出，READY 之后才开始计时（排除 JVM 启动耗时）
+        var output = new CopyOnWriteArrayList<String>();
+        var ready = new CountDownLatch(1);
+        var reader = Thread.ofVirtual().start(() -> process.inputReader(StandardCharsets.UTF_8).lines().forEach(line -> {
+            output.add(line);
+            if ("READY".equals(line)) ready.countDown();
+        }));
+        ready.await(30, TimeUnit.SECONDS);
+        // 约三分之一的运行不被打断
+        var killAfter = random.nextLong(MAX_DELAY_MILLIS * 3 / 2);
+        if (!process.waitFor(killAfter, TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly().waitFor();
+            return null;
+        }
+        // 读完剩余输出
+        reader.join();
+        if (process.exitValue() != 0) throw new IllegalStateException("worker failed:\n" + String.join("\n", output));
+        return output.stream().filter(line -> line.startsWith("DONE")).findFirst().orElseThrow();
+    }
+
+    // 随机损坏一个已写入的章节文件（截断或改写一个字节），续传时应被校验出并重新下载
+    private static boolean corrupt(Path workDir, String bookName, int chapters, SplittableRandom random) throws IOException {
+        var filePath = workDir.resolve(BookCache.getFilePath(bookName, 1 + random.nextInt(chapters)));
+        if (Files.notExists(filePath) || Files.size(filePath) == 0) return false;
+        var bytes = Files.readAllBytes(filePath);
+        if (random.nextBoolean()) {
+            Files.write(filePath, Arrays.copyOf(bytes, random.nextInt(bytes.length)));
+        } else {
+            bytes[random.nextInt(bytes.length)] ^= 0x20;
+            Files.write(filePath, bytes);
+        }
+        return true;
+    }
+
+    // 校验合并结果：测试模式下仅下载前 20 章
+    private static boolean verify(Path workDir, String bookName, int chapters) throws IOException {
+        var expected = BenchData.chapter4Reads(bookName, FlowEngine.IS_TEST ? Math.min(20, chapters) : chapters).stream()
+                .map(ResumeWorker::chapterContent)
+                .collect(Collectors.joining());
+        var actual = Files.readString(workDir.resolve(BookCache.getTargetFilePath(bookName)), StandardCharsets.UTF_8);
+        var journalGone = Files.notExists(workDir.resolve(BookCache.getFolderPath(bookName)).resolve(BookJournal.JOURNAL_FILE_NAME));
+        return expected.equals(actual) && journalGone;
+    }
+}
@@ -0,0 +1,56 @@
+package shop.zailushang.bench;
+
+import shop.zailushang.component.Task;
+import shop.zailushang.component.Writer;
+import shop.zailushang.entity.Chapter;
+import shop.zailushang.flow.Flow;
+import shop.zailushang.util.BookCache;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 断点续传子进程：以本地生成的章节代替 http 请求，走真实的 contentListFlow（续传）+ mergeFlow
+ * 每章随机延时（由种子与章节序号确定），模拟流控下陆续完成的下载；由 {@link ResumeHarness} 在随机时刻强制终止
+ * 用法：ResumeWorker 书名 章节数 最大延时（毫秒） 种子
+ */
+public class ResumeWorker {
+    // 固定 bid，与日志头部比对
+    static final String BID = "53258";
+
+    // 第 chapterOrdid 章的排版后内容（确定性生成，供校验）
+    static String chapterContent(Chapter.Chapter4Read chapter4Read) {
+        return "%s\n%s\n\n".formatted(chapter4Read.chapterName(), BenchData.plaintext(2000, chapter4Read.chapterOrdid()));
+    }
+
+    public static void main(String[] args) {
+        var bookName = args[0];
+        var chapters = Integer.parseInt(args[1]);
+        var maxDelayMillis = Long.parseLong(args[2]);
+        var seed = Long.parseLong(args[3]);
+        var downloaded = new AtomicInteger();
+        // 单条章节流程：延时后直接交给真实的 Writer（写文件 + 记录断点）
+        Flow<Chapter.Chapter4Read, Chapter.Chapter4Merge> contentFlow = () -> chapter4Read -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        Thread.sleep(new SplittableRandom(seed ^ chapter4Read.chapterOrdid()).nextLong(maxDelayMillis + 1));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    downloaded.incrementAndGet();
+                    return new Chapter.Chapter4Write(bookName, chapter4Read.chapterName(), chapter4Read.chapterOrdid(), chapterContent(chapter4Read));
+                }, Task.taskExecutor())
+                .thenCompose(Writer::write0);
+        BenchSupport.join(bookName, () -> {
+            BookCache.openJournal(bookName, BID);
+            // 通知测试进程：启动完成，开始计时
+            System.out.println("READY");
+            return Flow.Flows.contentListFlow(contentFlow)
+                    .thenAsync(Flow.Flows.mergeFlow())
+                    .head()
+                    .apply(BenchData.chapter4Reads(bookName, chapters));
+        });
+        System.out.println("DONE " + downloaded.get());
+        System.exit(0);
+    }
+}
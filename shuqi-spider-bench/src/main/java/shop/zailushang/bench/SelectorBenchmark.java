@@ -0,0 +1,60 @@
+package shop.zailushang.bench;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import shop.zailushang.component.Selector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 元素选择：搜索页取 bid、章节列表页取数据节点（流式匹配 与 解码 + DOM + xpath 的对比）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectorBenchmark {
+
+    private static final String BOOK_NAME = "bench";
+
+    @Param({"20", "2000", "10000"})
+    public int chapters;
+
+    private byte[] searchPage;
+    private byte[] chapterListPage;
+    private Selector<byte[], String> bidSelector;
+    private Selector<byte[], String> chapterSelector;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        searchPage = BenchData.searchPage("53258").getBytes(StandardCharsets.UTF_8);
+        chapterListPage = BenchData.chapterListPage(BOOK_NAME, chapters).getBytes(StandardCharsets.UTF_8);
+        bidSelector = Selector.Selectors.bidSelector();
+        chapterSelector = Selector.Selectors.chapterSelector();
+    }
+
+    // 与章节数无关，仅在最小参数下有意义
+    @Benchmark
+    public String bidSelector() {
+        return BenchSupport.join(BOOK_NAME, () -> bidSelector.apply(searchPage));
+    }
+
+    @Benchmark
+    public String chapterSelector() {
+        return BenchSupport.join(BOOK_NAME, () -> chapterSelector.apply(chapterListPage));
+    }
+
+    // 旧路径：解码 + 构建完整 DOM + xpath
+    @Benchmark
+    public String bidDom() {
+        return Jsoup.parse(new String(searchPage, StandardCharsets.UTF_8)).selectXpath("/html/body/div[1]/div[3]/div/div[4]/div/span[2]").getFirst().attr("data-bid");
+    }
+
+    @Benchmark
+    public String chapterDom() {
+        return Jsoup.parse(new String(chapterListPage, StandardCharsets.UTF_8)).selectXpath("/html/body/i[5]").text();
+    }
+}
@@ -3,11 +3,15 @@ package shop.zailushang.component;
 import lombok.extern.slf4j.Slf4j;
 import shop.zailushang.entity.Chapter;
 import shop.zailushang.entity.Tao;
+import shop.zailushang.flow.FlowEngine;
 import shop.zailushang.util.CheckedExceptionFucker;
+import shop.zailushang.util.ProgressLog;
 
 import java.nio.file.Path;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
+import static shop.zailushang.component.Task.cpuExecutor;
 import static shop.zailushang.component.Task.taskExecutor;
 
 /**
@@ -38,19 +42,21 @@ public interface Cleaner<T, R> extends Task<T, R> {
         public static Cleaner<Chapter.Chapter4Clean, Tao> fileCleaner() {
             final var cleanParallelTask = Task.parallelTask(
                     paths -> paths.stream().filter(Chapter.Chapter4Clean::needDelete).toList() // 前置筛选（二元决策：全有或全无）
-                    , singleCleaner()); // 删除逻辑
+                    , singleCleaner() // 删除逻辑
+                    , Function.identity()
+                    , Task.Window.items(FlowEngine.PARALLEL_WINDOW)); // 窗口化：避免为数千个文件同时开启虚拟线程
             return chapter4Clean -> CompletableFuture.completedFuture(chapter4Clean)
-                    .whenCompleteAsync((_, _) -> log.info("{} - 执行文件删除操作", Cleaner.name()), taskExecutor())
-                    .thenApplyAsync(Chapter.Chapter4Clean::paths, taskExecutor())
-                    .thenComposeAsync(cleanParallelTask, taskExecutor())
-                    .thenApplyAsync(_ -> Tao.TAO, taskExecutor()); // 百川入海，万法归宗，回归本道
+                    .whenCompleteAsync((_, _) -> log.info("{} - 执行文件删除操作", Cleaner.name()), cpuExecutor())
+                    .thenApplyAsync(Chapter.Chapter4Clean::paths, cpuExecutor())
+                    .thenComposeAsync(cleanParallelTask, cpuExecutor())
+                    .thenApplyAsync(_ -> Tao.TAO, cpuExecutor()); // 百川入海，万法归宗，回归本道
         }
 
         // 删除单个文件
         static Cleaner<Path, Void> singleCleaner() {
             return path -> CompletableFuture.completedFuture(path)
                     .thenAcceptAsync(CheckedExceptionFucker::deleteIfExists, taskExecutor())
-                    .thenRunAsync(() -> log.info("{} - 删除文件成功：{}", Cleaner.name(), path), taskExecutor());
+                    .thenRunAsync(() -> ProgressLog.sampled(log).info("{} - 删除文件成功：{}", Cleaner.name(), path), cpuExecutor());
         }
     }
 }
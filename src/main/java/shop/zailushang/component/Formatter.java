@@ -2,12 +2,12 @@ package shop.zailushang.component;
 
 import lombok.extern.slf4j.Slf4j;
 import shop.zailushang.entity.Chapter;
-import shop.zailushang.util.Assert;
+import shop.zailushang.util.ProgressLog;
 
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
-import static shop.zailushang.component.Task.taskExecutor;
+import static shop.zailushang.component.Task.cpuExecutor;
 
 /**
  * 組件：内容格式化器，调整解密后的章节内容排版
@@ -17,6 +17,7 @@ import static shop.zailushang.component.Task.taskExecutor;
  * 去除空白行
  * 拼接章节标题
  * 章节尾部拼接双换行
+ * 以上操作在一次扫描中完成，结果直接编码为 UTF-8 字节，供写入器原样落盘
  */
 @FunctionalInterface
 public interface Formatter extends Task<Chapter.Chapter4Format, Chapter.Chapter4Write> {
@@ -28,6 +29,84 @@ public interface Formatter extends Task<Chapter.Chapter4Format, Chapter.Chapter4
 
     CompletableFuture<Chapter.Chapter4Write> format(Chapter.Chapter4Format chapter4Format) throws Exception;
 
+    /*
+     * 单趟排版：逐字符扫描，遇 \n、\r、<br/> 即断行，空白行丢弃，非空行去除首尾空白后直接编码写入预分配的缓冲区
+     * 输出与 replaceAll + lines + filter + strip + joining + format 的结果逐字节一致（含孤立代理字符编码为 '?'）
+     */
+    static byte[] format0(String chapterName, String content) {
+        var title = String.valueOf(chapterName);
+        // UTF-8 中每个 char 至多 3 字节（代理对 2 个 char 共 4 字节），另加 3 个换行符
+        var buf = new byte[(title.length() + content.length()) * 3 + 3];
+        var pos = encode(title, 0, title.length(), buf, 0);
+        buf[pos++] = '\n';
+        var first = true;
+        var length = content.length();
+        var start = 0;
+        var i = 0;
+        while (start <= length) {
+            // 查找行尾及下一行的起点
+            int end, next;
+            while (true) {
+                if (i >= length) {
+                    end = length;
+                    next = length + 1;
+                    break;
+                }
+                var c = content.charAt(i);
+                if (c == '\n' || c == '\r') {
+                    end = i;
+                    next = i + 1;
+                    break;
+                }
+                if (c == '<' && content.startsWith("<br/>", i)) {
+                    end = i;
+                    next = i + 5;
+                    break;
+                }
+                i++;
+            }
+            // 去除首尾空白，全为空白的行直接丢弃
+            var from = start;
+            var to = end;
+            while (from < to && Character.isWhitespace(content.charAt(from))) from++;
+            while (to > from && Character.isWhitespace(content.charAt(to - 1))) to--;
+            if (from < to) {
+                if (!first) buf[pos++] = '\n';
+                pos = encode(content, from, to, buf, pos);
+                first = false;
+            }
+            start = i = next;
+        }
+        buf[pos++] = '\n';
+        buf[pos++] = '\n';
+        return pos == buf.length ? buf : Arrays.copyOf(buf, pos);
+    }
+
+    // 将 [from, to) 范围内的字符按 UTF-8 编码写入 buf，返回写入后的位置
+    private static int encode(String text, int from, int to, byte[] buf, int pos) {
+        for (int i = from; i < to; i++) {
+            var c = text.charAt(i);
+            if (c < 0x80) buf[pos++] = (byte) c;
+            else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | c >> 6);
+                buf[pos++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    var codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    buf[pos++] = (byte) (0xF0 | codePoint >> 18);
+                    buf[pos++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    buf[pos++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    buf[pos++] = (byte) (0x80 | codePoint & 0x3F);
+                } else buf[pos++] = '?';// 与 String#getBytes 一致
+            } else {
+                buf[pos++] = (byte) (0xE0 | c >> 12);
+                buf[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buf[pos++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return pos;
+    }
+
     // 组件名
     static String name() {
         return "「椠」";
@@ -42,15 +121,9 @@ public interface Formatter extends Task<Chapter.Chapter4Format, Chapter.Chapter4
 
         public static Formatter contentFormatter() {
             return chapter4Format -> CompletableFuture.completedFuture(chapter4Format)
-                    .whenCompleteAsync((_, _) -> log.info("{} - 执行章节内容格式化操作", Formatter.name()), taskExecutor())
-                    .thenApplyAsync(Chapter.Chapter4Format::unformattedChapterContent, taskExecutor())
-                    .thenApplyAsync(unformattedChapterContent -> unformattedChapterContent.replaceAll("<br/>", "\n"), taskExecutor())// 替换换行符
-                    .thenApplyAsync(String::lines, taskExecutor())
-                    .thenApplyAsync(stringStream -> stringStream.filter(Assert::strNotBlank), taskExecutor())// 去除空白行
-                    .thenApplyAsync(stringStream -> stringStream.map(String::strip), taskExecutor())// 去除行首行尾空格
-                    .thenApplyAsync(stringStream -> stringStream.collect(Collectors.joining("\n")), taskExecutor())// 重新拼接换行
-                    .thenApplyAsync(chapterContext -> String.format("%s\n%s\n\n", chapter4Format.chapterName(), chapterContext), taskExecutor())// 拼接章节名，行尾添加两个换行符，方便后续文件合并
-                    .thenApplyAsync(chapterContext -> new Chapter.Chapter4Write(chapter4Format.bookName(), chapter4Format.chapterName(), chapter4Format.chapterOrdid(), chapterContext), taskExecutor());
+                    .whenCompleteAsync((_, _) -> ProgressLog.sampled(log).info("{} - 执行章节内容格式化操作", Formatter.name()), cpuExecutor())
+                    .thenApplyAsync(c4f -> Formatter.format0(c4f.chapterName(), c4f.unformattedChapterContent()), cpuExecutor())// 单趟完成换行替换、去除空白行与行首尾空白、拼接章节名与尾部双换行
+                    .thenApplyAsync(chapterBytes -> new Chapter.Chapter4Write(chapter4Format.bookName(), chapter4Format.chapterName(), chapter4Format.chapterOrdid(), chapterBytes), cpuExecutor());
         }
     }
 }
\ No newline at end of file
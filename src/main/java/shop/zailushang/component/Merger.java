@@ -3,12 +3,16 @@ package shop.zailushang.component;
 import lombok.extern.slf4j.Slf4j;
 import shop.zailushang.entity.Chapter;
 import shop.zailushang.entity.PartBook;
+import shop.zailushang.flow.FlowEngine;
+import shop.zailushang.util.BookAssembler;
 import shop.zailushang.util.BookCache;
+import shop.zailushang.util.BookIndex;
 import shop.zailushang.util.ScopedExecutor;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import static shop.zailushang.component.Task.cpuExecutor;
 import static shop.zailushang.component.Task.taskExecutor;
 
 /**
@@ -38,12 +42,67 @@ public interface Merger extends Task<List<Chapter.Chapter4Merge>, Chapter.Chapte
 
         public static Merger fileMerger() {
             return chapter4Merges -> CompletableFuture.completedFuture(chapter4Merges)
-                    .whenCompleteAsync((_, _) -> log.info("{} - 执行文件合并操作 待合并文件数量 => {}", Merger.name(), chapter4Merges.size()), taskExecutor())
-                    .thenApplyAsync(PartBook::of, taskExecutor())
-                    .thenApplyAsync(PartBook::compute, taskExecutor())// 提交异步任务
-                    .whenCompleteAsync((result, _) -> log.info("{} - 执行文件合并操作 成功合并文件数量 => {}", Merger.name(), result.successful()), taskExecutor())
-                    .thenRunAsync(() -> BookCache.removeFileChannel(ScopedExecutor.ScopedExecutors.KEY.get()), taskExecutor())// 合并完成时关闭文件通道
-                    .thenApplyAsync(_ -> Chapter.Chapter4Clean.of(chapter4Merges), taskExecutor());// 继续向后传递文件列表
+                    .whenCompleteAsync((_, _) -> log.info("{} - 执行文件合并操作 待合并文件数量 => {}", Merger.name(), chapter4Merges.size()), cpuExecutor())
+                    .thenComposeAsync(planned -> FlowEngine.USE_ASSEMBLER
+                            ? CompletableFuture.completedFuture(BookAssembler.assemble(ScopedExecutor.ScopedExecutors.KEY.get(), planned))// 按规划的偏移并行写入
+                            : PartBook.of(planned).computeAsync(), taskExecutor())// 提交异步任务，分治合并期间不阻塞等待子任务
+                    .whenCompleteAsync((_, _) -> BookCache.removeFileChannel(ScopedExecutor.ScopedExecutors.KEY.get()), taskExecutor())// 无论成败均关闭文件通道
+                    .thenAcceptAsync(result -> log.info("{} - 执行文件合并操作 成功合并文件数量 => {}", Merger.name(), result.successful()), cpuExecutor())
+                    .thenRunAsync(() -> writeIndex(chapter4Merges), taskExecutor())// 仅合并成功时写出索引，保留合并时已求得的偏移
+                    .whenCompleteAsync((_, e) -> {
+                        final var bookName = ScopedExecutor.ScopedExecutors.KEY.get();
+                        // 成功时断点记录不再需要；失败时仅关闭，保留日志与章节文件供下次续传
+                        if (e == null) BookCache.removeJournal(bookName);
+                        else BookCache.closeJournal(bookName);
+                    }, taskExecutor())
+                    .thenApplyAsync(_ -> Chapter.Chapter4Clean.of(chapter4Merges), cpuExecutor());// 继续向后传递文件列表
+        }
+
+        // 于书籍文件旁写出章节索引（EPUB 中的 skip 为压缩后的偏移，不适用）
+        private static void writeIndex(List<Chapter.Chapter4Merge> chapter4Merges) {
+            if (FlowEngine.USE_INDEX) BookIndex.write(BookCache.getTargetFilePath(ScopedExecutor.ScopedExecutors.KEY.get()), chapter4Merges);
+        }
+
+        // 顺序追加模式：章节已按顺序写入书籍文件，仅需关闭追加器
+        public static Merger appendMerger() {
+            return chapter4Merges -> CompletableFuture.completedFuture(chapter4Merges)
+                    .whenCompleteAsync((_, _) -> log.info("{} - 执行顺序追加收尾操作 已写入章节数量 => {}", Merger.name(), chapter4Merges.size()), cpuExecutor())
+                    .thenRunAsync(() -> BookCache.removeAppender(ScopedExecutor.ScopedExecutors.KEY.get()), taskExecutor())// 关闭追加器（刷盘）
+                    .thenRunAsync(() -> writeIndex(chapter4Merges), taskExecutor())// skip 即追加时的偏移
+                    .thenApplyAsync(_ -> new Chapter.Chapter4Clean(ScopedExecutor.ScopedExecutors.KEY.get(), List.of()), cpuExecutor());// 无零散文件需要清理
+        }
+
+        // 堆外暂存模式：按章节顺序一次性写出书籍文件，随后释放暂存区
+        public static Merger spoolMerger() {
+            return chapter4Merges -> CompletableFuture.completedFuture(chapter4Merges)
+                    .whenCompleteAsync((_, _) -> log.info("{} - 执行文件合并操作[堆外暂存] 待合并章节数量 => {}", Merger.name(), chapter4Merges.size()), cpuExecutor())
+                    .thenApplyAsync(_ -> ScopedExecutor.ScopedExecutors.KEY.get(), cpuExecutor())
+                    .thenApplyAsync(bookName -> {
+                        try {
+                            return BookCache.getSpool(bookName).writeTo(BookCache.getTargetFilePath(bookName));// 单次聚合写入
+                        } finally {
+                            BookCache.removeSpool(bookName);// 无论成败均释放堆外内存与映射
+                        }
+                    }, taskExecutor())
+                    .whenCompleteAsync((byteSize, _) -> log.info("{} - 执行文件合并操作[堆外暂存] 成功写入字节数 => {}", Merger.name(), byteSize), cpuExecutor())
+                    .thenRunAsync(() -> writeIndex(chapter4Merges), taskExecutor())// skip 即写出时的偏移
+                    .thenApplyAsync(_ -> new Chapter.Chapter4Clean(ScopedExecutor.ScopedExecutors.KEY.get(), List.of()), cpuExecutor());// 无零散文件需要清理
+        }
+
+        // EPUB 模式：章节已压缩，仅按章节顺序顺序写出容器与目录，随后释放已压缩的章节
+        public static Merger epubMerger() {
+            return chapter4Merges -> CompletableFuture.completedFuture(chapter4Merges)
+                    .whenCompleteAsync((_, _) -> log.info("{} - 执行文件合并操作[EPUB] 待合并章节数量 => {}", Merger.name(), chapter4Merges.size()), cpuExecutor())
+                    .thenApplyAsync(_ -> ScopedExecutor.ScopedExecutors.KEY.get(), cpuExecutor())
+                    .thenApplyAsync(bookName -> {
+                        try {
+                            return BookCache.getEpub(bookName).writeTo(BookCache.getEpubFilePath(bookName));// 单次聚合写入
+                        } finally {
+                            BookCache.removeEpub(bookName);// 无论成败均释放已压缩的章节
+                        }
+                    }, taskExecutor())
+                    .whenCompleteAsync((byteSize, _) -> log.info("{} - 执行文件合并操作[EPUB] 成功写入字节数 => {}", Merger.name(), byteSize), cpuExecutor())
+                    .thenApplyAsync(_ -> new Chapter.Chapter4Clean(ScopedExecutor.ScopedExecutors.KEY.get(), List.of()), cpuExecutor());// 无零散文件需要清理
         }
     }
 }
@@ -2,14 +2,17 @@ package shop.zailushang.component;
 
 import lombok.extern.slf4j.Slf4j;
 import shop.zailushang.entity.Chapter;
+import shop.zailushang.entity.ChapterListStream;
 import shop.zailushang.entity.Content;
-import shop.zailushang.entity.RelayNode;
 import shop.zailushang.util.CheckedExceptionFucker;
+import shop.zailushang.util.ProgressLog;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
-import static shop.zailushang.component.Task.taskExecutor;
+import static shop.zailushang.component.Task.cpuExecutor;
 
 /**
  * 组件：从选择的元素中进一步解析想要的内容
@@ -39,26 +42,32 @@ public interface Parser<T, R> extends Task<T, R> {
         public static Parser<String, String> bidParser() {
             // bid 无需额外解析，只是过个流程
             return source -> CompletableFuture.completedFuture(source)
-                    .whenCompleteAsync((_, _) -> log.info("{} - 执行解析bid内容操作", Parser.name()), taskExecutor());
+                    .whenCompleteAsync((_, _) -> log.info("{} - 执行解析bid内容操作", Parser.name()), cpuExecutor());
         }
 
         // 章节列表解析器
         public static Parser<String, List<Chapter.Chapter4Read>> chapterParser() {
             return chapterSource -> CompletableFuture.completedFuture(chapterSource)
-                    .whenCompleteAsync((_, _) -> log.info("{} - 执行解析章节列表操作", Parser.name()), taskExecutor())
-                    .thenApplyAsync(CheckedExceptionFucker::readTree, taskExecutor())// 返回根节点
-                    .thenApplyAsync(RelayNode::of, taskExecutor())// 转换为中继节点
-                    .thenApplyAsync(RelayNode::map2Chapter4ReadList, taskExecutor());// 转换为 Chapter4ReadList
+                    .whenCompleteAsync((_, _) -> log.info("{} - 执行解析章节列表操作", Parser.name()), cpuExecutor())
+                    .thenApplyAsync(ChapterListStream::of, cpuExecutor())// 逐个 token 解析，不构建树模型
+                    .thenApplyAsync(chapter4Reads -> chapter4Reads.sorted(Comparator.comparing(Chapter.Chapter4Read::chapterOrdid)).toList(), cpuExecutor());// 返回前排序
+        }
+
+        // 章节列表流式解析器：返回惰性的章节流，下游边拉取边解析
+        public static Parser<String, Stream<Chapter.Chapter4Read>> chapterStreamParser() {
+            return chapterSource -> CompletableFuture.completedFuture(chapterSource)
+                    .whenCompleteAsync((_, _) -> log.info("{} - 执行流式解析章节列表操作", Parser.name()), cpuExecutor())
+                    .thenApplyAsync(ChapterListStream::of, cpuExecutor());
         }
 
         // 章节内容解析器
         public static Parser<Chapter.Chapter4Parse, Chapter.Chapter4Decode> contentParser() {
             // 构建为 Chapter4Decode
             return chapter4Parse -> CompletableFuture.completedFuture(chapter4Parse)
-                    .whenCompleteAsync((_, _) -> log.info("{} - 执行解析章节内容操作", Parser.name()), taskExecutor())
-                    .thenApplyAsync(Chapter.Chapter4Parse::jsonCiphertext, taskExecutor())
-                    .thenApplyAsync(jsonCiphertext -> CheckedExceptionFucker.readValue(jsonCiphertext, Content.class), taskExecutor())
-                    .thenApplyAsync(content -> new Chapter.Chapter4Decode(chapter4Parse.bookName(), chapter4Parse.chapterName(), chapter4Parse.chapterOrdid(), content.ChapterContent()), taskExecutor());
+                    .whenCompleteAsync((_, _) -> ProgressLog.sampled(log).info("{} - 执行解析章节内容操作", Parser.name()), cpuExecutor())
+                    .thenApplyAsync(Chapter.Chapter4Parse::jsonBytes, cpuExecutor())
+                    .thenApplyAsync(jsonBytes -> CheckedExceptionFucker.readValue(jsonBytes, Content.class), cpuExecutor())// 直接从 UTF-8 字节解析
+                    .thenApplyAsync(content -> new Chapter.Chapter4Decode(chapter4Parse.bookName(), chapter4Parse.chapterName(), chapter4Parse.chapterOrdid(), content.ChapterContent()), cpuExecutor());
         }
     }
 }
\ No newline at end of file
@@ -4,14 +4,18 @@ import lombok.extern.slf4j.Slf4j;
 import shop.zailushang.entity.Chapter;
 import shop.zailushang.entity.Tao;
 import shop.zailushang.flow.FlowEngine;
+import shop.zailushang.util.Assert;
+import shop.zailushang.util.HttpCache;
+import shop.zailushang.util.ProgressLog;
 import shop.zailushang.util.RateLimiter;
 import shop.zailushang.util.ScopedExecutor;
+import shop.zailushang.util.Transport;
 
 import java.net.URI;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.concurrent.CompletableFuture;
 
+import static shop.zailushang.component.Task.cpuExecutor;
 import static shop.zailushang.component.Task.taskExecutor;
 
 /**
@@ -26,15 +30,39 @@ public interface Reader<T, R> extends Task<T, R> {
 
     CompletableFuture<R> read(T param) throws Exception;
 
-    // 发送请求,获取响应文本
-    static CompletableFuture<String> read0(String uri) {
-        var request = HttpRequest.newBuilder()
-                .uri(URI.create(uri))
+    // 发送请求,获取响应体（解压后的原始字节）
+    static CompletableFuture<byte[]> read0(String uri) {
+        // 协商压缩并设置超时
+        var builder = Transport.configure(HttpRequest.newBuilder())
+                .uri(URI.create(uri));
                 //.header("cookie", "") // 此处添加 VIP账号权限
-                .build();
+        // 已有过期缓存时发起条件请求
+        var stale = HttpCache.get(uri).orElse(null);
+        if (stale != null && stale.etag() != null) builder.header("If-None-Match", stale.etag());
+        if (stale != null && stale.lastModified() != null) builder.header("If-Modified-Since", stale.lastModified());
 
-        return FlowEngine.HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApplyAsync(HttpResponse::body, taskExecutor());
+        var start = System.nanoTime();
+        return FlowEngine.HTTP_CLIENT.sendAsync(builder.build(), Transport.decoding())// 边接收边解压
+                .whenCompleteAsync((response, _) -> {
+                    // 反馈状态码与延迟，调整流控速率（被限流时抛出异常）
+                    if (response != null) RateLimiter.feedback(uri, response.statusCode(), response.headers(), System.nanoTime() - start);
+                }, cpuExecutor())
+                .thenApplyAsync(response -> HttpCache.update(uri, response, stale), taskExecutor());// 写入或续期缓存
+    }
+
+    // 章节内容的请求地址
+    static String contentUri(Chapter.Chapter4Read chapter4Read) {
+        return Transport.CONTENT_ORIGIN.resolve("pcapi/chapter/contentfree/") + chapter4Read.contUrlSuffix();
+    }
+
+    /*
+     * 缓存专员（装饰器模式）：新鲜命中时直接返回，不再执行被装饰的任务（请求与流控）
+     */
+    static Task<String, byte[]> withCache(Task<String, ? extends byte[]> innerTask) {
+        Assert.isTrue(innerTask, Assert::isNotNull, () -> new NullPointerException("Knowledge is power. — Francis Bacon"));
+        return uri -> HttpCache.getFresh(uri)
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> innerTask.apply(uri).thenApply(byte[].class::cast));
     }
 
     // 组件名
@@ -50,35 +78,32 @@ public interface Reader<T, R> extends Task<T, R> {
         }
 
         // 获取bid的http请求器
-        public static Reader<Tao, String> bidReader() {
+        public static Reader<Tao, byte[]> bidReader() {
             // 获取BID的请求地址
-            final var bidUriFormatter = "https://www.shuqi.com/search?keyword=%s&page=1";
+            final var bidUriFormatter = Transport.SITE_ORIGIN + "search?keyword=%s&page=1";
             return _ -> CompletableFuture.completedFuture(ScopedExecutor.ScopedExecutors.KEY.get())
-                    .thenApplyAsync(bidUriFormatter::formatted, taskExecutor())
-                    .whenCompleteAsync((bidUri, _) -> log.info("{} - 执行获取bid操作 url => {}", Reader.name(), bidUri), taskExecutor())
-                    .thenComposeAsync(Reader::read0, taskExecutor());
+                    .thenApplyAsync(bidUriFormatter::formatted, cpuExecutor())
+                    .whenCompleteAsync((bidUri, _) -> log.info("{} - 执行获取bid操作 url => {}", Reader.name(), bidUri), cpuExecutor())
+                    .thenComposeAsync(withCache(Reader::read0), cpuExecutor());
         }
 
         // 获取章节列表的http请求器
-        public static Reader<String, String> chapterReader() {
+        public static Reader<String, byte[]> chapterReader() {
             // 获取章节列表的请求地址
-            final var chapterUriFormatter = "https://www.shuqi.com/reader?bid=%s";
+            final var chapterUriFormatter = Transport.SITE_ORIGIN + "reader?bid=%s";
             return bid -> CompletableFuture.completedFuture(bid)
-                    .thenApplyAsync(chapterUriFormatter::formatted, taskExecutor())
-                    .whenCompleteAsync((chapterUri, _) -> log.info("{} - 执行获取章节列表操作 url => {}", Reader.name(), chapterUri), taskExecutor())
-                    .thenComposeAsync(Reader::read0, taskExecutor());
+                    .thenApplyAsync(chapterUriFormatter::formatted, cpuExecutor())
+                    .whenCompleteAsync((chapterUri, _) -> log.info("{} - 执行获取章节列表操作 url => {}", Reader.name(), chapterUri), cpuExecutor())
+                    .thenComposeAsync(withCache(Reader::read0), cpuExecutor());
         }
 
         // 获取章节内容的http请求器
         public static Reader<Chapter.Chapter4Read, Chapter.Chapter4Select> contentReader() {
-            // 获取章节内容请求地址
-            final var contentUriFormatter = "https://c13.shuqireader.com/pcapi/chapter/contentfree/%s";
             return chapter4Read -> CompletableFuture.completedFuture(chapter4Read)
-                    .thenApplyAsync(Chapter.Chapter4Read::contUrlSuffix, taskExecutor())
-                    .thenApplyAsync(contentUriFormatter::formatted, taskExecutor())
-                    .whenCompleteAsync((contentUri, _) -> log.info("{} - 执行获取章节内容操作 url => {}", Reader.name(), contentUri), taskExecutor())
-                    .thenComposeAsync(Task.<String, String>withRateLimit(Reader::read0, RateLimiter.DELAY), taskExecutor())
-                    .thenApplyAsync(jsonStr -> new Chapter.Chapter4Select(chapter4Read.bookName(), chapter4Read.chapterName(), chapter4Read.chapterOrdid(), jsonStr), taskExecutor());
+                    .thenApplyAsync(Reader::contentUri, cpuExecutor())// 获取章节内容请求地址
+                    .whenCompleteAsync((contentUri, _) -> ProgressLog.sampled(log).info("{} - 执行获取章节内容操作 url => {}", Reader.name(), contentUri), cpuExecutor())
+                    .thenComposeAsync(withCache(Task.<String, byte[]>withRateLimit(Reader::read0, RateLimiter::hostOf)), cpuExecutor())// 缓存命中时跳过流控
+                    .thenApplyAsync(jsonBytes -> new Chapter.Chapter4Select(chapter4Read.bookName(), chapter4Read.chapterName(), chapter4Read.chapterOrdid(), jsonBytes), cpuExecutor());// 响应体保持为字节，交由 Jackson 直接解析
         }
     }
 }
\ No newline at end of file
@@ -1,13 +1,14 @@
 package shop.zailushang.component;
 
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.select.Elements;
 import shop.zailushang.entity.Chapter;
+import shop.zailushang.util.HtmlPath;
+import shop.zailushang.util.ProgressLog;
 
+import java.util.NoSuchElementException;
 import java.util.concurrent.CompletableFuture;
 
-import static shop.zailushang.component.Task.taskExecutor;
+import static shop.zailushang.component.Task.cpuExecutor;
 
 /**
  * 组件：从响应文本中挑选所需的元素
@@ -33,34 +34,31 @@ public interface Selector<T, R> extends Task<T, R> {
             log.info("\u001B[35m敕令：「天圆地方，律令九章，吾今下笔，万鬼伏藏。」 ~ {}\u001B[0m", Selector.name());
         }
 
-        // bid元素选择器
-        public static Selector<String, String> bidSelector() {
+        // bid元素选择器：流式匹配，找到即停止解析
+        public static Selector<byte[], String> bidSelector() {
             // bid元素所在位置:  <span class="btn js-addShelf disable" data-bid="53258" data-clog="shelf-shelf$$bid=53258">+书架</span>
             final var bidXpath = "/html/body/div[1]/div[3]/div/div[4]/div/span[2]";
+            final var bidPath = HtmlPath.compile(bidXpath);
             return bidDoc -> CompletableFuture.completedFuture(bidDoc)
-                    .whenCompleteAsync((_, _) -> log.info("{} - 执行选择bid元素操作", Selector.name()), taskExecutor())
-                    .thenApplyAsync(Jsoup::parse, taskExecutor())
-                    .thenApplyAsync(doc -> doc.selectXpath(bidXpath), taskExecutor())
-                    .thenApplyAsync(Elements::getFirst, taskExecutor())
-                    .thenApplyAsync(node -> node.attr("data-bid"), taskExecutor());
+                    .whenCompleteAsync((_, _) -> log.info("{} - 执行选择bid元素操作", Selector.name()), cpuExecutor())
+                    .thenApplyAsync(doc -> bidPath.attr(doc, "data-bid").orElseThrow(() -> new NoSuchElementException("bid element not found: " + bidXpath)), cpuExecutor());
         }
 
-        // 章节列表元素选择器
-        public static Selector<String, String> chapterSelector() {
+        // 章节列表元素选择器：流式匹配，找到即停止解析
+        public static Selector<byte[], String> chapterSelector() {
             final var chapterXpath = "/html/body/i[5]";
+            final var chapterPath = HtmlPath.compile(chapterXpath);
             return chapterDoc -> CompletableFuture.completedFuture(chapterDoc)
-                    .whenCompleteAsync((_, _) -> log.info("{} - 执行选择章节列表元素操作", Selector.name()), taskExecutor())
-                    .thenApplyAsync(Jsoup::parse, taskExecutor())
-                    .thenApplyAsync(doc -> doc.selectXpath(chapterXpath), taskExecutor())
-                    .thenApplyAsync(Elements::text, taskExecutor());
+                    .whenCompleteAsync((_, _) -> log.info("{} - 执行选择章节列表元素操作", Selector.name()), cpuExecutor())
+                    .thenApplyAsync(doc -> chapterPath.text(doc).orElseThrow(() -> new NoSuchElementException("chapter list element not found: " + chapterXpath)), cpuExecutor());
         }
 
         // 章节内容元素选择器
         public static Selector<Chapter.Chapter4Select, Chapter.Chapter4Parse> contentSelector() {
             // map 2 Chapter4Parse
             return chapter4Select -> CompletableFuture.completedFuture(chapter4Select)
-                    .whenCompleteAsync((_, _) -> log.info("{} - 执行选择章节内容元素操作", Selector.name()), taskExecutor())
-                    .thenApplyAsync(c4s -> new Chapter.Chapter4Parse(c4s.bookName(), c4s.chapterName(), c4s.chapterOrdid(), c4s.jsonCiphertext()), taskExecutor());
+                    .whenCompleteAsync((_, _) -> ProgressLog.sampled(log).info("{} - 执行选择章节内容元素操作", Selector.name()), cpuExecutor())
+                    .thenApplyAsync(c4s -> new Chapter.Chapter4Parse(c4s.bookName(), c4s.chapterName(), c4s.chapterOrdid(), c4s.jsonBytes()), cpuExecutor());
         }
     }
 }
\ No newline at end of file
@@ -1,15 +1,17 @@
 package shop.zailushang.component;
 
+import shop.zailushang.flow.FlowEngine;
 import shop.zailushang.util.Assert;
+import shop.zailushang.util.FlightEvents;
+import shop.zailushang.util.ProgressLog;
 import shop.zailushang.util.RateLimiter;
 import shop.zailushang.util.ScopedExecutor;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /*
  * 抽象通用节点
@@ -35,16 +37,54 @@ public interface Task<T, R> extends Function<T, CompletableFuture<R>> {
      */
     default <V> Task<T, V> then(Task<? super R, V> next) {
         Assert.isTrue(next, Assert::isNotNull, () -> new NullPointerException("An unexamined life is not worth living. — Socrates"));
-        return t -> execute(t).thenCompose(next);
+        final var head = traced(this);
+        final var tail = traced(next);
+        return (Traced<T, V>) t -> head.execute(t).thenCompose(tail);
     }
 
     /*
      * 高阶函数：利用函数式编程的函数组合特性，来组装两个任务
-     * 异步调用链
+     * 异步调用链（融合模式下不再为衔接两个任务额外切换线程，由任务内部的 I/O 步骤决定何时异步）
      */
     default <V> Task<T, V> thenAsync(Task<? super R, V> next) {
         Assert.isTrue(next, Assert::isNotNull, () -> new NullPointerException("An unexamined life is not worth living. — Socrates"));
-        return t -> execute(t).thenComposeAsync(next, taskExecutor());
+        final var head = traced(this);
+        final var tail = traced(next);
+        return (Traced<T, V>) t -> head.execute(t).thenComposeAsync(tail, cpuExecutor());
+    }
+
+    /*
+     * 已纳入飞行记录的任务：组装而成的任务链，或已装饰的单个任务，不再重复装饰
+     */
+    @FunctionalInterface
+    interface Traced<T, R> extends Task<T, R> {
+    }
+
+    /*
+     * 飞行记录专员（装饰器模式）：为单个任务记录 JFR 阶段事件与汇总日志的阶段统计，组装任务链时自动装饰，自定义流程亦同
+     * 未开启记录且为详细日志模式时直接执行被装饰的任务
+     */
+    static <T, R> Task<T, R> traced(Task<T, R> task) {
+        Assert.isTrue(task, Assert::isNotNull, () -> new NullPointerException("What gets measured gets managed. — Peter Drucker"));
+        if (task instanceof Traced<T, R>) return task;
+        final var stage = FlightEvents.stageOf(task.getClass());
+        return (Traced<T, R>) t -> {
+            final var event = new FlightEvents.StageEvent();
+            if (!event.isEnabled() && FlowEngine.VERBOSE_LOG) return task.execute(t);
+            final var bookName = FlightEvents.bookOf(t);
+            final var start = System.nanoTime();
+            event.begin();
+            try {
+                return task.execute(t).whenComplete((r, e) -> {
+                    ProgressLog.record(bookName, stage, FlightEvents.ordidOf(t), start, e);
+                    FlightEvents.commit(event, stage, bookName, t, r, e);
+                });
+            } catch (Exception e) {
+                ProgressLog.record(bookName, stage, FlightEvents.ordidOf(t), start, e);
+                FlightEvents.commit(event, stage, bookName, t, null, e);
+                throw e;
+            }
+        };
     }
 
     /*
@@ -89,24 +129,95 @@ public interface Task<T, R> extends Function<T, CompletableFuture<R>> {
         Assert.isTrue(before, Assert::isNotNull, () -> new NullPointerException("The future depends on what you do today. — Mahatma Gandhi"));
         Assert.isTrue(task, Assert::isNotNull, () -> new NullPointerException("The future depends on what you do today. — Mahatma Gandhi"));
         Assert.isTrue(after, Assert::isNotNull, () -> new NullPointerException("The future depends on what you do today. — Mahatma Gandhi"));
-        final var atomicReference = new AtomicReference<CompletableFuture[]>();
         return items -> CompletableFuture.completedFuture(items)
-                .thenApplyAsync(before, taskExecutor()) // 参数前置处理
-                .thenApplyAsync(list -> atomicReference.updateAndGet(_ -> list.stream().map(task).toArray(CompletableFuture[]::new)), taskExecutor()) // 并行执行任务
-                .thenComposeAsync(CompletableFuture::allOf, taskExecutor()) // 等待所有任务完成
-                .thenApplyAsync(_ -> Arrays.stream(atomicReference.get()).map(CompletableFuture<R>::join).toList(), taskExecutor()) // 汇总任务结果
-                .thenApplyAsync(after, taskExecutor()); // 返回值后置处理
+                .thenApplyAsync(before, cpuExecutor()) // 参数前置处理
+                .thenApplyAsync(list -> list.stream().map(item -> CompletableFuture.completedFuture(item).thenComposeAsync(task, taskExecutor())).toArray(CompletableFuture[]::new), cpuExecutor()) // 并行执行任务（每项各自派发至虚拟线程，融合模式下亦保持并行）
+                .thenComposeAsync(futures -> CompletableFuture.allOf(futures).thenApply(_ -> Arrays.stream(futures).map(CompletableFuture<R>::join).toList()), cpuExecutor()) // 等待所有任务完成并汇总结果（每次执行各自持有 futures，并发执行互不干扰）
+                .thenApplyAsync(after, cpuExecutor()); // 返回值后置处理
+    }
+
+    /*
+     * 窗口化并行任务：最多 window 个任务同时在途，先派发的完成后再补入，结果按输入顺序返回
+     * 在途任务持有的章节数据随之受限，峰值内存不再随输入规模增长
+     */
+    static <T, R> Task<List<T>, List<R>> parallelTask(Function<List<T>, List<T>> before, Task<? super T, R> task, Function<List<R>, List<R>> after, Window window) {
+        Assert.isTrue(before, Assert::isNotNull, () -> new NullPointerException("The future depends on what you do today. — Mahatma Gandhi"));
+        Assert.isTrue(task, Assert::isNotNull, () -> new NullPointerException("The future depends on what you do today. — Mahatma Gandhi"));
+        Assert.isTrue(after, Assert::isNotNull, () -> new NullPointerException("The future depends on what you do today. — Mahatma Gandhi"));
+        Assert.isTrue(window, Assert::isNotNull, () -> new NullPointerException("The future depends on what you do today. — Mahatma Gandhi"));
+        return items -> CompletableFuture.completedFuture(items)
+                .thenApplyAsync(before, cpuExecutor()) // 参数前置处理
+                .thenComposeAsync(list -> new Windowed<T, R>(list.iterator(), task, window, taskExecutor()).start(), cpuExecutor()) // 窗口内并行执行，完成一项补入一项
+                .thenApplyAsync(after, cpuExecutor()); // 返回值后置处理
     }
 
     /*
-     * 流控任务专员（装饰器模式）
+     * 流式并行任务：边从流中拉取边派发，无需等待上游产出全部元素
      */
-    static <T, R> Task<T, ? extends R> withRateLimit(Task<? super T, R> innerTask, long delay) {
+    static <T, R> Task<Stream<T>, List<R>> streamTask(Function<Stream<T>, Stream<T>> before, Task<? super T, R> task, Function<List<R>, List<R>> after) {
+        Assert.isTrue(before, Assert::isNotNull, () -> new NullPointerException("A journey of a thousand miles begins with a single step. — Lao Tzu"));
+        Assert.isTrue(task, Assert::isNotNull, () -> new NullPointerException("A journey of a thousand miles begins with a single step. — Lao Tzu"));
+        Assert.isTrue(after, Assert::isNotNull, () -> new NullPointerException("A journey of a thousand miles begins with a single step. — Lao Tzu"));
+        return items -> CompletableFuture.completedFuture(items)
+                .thenApplyAsync(before, cpuExecutor()) // 参数前置处理
+                .thenApplyAsync(stream -> stream.map(item -> CompletableFuture.completedFuture(item).thenComposeAsync(task, taskExecutor())).toList(), cpuExecutor()) // 每拉取一项即派发至虚拟线程
+                .thenComposeAsync(futures -> CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenApply(_ -> futures.stream().map(CompletableFuture<R>::join).toList()), cpuExecutor()) // 等待所有任务完成并汇总结果
+                .thenApplyAsync(after, cpuExecutor()); // 返回值后置处理
+    }
+
+    /*
+     * 窗口化流式并行任务：窗口有空位时才从流中拉取下一项，上游的惰性解析随下载进度推进
+     */
+    static <T, R> Task<Stream<T>, List<R>> streamTask(Function<Stream<T>, Stream<T>> before, Task<? super T, R> task, Function<List<R>, List<R>> after, Window window) {
+        Assert.isTrue(before, Assert::isNotNull, () -> new NullPointerException("A journey of a thousand miles begins with a single step. — Lao Tzu"));
+        Assert.isTrue(task, Assert::isNotNull, () -> new NullPointerException("A journey of a thousand miles begins with a single step. — Lao Tzu"));
+        Assert.isTrue(after, Assert::isNotNull, () -> new NullPointerException("A journey of a thousand miles begins with a single step. — Lao Tzu"));
+        Assert.isTrue(window, Assert::isNotNull, () -> new NullPointerException("A journey of a thousand miles begins with a single step. — Lao Tzu"));
+        return items -> CompletableFuture.completedFuture(items)
+                .thenApplyAsync(before, cpuExecutor()) // 参数前置处理
+                .thenComposeAsync(stream -> new Windowed<T, R>(stream.iterator(), task, window, taskExecutor()).start(), cpuExecutor()) // 窗口内并行执行，完成一项再拉取一项
+                .thenApplyAsync(after, cpuExecutor()); // 返回值后置处理
+    }
+
+    /**
+     * 并行窗口
+     * 仅限制在途任务数：章节正文在任务内部下载、排版并写出，派发前无从得知其大小，在途数据量由任务数间接限定
+     *
+     * @param maxItems 同时在途的任务数上限
+     */
+    record Window(Integer maxItems) {
+        public Window {
+            Assert.isTrue(maxItems, n -> n > 0, () -> new IllegalArgumentException("maxItems must be positive"));
+        }
+
+        // maxItems 不大于 0 时不限
+        public static Window items(int maxItems) {
+            return new Window(maxItems > 0 ? maxItems : Integer.MAX_VALUE);
+        }
+    }
+
+    /*
+     * 流控任务专员（装饰器模式）：按 hostOf 给出的主机选择流控器，被限流时按 Retry-After 退避后重试
+     */
+    static <T, R> Task<T, ? extends R> withRateLimit(Task<? super T, R> innerTask, Function<? super T, String> hostOf) {
         Assert.isTrue(innerTask, Assert::isNotNull, () -> new NullPointerException("The only way to do great work is to love what you do. — Steve Jobs"));
-        return t -> CompletableFuture.completedFuture(t)
-                .thenApplyAsync(RateLimiter::acquire, taskExecutor()) // 执行任务前获取信号量
-                .thenComposeAsync(innerTask, CompletableFuture.delayedExecutor(delay, TimeUnit.SECONDS, taskExecutor()))// 使用包装后带延时的线程池
-                .whenCompleteAsync(RateLimiter::release, taskExecutor()); // 任务结束时释放信号量
+        Assert.isTrue(hostOf, Assert::isNotNull, () -> new NullPointerException("The only way to do great work is to love what you do. — Steve Jobs"));
+        return t -> withRateLimit0(innerTask, RateLimiter.of(hostOf.apply(t)), t, 0);
+    }
+
+    private static <T, R> CompletableFuture<R> withRateLimit0(Task<? super T, R> innerTask, RateLimiter.HostLimiter limiter, T t, int attempt) {
+        return CompletableFuture.completedFuture(t)
+                .thenComposeAsync(param -> {
+                    // 等待令牌（不占用许可），再获取并发许可；获取失败时不释放
+                    limiter.acquire(param);
+                    try {
+                        return innerTask.apply(param).whenComplete((_, _) -> limiter.release()); // 任务结束时释放并发许可
+                    } catch (RuntimeException e) {
+                        limiter.release();
+                        throw e;
+                    }
+                }, taskExecutor())
+                .exceptionallyComposeAsync(e -> limiter.shouldRetry(e, attempt) ? withRateLimit0(innerTask, limiter, t, attempt + 1) : CompletableFuture.failedFuture(e), cpuExecutor()); // 被限流时重试
     }
 
     /*
@@ -115,4 +226,12 @@ public interface Task<T, R> extends Function<T, CompletableFuture<R>> {
     static ScopedExecutor taskExecutor() {
         return ScopedExecutor.ScopedExecutors.newScopedExecutor();
     }
+
+    /*
+     * CPU 型步骤专用线程池：融合模式下于当前线程内联执行（同样绑定 ScopedValue），将相邻的纯计算步骤合并为一次延续
+     * I/O 边界（http 请求、文件读写、流控等待）仍须使用 taskExecutor()
+     */
+    static ScopedExecutor cpuExecutor() {
+        return FlowEngine.USE_FUSION ? ScopedExecutor.ScopedExecutors.newInlineScopedExecutor() : taskExecutor();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package shop.zailushang.component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 窗口化的并行执行：按输入顺序逐个派发，在途任务数达到上限时暂停拉取，任一任务完成后再补入
+ * 1. 输入为迭代器，流式输入只在有空位时才拉取下一项
+ * 2. 结果按输入顺序汇总，与完成顺序无关
+ * 3. 任一任务失败即整体失败，不再派发新任务（已在途的任务照常结束）
+ *
+ * @see Task.Window
+ */
+final class Windowed<T, R> {
+    private final Iterator<? extends T> items;
+    private final Task<? super T, R> task;
+    private final Task.Window window;
+    // 于派发时所在的作用域中创建，完成回调所在的线程未必绑定书名
+    private final Executor executor;
+    private final CompletableFuture<List<R>> result = new CompletableFuture<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // 以下字段均在持有锁时访问
+    private final List<R> results = new ArrayList<>();
+    // 已拉取但窗口已满，尚未派发的一项
+    private T pending;
+    private boolean exhausted;
+    private int inFlight;
+
+    Windowed(Iterator<? extends T> items, Task<? super T, R> task, Task.Window window, Executor executor) {
+        this.items = items;
+        this.task = task;
+        this.window = window;
+        this.executor = executor;
+    }
+
+    CompletableFuture<List<R>> start() {
+        admit();
+        return result;
+    }
+
+    /*
+     * 补入任务直至窗口填满或输入耗尽；在锁外派发，全部完成时在锁外交付结果
+     */
+    private void admit() {
+        final var dispatches = new ArrayList<Runnable>();
+        var done = false;
+        lock.lock();
+        try {
+            while (!result.isDone()) {
+                if (pending == null) {
+                    if (!items.hasNext()) {
+                        exhausted = true;
+                        break;
+                    }
+                    pending = items.next();
+                }
+                if (inFlight >= window.maxItems()) break;
+                final var index = results.size();
+                final var item = pending;
+                results.add(null);
+                pending = null;
+                inFlight++;
+                dispatches.add(() -> dispatch(index, item));
+            }
+            done = exhausted && inFlight == 0;
+        } catch (RuntimeException e) {
+            // 流式输入在拉取时解析失败
+            result.completeExceptionally(e);
+        } finally {
+            lock.unlock();
+        }
+        if (done) result.complete(Collections.unmodifiableList(results));
+        dispatches.forEach(Runnable::run);
+    }
+
+    private void dispatch(int index, T item) {
+        CompletableFuture.completedFuture(item)
+                .thenComposeAsync(task, executor)
+                .whenComplete((r, e) -> {
+                    lock.lock();
+                    try {
+                        results.set(index, r);
+                        inFlight--;
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (e != null) result.completeExceptionally(e);
+                    else admit();
+                });
+    }
+}
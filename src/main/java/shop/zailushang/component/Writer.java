@@ -3,6 +3,8 @@ package shop.zailushang.component;
 import lombok.extern.slf4j.Slf4j;
 import shop.zailushang.entity.Chapter;
 import shop.zailushang.util.BookCache;
+import shop.zailushang.util.ProgressLog;
+import shop.zailushang.util.ScopedExecutor;
 
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
@@ -10,6 +12,7 @@ import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 import java.util.concurrent.CompletableFuture;
 
+import static shop.zailushang.component.Task.cpuExecutor;
 import static shop.zailushang.component.Task.taskExecutor;
 
 /**
@@ -40,18 +43,15 @@ public interface Writer extends Task<Chapter.Chapter4Write, Chapter.Chapter4Merg
         var filePath = BookCache.getFilePath(bookName, chapterOrdid);
         try {
             /*
-             * 此处为并发环境, double check 以创建文件夹，实则是多余操作
-             * Files.createDirectories(folderPath) 行为：不存在则创建，存在时则不作任何操作，故为线程安全的操作
-             * 多余的判断行为姑且就算做是用于提醒注意当前操作环境吧
+             * 此处为并发环境，Files.createDirectories(folderPath) 行为：不存在则创建，存在时则不作任何操作，为线程安全的操作
+             * 故无需以 bookName.intern() 加锁，同一本书的各章写入不必在同一把锁上串行（JDK 24 起持有监视器已不再钉住虚拟线程，去锁并非为此）
              */
-            if (Files.notExists(folderPath)) {
-                // 使用 String 作为锁对象时，intern 确保使用同一对象
-                synchronized (bookName.intern()) {
-                    if (Files.notExists(folderPath)) Files.createDirectories(folderPath);
-                }
-            }
+            if (Files.notExists(folderPath)) Files.createDirectories(folderPath);
             // 执行文件写入
-            Files.writeString(filePath, chapter.chapterContext(), StandardCharsets.UTF_8);
+            var bytes = chapter.chapterBytes();
+            Files.write(filePath, bytes);
+            // 写入完成后记录断点（批量落盘）
+            BookCache.findJournal(bookName).ifPresent(journal -> journal.complete(chapterOrdid, bytes));
             // 写入完成后打开只读文件通道
             var fileChannel = FileChannel.open(filePath, StandardOpenOption.READ);
             var chapter4Merge = new Chapter.Chapter4Merge(bookName, chapter.chapterOrdid(), filePath, fileChannel);
@@ -61,6 +61,29 @@ public interface Writer extends Task<Chapter.Chapter4Write, Chapter.Chapter4Merg
         }
     }
 
+    // 顺序追加至书籍文件，返回的 Chapter4Merge 无文件通道，skip 为该章在书籍文件中的起始偏移
+    static CompletableFuture<Chapter.Chapter4Merge> append0(Chapter.Chapter4Write chapter) {
+        // 追加器以作用域中的书名注册，见 Flow.Flows#contentListFlow
+        var appender = BookCache.getAppender(ScopedExecutor.ScopedExecutors.KEY.get());
+        var bytes = chapter.chapterBytes();
+        return appender.append(chapter.chapterOrdid(), bytes)
+                .thenApply(skip -> new Chapter.Chapter4Merge(chapter.bookName(), chapter.chapterOrdid(), appender.targetPath(), null, skip));
+    }
+
+    // 暂存至堆外暂存区，skip 待全部章节就绪后按顺序计算
+    static CompletableFuture<Chapter.Chapter4Merge> spool0(Chapter.Chapter4Write chapter) {
+        // 暂存区以作用域中的书名注册，见 Flow.Flows#contentListFlow
+        BookCache.getSpool(ScopedExecutor.ScopedExecutors.KEY.get()).put(chapter.chapterOrdid(), chapter.chapterBytes());
+        return CompletableFuture.completedFuture(new Chapter.Chapter4Merge(chapter.bookName(), chapter.chapterOrdid(), null, null));
+    }
+
+    // 转换为 XHTML 并压缩后收录至 EPUB，skip 待全部章节就绪后按顺序计算
+    static CompletableFuture<Chapter.Chapter4Merge> epub0(Chapter.Chapter4Write chapter) {
+        // EPUB 以作用域中的书名注册，见 Flow.Flows#contentListFlow
+        BookCache.getEpub(ScopedExecutor.ScopedExecutors.KEY.get()).put(chapter.chapterOrdid(), chapter.chapterName(), chapter.chapterBytes());
+        return CompletableFuture.completedFuture(new Chapter.Chapter4Merge(chapter.bookName(), chapter.chapterOrdid(), null, null));
+    }
+
     @Slf4j
     class Writers {
 
@@ -72,18 +95,42 @@ public interface Writer extends Task<Chapter.Chapter4Write, Chapter.Chapter4Merg
         public static Writer consoleWriter() {
             final var part = "-".repeat(15);
             return chapter4Write -> CompletableFuture.completedFuture(chapter4Write)
-                    .whenCompleteAsync((_, _) -> log.info("{} - 执行文件写入操作[控制台]", Writer.name()), taskExecutor())
-                    .thenApplyAsync(c4w -> String.format("%s\t%s\t%s\n%s", part, c4w.chapterName(), part, c4w.chapterContext()), taskExecutor())
+                    .whenCompleteAsync((_, _) -> ProgressLog.sampled(log).info("{} - 执行文件写入操作[控制台]", Writer.name()), cpuExecutor())
+                    .thenApplyAsync(c4w -> String.format("%s\t%s\t%s\n%s", part, c4w.chapterName(), part, new String(c4w.chapterBytes(), StandardCharsets.UTF_8)), cpuExecutor())
                     .whenCompleteAsync((chapterContent, _) -> IO.println(chapterContent), taskExecutor())
-                    .thenApplyAsync(_ -> null, taskExecutor());
+                    .thenApplyAsync(_ -> null, cpuExecutor());
         }
 
         // 将章节内容写入文件
         public static Writer fileWriter() {
             return chapter4Write -> CompletableFuture.completedFuture(chapter4Write)
-                    .whenCompleteAsync((_, _) -> log.info("{} - 执行文件写入操作[文件系统]", Writer.name()), taskExecutor())
+                    .whenCompleteAsync((_, _) -> ProgressLog.sampled(log).info("{} - 执行文件写入操作[文件系统]", Writer.name()), cpuExecutor())
                     .thenComposeAsync(Writer::write0, taskExecutor())
-                    .whenCompleteAsync((chapter4Merge, _) -> log.info("{} - 文件写入操作[文件系统]完成 path => {}", Writer.name(), chapter4Merge.filePath()), taskExecutor());
+                    .whenCompleteAsync((chapter4Merge, _) -> ProgressLog.sampled(log).info("{} - 文件写入操作[文件系统]完成 path => {}", Writer.name(), chapter4Merge.filePath()), cpuExecutor());
+        }
+
+        // 将章节内容按章节顺序追加至书籍文件
+        public static Writer appendWriter() {
+            return chapter4Write -> CompletableFuture.completedFuture(chapter4Write)
+                    .whenCompleteAsync((_, _) -> ProgressLog.sampled(log).info("{} - 执行文件写入操作[顺序追加]", Writer.name()), cpuExecutor())
+                    .thenComposeAsync(Writer::append0, taskExecutor())// 乱序到达且缓冲区已满时会阻塞等待
+                    .whenCompleteAsync((chapter4Merge, _) -> ProgressLog.sampled(log).info("{} - 文件写入操作[顺序追加]完成 chapterOrdid => {}, skip => {}", Writer.name(), chapter4Merge.chapterOrdid(), chapter4Merge.skip()), cpuExecutor());
+        }
+
+        // 将章节内容暂存至堆外内存
+        public static Writer spoolWriter() {
+            return chapter4Write -> CompletableFuture.completedFuture(chapter4Write)
+                    .whenCompleteAsync((_, _) -> ProgressLog.sampled(log).info("{} - 执行文件写入操作[堆外暂存]", Writer.name()), cpuExecutor())
+                    .thenComposeAsync(Writer::spool0, taskExecutor())// 溢写时涉及文件映射
+                    .whenCompleteAsync((chapter4Merge, _) -> ProgressLog.sampled(log).info("{} - 文件写入操作[堆外暂存]完成 chapterOrdid => {}", Writer.name(), chapter4Merge.chapterOrdid()), cpuExecutor());
+        }
+
+        // 将章节内容压缩后收录至 EPUB
+        public static Writer epubWriter() {
+            return chapter4Write -> CompletableFuture.completedFuture(chapter4Write)
+                    .whenCompleteAsync((_, _) -> ProgressLog.sampled(log).info("{} - 执行文件写入操作[EPUB]", Writer.name()), cpuExecutor())
+                    .thenComposeAsync(Writer::epub0, taskExecutor())// 各章于各自的虚拟线程中压缩，不占用融合执行的排版线程
+                    .whenCompleteAsync((chapter4Merge, _) -> ProgressLog.sampled(log).info("{} - 文件写入操作[EPUB]完成 chapterOrdid => {}", Writer.name(), chapter4Merge.chapterOrdid()), cpuExecutor());
         }
     }
 }
\ No newline at end of file
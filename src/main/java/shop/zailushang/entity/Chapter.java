@@ -1,11 +1,15 @@
 package shop.zailushang.entity;
 
 import shop.zailushang.flow.FlowEngine;
+import shop.zailushang.util.BookCache;
 
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
 
 // 章节内容
 public class Chapter {
@@ -13,12 +17,18 @@ public class Chapter {
     public record Chapter4Read(String bookName, String chapterName, Integer chapterOrdid, String contUrlSuffix) {
     }
 
-    // 选择时
-    public record Chapter4Select(String bookName, String chapterName, Integer chapterOrdid, String jsonCiphertext) {
+    // 选择时：响应体保持为原始字节（UTF-8），不解码为 String
+    public record Chapter4Select(String bookName, String chapterName, Integer chapterOrdid, byte[] jsonBytes) {
+        public Chapter4Select(String bookName, String chapterName, Integer chapterOrdid, String jsonCiphertext) {
+            this(bookName, chapterName, chapterOrdid, jsonCiphertext.getBytes(StandardCharsets.UTF_8));
+        }
     }
 
-    // 解析时
-    public record Chapter4Parse(String bookName, String chapterName, Integer chapterOrdid, String jsonCiphertext) {
+    // 解析时：由 Jackson 直接从字节解析
+    public record Chapter4Parse(String bookName, String chapterName, Integer chapterOrdid, byte[] jsonBytes) {
+        public Chapter4Parse(String bookName, String chapterName, Integer chapterOrdid, String jsonCiphertext) {
+            this(bookName, chapterName, chapterOrdid, jsonCiphertext.getBytes(StandardCharsets.UTF_8));
+        }
     }
 
     // 解密时
@@ -30,8 +40,11 @@ public class Chapter {
                                  String unformattedChapterContent) {
     }
 
-    // 保存时
-    public record Chapter4Write(String bookName, String chapterName, Integer chapterOrdid, String chapterContext) {
+    // 保存时：排版后的章节内容已编码为 UTF-8 字节，写入器原样落盘
+    public record Chapter4Write(String bookName, String chapterName, Integer chapterOrdid, byte[] chapterBytes) {
+        public Chapter4Write(String bookName, String chapterName, Integer chapterOrdid, String chapterContext) {
+            this(bookName, chapterName, chapterOrdid, chapterContext.getBytes(StandardCharsets.UTF_8));
+        }
     }
 
     // 文件合并时
@@ -44,15 +57,38 @@ public class Chapter {
             this(bookName, orderId, filePath, fileChannel, -1L);
         }
 
-        public static Chapter4Merge of(Chapter4Merge chapter4Merge, AtomicLong atomicLong) {
+        // 续传时重新打开上次已写入的章节文件
+        public static Chapter4Merge reopen(String bookName, Integer chapterOrdid) {
+            try {
+                var filePath = BookCache.getFilePath(bookName, chapterOrdid);
+                return new Chapter4Merge(bookName, chapterOrdid, filePath, FileChannel.open(filePath, StandardOpenOption.READ));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        // 章节文件大小（字节）
+        public long size() {
             try {
-                // 设置每章的跳过字节数 skip : atoLong.getAndAdd(size)
-                var size = chapter4Merge.fileChannel().size();
-                return new Chapter.Chapter4Merge(chapter4Merge, atomicLong.getAndAdd(size));
+                return fileChannel.size();
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         }
+
+        /*
+         * 按列表顺序设置每章的跳过字节数 skip：于调用线程顺序读取各章大小并累加
+         * FileChannel.size 为阻塞的系统调用，不交由公共 ForkJoinPool 并行执行
+         */
+        public static List<Chapter4Merge> plan(List<Chapter4Merge> chapter4Merges) {
+            var planned = new ArrayList<Chapter4Merge>(chapter4Merges.size());
+            var skip = 0L;
+            for (var chapter4Merge : chapter4Merges) {
+                planned.add(new Chapter4Merge(chapter4Merge, skip));
+                skip += chapter4Merge.size();
+            }
+            return Collections.unmodifiableList(planned);
+        }
     }
 
     // 清理时
@@ -0,0 +1,148 @@
+package shop.zailushang.entity;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import shop.zailushang.util.CheckedExceptionFucker;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 章节列表的流式解析：逐个 token 读取，每读完一个章节对象即产出一个 Chapter4Read，不构建树模型
+ * {bookName, chapterList:[{volumeList:[{chapterName,chapterOrdid,contUrlSuffix}]}]}
+ * 1. 惰性求值：下游拉取一章才解析一章，前面卷的章节可先行下载，后面的卷仍在解析
+ * 2. bookName 若出现在 chapterList 之后，之前读到的章节暂存，读到 bookName 后再产出
+ * 3. 按文档顺序产出，不排序
+ */
+@Slf4j
+public class ChapterListStream implements Iterator<Chapter.Chapter4Read> {
+    // 組件名稱
+    private static final String NAME = "「流析」";
+
+    private final JsonParser parser;
+    // 当前所处的层级
+    private State state = State.ROOT;
+    private String bookName;
+    // bookName 尚未读到时暂存的章节
+    private final Queue<Chapter.Chapter4Read> pendings = new ArrayDeque<>();
+    // 预读的下一章
+    private Chapter.Chapter4Read next;
+    private boolean finished;
+    private int count;
+
+    // 根对象 → chapterList 数组 → 卷对象 → volumeList 数组
+    private enum State {ROOT, CHAPTER_LIST, VOLUME, VOLUME_LIST}
+
+    private ChapterListStream(String json) {
+        this.parser = CheckedExceptionFucker.createParser(json);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new IllegalArgumentException("chapter list is not a json object");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // 以章节列表 json 构建惰性的 Chapter4Read 流
+    public static Stream<Chapter.Chapter4Read> of(String json) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new ChapterListStream(json), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) next = advance();
+        return next != null;
+    }
+
+    @Override
+    public Chapter.Chapter4Read next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        var chapter4Read = next;
+        next = null;
+        count++;
+        return chapter4Read;
+    }
+
+    // 读取至下一个章节对象结束，无更多章节时返回 null
+    private Chapter.Chapter4Read advance() {
+        try {
+            JsonToken token;
+            while (bookName == null || pendings.isEmpty()) {
+                if ((token = parser.nextToken()) == null) break;
+                switch (state) {
+                    case ROOT -> {
+                        if (token == JsonToken.END_OBJECT) break;
+                        var fieldName = parser.currentName();
+                        token = parser.nextToken();
+                        if ("bookName".equals(fieldName)) bookName = parser.getValueAsString();
+                        else if ("chapterList".equals(fieldName) && token == JsonToken.START_ARRAY) state = State.CHAPTER_LIST;
+                        else parser.skipChildren();
+                    }
+                    case CHAPTER_LIST -> {
+                        if (token == JsonToken.END_ARRAY) state = State.ROOT;
+                        else if (token == JsonToken.START_OBJECT) state = State.VOLUME;
+                        else parser.skipChildren();
+                    }
+                    case VOLUME -> {
+                        if (token == JsonToken.END_OBJECT) {
+                            state = State.CHAPTER_LIST;
+                            break;
+                        }
+                        var fieldName = parser.currentName();
+                        token = parser.nextToken();
+                        if ("volumeList".equals(fieldName) && token == JsonToken.START_ARRAY) state = State.VOLUME_LIST;
+                        else parser.skipChildren();
+                    }
+                    case VOLUME_LIST -> {
+                        if (token == JsonToken.END_ARRAY) state = State.VOLUME;
+                        else if (token == JsonToken.START_OBJECT) {
+                            var chapter4Read = readChapter();
+                            if (bookName != null) return chapter4Read;
+                            pendings.add(chapter4Read);
+                        } else parser.skipChildren();
+                    }
+                }
+            }
+            // 暂存的章节补上 bookName（整个文档中都没有 bookName 时保持为 null）
+            if (!pendings.isEmpty()) {
+                var pending = pendings.poll();
+                return new Chapter.Chapter4Read(bookName, pending.chapterName(), pending.chapterOrdid(), pending.contUrlSuffix());
+            }
+            finished = true;
+            parser.close();
+            log.info("{} - 章节列表解析完成 [{}] 章节数 => {}", NAME, bookName, count);
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // 读取一个章节对象，其余属性跳过
+    private Chapter.Chapter4Read readChapter() throws IOException {
+        String chapterName = null, contUrlSuffix = null;
+        Integer chapterOrdid = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var fieldName = parser.currentName();
+            var token = parser.nextToken();
+            switch (fieldName) {
+                case "chapterName" -> chapterName = parser.getValueAsString();
+                case "contUrlSuffix" -> contUrlSuffix = parser.getValueAsString();
+                // 与树模型转换时一致：数字或数字字符串均可
+                case "chapterOrdid" -> chapterOrdid = switch (token) {
+                    case VALUE_NUMBER_INT -> parser.getIntValue();
+                    case VALUE_STRING -> Integer.valueOf(parser.getText().trim());
+                    default -> null;
+                };
+                default -> parser.skipChildren();
+            }
+        }
+        return new Chapter.Chapter4Read(bookName, chapterName, chapterOrdid, contUrlSuffix);
+    }
+}
@@ -5,6 +5,7 @@ import shop.zailushang.component.Task;
 import shop.zailushang.flow.FlowEngine;
 import shop.zailushang.util.BookCache;
 import shop.zailushang.util.IOForkJoinTask;
+import shop.zailushang.util.ProgressLog;
 import shop.zailushang.util.ScopedExecutor;
 
 import java.util.List;
@@ -37,7 +38,7 @@ public record PartBook(List<Chapter.Chapter4Merge> sources, Integer startIndex,
     @Override
     public Result doCompute() {
         var name = name();
-        log.info("{} - 准备合并 [{} ~ {}]", name, startIndex, endIndex);
+        ProgressLog.sampled(log).info("{} - 准备合并 [{} ~ {}]", name, startIndex, endIndex);
 
         // 书籍名称
         var bookName = ScopedExecutor.ScopedExecutors.KEY.get();
@@ -59,7 +60,7 @@ public record PartBook(List<Chapter.Chapter4Merge> sources, Integer startIndex,
 
         var successful = endIndex - startIndex + 1;
         var byteSize = atoLong.get();
-        log.info("{} - 合并完成 [{} ~ {} : {}, {}]", name, startIndex, endIndex, successful, byteSize);
+        ProgressLog.sampled(log).info("{} - 合并完成 [{} ~ {} : {}, {}]", name, startIndex, endIndex, successful, byteSize);
         return new Result(successful, byteSize);
     }
 
@@ -69,7 +70,7 @@ public record PartBook(List<Chapter.Chapter4Merge> sources, Integer startIndex,
         var medianIndex = (startIndex + endIndex) >> 1;// = (endIndex - startIndex) / 2 + startIndex
         var left = new PartBook(sources, startIndex, medianIndex, capacity, executor);
         var right = new PartBook(sources, medianIndex + 1, endIndex, capacity, executor);
-        log.info("{} - 执行拆分 left[{} ~ {}],right[{} ~ {}]", name(), left.startIndex, left.endIndex, right.startIndex, right.endIndex);
+        ProgressLog.sampled(log).info("{} - 执行拆分 left[{} ~ {}],right[{} ~ {}]", name(), left.startIndex, left.endIndex, right.startIndex, right.endIndex);
         return new PartBook[]{left, right};
     }
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+package shop.zailushang.flow;
+
+import lombok.extern.slf4j.Slf4j;
+import shop.zailushang.util.Assert;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 书籍调度器：限制同时下载的书籍数量，多出的书籍排队等待
+ * 1. 每本书在独立的虚拟线程中执行，等待流程完成时不占用 ForkJoinPool 工作线程
+ * 2. 书目文件（每行一个书名，# 开头为注释）按行流式读取：取得许可后才读下一行，内存占用与书目长度无关
+ * 3. 每本书返回一个完成时的 Future，附带排队与执行耗时；单本失败不影响其余书籍
+ */
+@Slf4j
+public class BookScheduler {
+    // 同时下载的书籍数量上限，可通过 -Dshuqi.books 调整
+    public static final Integer MAX_CONCURRENT_BOOKS = Integer.getInteger("shuqi.books", 2);
+    // 組件名稱
+    private static final String NAME = "「点将台」";
+
+    // 执行一本书（阻塞至完成），调用时已绑定书名作用域
+    private final Consumer<String> runner;
+    private final Semaphore permits = new Semaphore(MAX_CONCURRENT_BOOKS, true);
+    private final ThreadFactory threadFactory = Thread.ofVirtual().name("book-", 0).factory();
+
+    // 统计计数器
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicInteger running = new AtomicInteger();
+    // 排队等待许可的书籍数（不含批量模式下读取书目的线程）
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger peakRunning = new AtomicInteger();
+
+    public BookScheduler(Consumer<String> runner) {
+        Assert.isTrue(runner, Assert::isNotNull, () -> new NullPointerException("Well begun is half done. — Aristotle"));
+        this.runner = runner;
+    }
+
+    /**
+     * 一本书的执行结果
+     *
+     * @param bookName 书名
+     * @param queued   排队耗时（提交至取得许可）
+     * @param elapsed  执行耗时
+     */
+    public record BookResult(String bookName, Duration queued, Duration elapsed) {
+    }
+
+    /**
+     * 调度统计
+     *
+     * @param submitted   累计提交数
+     * @param succeeded   累计成功数
+     * @param failed      累计失败数
+     * @param running     当前执行数
+     * @param queued      当前排队数
+     * @param peakRunning 历史峰值执行数
+     */
+    public record Stats(Long submitted, Long succeeded, Long failed, Integer running, Integer queued,
+                        Integer peakRunning) {
+    }
+
+    /*
+     * 提交一本书：于虚拟线程中排队等待许可后执行
+     */
+    public CompletableFuture<BookResult> submit(String bookName) {
+        final var future = new CompletableFuture<BookResult>();
+        final var submittedAt = System.nanoTime();
+        submitted.increment();
+        queued.incrementAndGet();
+        threadFactory.newThread(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                future.completeExceptionally(e);
+                return;
+            } finally {
+                queued.decrementAndGet();
+            }
+            run(bookName, submittedAt, future);
+        }).start();
+        return future;
+    }
+
+    /*
+     * 批量模式：流式读取书目文件，逐本排队执行，全部结束后返回统计
+     * 读取书目失败或被中断时不再派发新书，等待在途书籍结束后再以该异常结束
+     */
+    public CompletableFuture<Stats> submitAll(Path catalog) {
+        final var future = new CompletableFuture<Stats>();
+        threadFactory.newThread(() -> {
+            // 在途书籍：读完书目后等待全部完成
+            final var phaser = new Phaser(1);
+            Exception failure = null;
+            try (var reader = Files.newBufferedReader(catalog, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final var bookName = line.strip();
+                    if (bookName.isEmpty() || bookName.startsWith("#")) continue;
+                    final var submittedAt = System.nanoTime();
+                    // 取得许可后才派发并读取下一行
+                    permits.acquire();
+                    submitted.increment();
+                    phaser.register();
+                    final var result = new CompletableFuture<BookResult>();
+                    result.whenComplete((_, _) -> phaser.arriveAndDeregister());
+                    threadFactory.newThread(() -> run(bookName, submittedAt, result)).start();
+                }
+            } catch (IOException | InterruptedException e) {
+                failure = e;
+                log.error("{} - 读取书目失败 {} => {}，等待在途书籍结束", NAME, catalog, e.toString());
+            }
+            // 等待在途书籍全部完成（不可中断），phaser 随之注销
+            phaser.arriveAndAwaitAdvance();
+            if (failure instanceof InterruptedException) Thread.currentThread().interrupt();
+            if (failure != null) {
+                future.completeExceptionally(failure);
+                return;
+            }
+            log.info("{} - 书目执行完成 {} => {}", NAME, catalog, stats());
+            future.complete(stats());
+        }).start();
+        return future;
+    }
+
+    // 已取得许可：绑定作用域执行一本书，结束后归还许可
+    private void run(String bookName, long submittedAt, CompletableFuture<BookResult> future) {
+        final var startedAt = System.nanoTime();
+        peakRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        log.info("{} - 开始 [{}] 排队 => {} ms, 执行中 => {}", NAME, bookName, (startedAt - submittedAt) / 1_000_000, running.get());
+        try {
+            runner.accept(bookName);
+            var result = new BookResult(bookName, Duration.ofNanos(startedAt - submittedAt), Duration.ofNanos(System.nanoTime() - startedAt));
+            succeeded.increment();
+            log.info("{} - 完成 [{}] 耗时 => {} ms", NAME, bookName, result.elapsed().toMillis());
+            future.complete(result);
+        } catch (Throwable e) {
+            failed.increment();
+            log.error("{} - 失败 [{}] => {}", NAME, bookName, e.toString());
+            future.completeExceptionally(e);
+        } finally {
+            running.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    // 获取统计快照
+    public Stats stats() {
+        return new Stats(submitted.sum(), succeeded.sum(), failed.sum(), running.get(), queued.get(), peakRunning.get());
+    }
+}
@@ -0,0 +1,443 @@
+package shop.zailushang.flow;
+
+import lombok.extern.slf4j.Slf4j;
+import shop.zailushang.component.Parser;
+import shop.zailushang.component.Reader;
+import shop.zailushang.component.Selector;
+import shop.zailushang.component.Task;
+import shop.zailushang.component.Writer;
+import shop.zailushang.entity.Chapter;
+import shop.zailushang.entity.Tao;
+import shop.zailushang.util.Assert;
+import shop.zailushang.util.BookCache;
+import shop.zailushang.util.BookIndex;
+import shop.zailushang.util.BookManifest;
+import shop.zailushang.util.HttpCache;
+import shop.zailushang.util.ProgressLog;
+import shop.zailushang.util.ScopedExecutor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 增量更新：以章节清单（见 BookManifest）比对最新的章节列表，仅下载新增或变化的章节，就地追加或修补已合并的书籍文件
+ * 1. 清单中已有 bid 时不再请求搜索页，无变化时仅请求一次章节列表页；普通模式下载的书籍由章节索引生成首份清单，无需重新下载
+ * 2. 章节列表中没有内容摘要，以章节名判断变化；-Dshuqi.update.recheck=N 时另外复查最近 N 章，按 CRC32 比对，内容未变时不写入
+ * 3. 仅有新增且均排在末尾时追加至书籍文件末尾；仅有等长的修改时按偏移原位覆盖；其余情况（移除、插入、变长）复制未变的区段重写至临时文件后原子替换
+ * 4. 下载的章节边到达边写入书籍文件夹中的暂存文件，写出书籍文件时逐章读回，内存中仅保留各章的区段与 CRC32
+ * 5. 书籍文件落盘后再原子替换清单，并重写章节索引；中途失败时清单保持不变，下次更新时重新比对
+ * 6. 订阅模式按固定间隔轮询多本书，每轮经书籍调度器限制并发
+ */
+@Slf4j
+public class BookUpdater {
+    // 订阅的轮询间隔，可通过 -Dshuqi.update.interval 调整（分钟）
+    public static final Duration POLL_INTERVAL = Duration.ofMinutes(Long.getLong("shuqi.update.interval", 30L));
+    // 复查最近 N 章的内容（作者常修订最新章节），可通过 -Dshuqi.update.recheck 调整，默认不复查
+    public static final Integer RECHECK = Integer.getInteger("shuqi.update.recheck", 0);
+    // 組件名稱
+    private static final String NAME = "「更漏」";
+    // 下载章节的暂存文件名，位于书籍文件夹中 e.g. D:/斗破苍穹/.update.tmp
+    private static final String STAGING_FILE_NAME = ".update.tmp";
+
+    // 书籍调度器：限制同时更新的书籍数量
+    private final BookScheduler scheduler = new BookScheduler(this::run);
+    // 每本书最近一次的更新结果
+    private final Map<String, Result> results = new ConcurrentHashMap<>();
+
+    // 书籍文件的写入方式
+    public enum Mode {
+        // 无变化，未写入
+        UP_TO_DATE,
+        // 首次下载，完整写出
+        CREATED,
+        // 新增章节追加至末尾
+        APPENDED,
+        // 等长的修改原位覆盖
+        PATCHED,
+        // 复制未变的区段，重写后原子替换
+        REBUILT
+    }
+
+    /**
+     * 一本书的更新结果
+     *
+     * @param bookName   书名
+     * @param mode       写入方式
+     * @param added      新增章节数
+     * @param changed    内容变化的章节数
+     * @param removed    移除的章节数
+     * @param fetched    下载的章节数（含复查后内容未变的章节）
+     * @param bookLength 更新后的书籍文件长度（字节）
+     */
+    public record Result(String bookName, Mode mode, Integer added, Integer changed, Integer removed, Integer fetched,
+                         Long bookLength) {
+    }
+
+    /*
+     * 更新多本书，全部结束后返回，任一书籍失败时抛出其异常
+     */
+    public List<Result> update(String... bookNames) {
+        var futures = Arrays.stream(bookNames).map(this::submit).toList();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .exceptionally(_ -> null)
+                .join();
+        log.info("{} - 更新调度统计 => {}", NAME, scheduler.stats());
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    /*
+     * 提交一本书的更新，交由调度器排队执行
+     */
+    public CompletableFuture<Result> submit(String bookName) {
+        return scheduler.submit(bookName).thenApply(bookResult -> results.get(bookResult.bookName()));
+    }
+
+    /*
+     * 订阅：每隔 interval 轮询一次全部书籍，直至关闭
+     */
+    public Subscription subscribe(Duration interval, String... bookNames) {
+        Assert.isTrue(interval, duration -> duration != null && duration.isPositive(), () -> new IllegalArgumentException("Drop by drop, the water wears away the stone. — Ovid"));
+        return new Subscription(this, interval, List.of(bookNames));
+    }
+
+    // 于书名作用域中更新一本书
+    private void run(String bookName) {
+        ScopedValue.where(ScopedExecutor.ScopedExecutors.KEY, bookName).run(() -> results.put(bookName, update0(bookName)));
+    }
+
+    private Result update0(String bookName) {
+        ProgressLog.open(bookName);
+        try {
+            var loaded = BookManifest.load(bookName);
+            var bid = loaded.map(BookManifest::bid).orElseGet(() -> Flow.Flows.bidFlow().start(Tao.TAO));
+            var manifest = loaded.or(() -> BookManifest.bootstrap(bookName, bid));
+            var chapter4Reads = listFlow().start(bid);
+            // 测试模式下仅保留前 20 章
+            var fresh = FlowEngine.IS_TEST ? chapter4Reads.stream().limit(20).toList() : chapter4Reads;
+            var toFetch = diff(manifest, fresh);
+            var removed = manifest.map(m -> removed(m, fresh)).orElse(Set.of());
+            log.info("{} - [{}] 最新章节数 => {}, 清单章节数 => {}, 待下载 => {}, 已移除 => {}", NAME, bookName, fresh.size(), manifest.map(m -> m.entries().size()).orElse(0), toFetch.size(), removed.size());
+            // 已下载过的章节（章节名变化、复查）须绕过缓存的旧内容
+            toFetch.stream().filter(chapter4Read -> manifest.flatMap(m -> m.get(chapter4Read.chapterOrdid())).isPresent()).map(Reader::contentUri).forEach(HttpCache::expire);
+            try (var staging = download(bookName, toFetch)) {
+                var result = apply(bookName, bid, manifest, loaded.isPresent(), fresh, removed, staging);
+                log.info("{} - [{}] 更新完成 => {}", NAME, bookName, result);
+                return result;
+            }
+        } finally {
+            ProgressLog.close(bookName);
+        }
+    }
+
+    // 仅请求章节列表页（不预热内容主机，不打开断点续传日志）
+    private static Flow<String, List<Chapter.Chapter4Read>> listFlow() {
+        return () -> Reader.Readers.chapterReader()
+                .thenAsync(Selector.Selectors.chapterSelector())
+                .thenAsync(Parser.Parsers.chapterParser());
+    }
+
+    // 待下载的章节：新增、章节名变化，以及需复查的最近 RECHECK 章
+    private static List<Chapter.Chapter4Read> diff(Optional<BookManifest> manifest, List<Chapter.Chapter4Read> fresh) {
+        if (manifest.isEmpty()) return fresh;
+        var recheckFrom = Math.max(0, fresh.size() - RECHECK);
+        var toFetch = new ArrayList<Chapter.Chapter4Read>();
+        for (int i = 0; i < fresh.size(); i++) {
+            var chapter4Read = fresh.get(i);
+            var old = manifest.get().get(chapter4Read.chapterOrdid());
+            if (old.isEmpty() || !old.get().chapterName().equals(BookManifest.sanitize(chapter4Read.chapterName())) || i >= recheckFrom)
+                toFetch.add(chapter4Read);
+        }
+        return toFetch;
+    }
+
+    private static Set<Integer> removed(BookManifest manifest, List<Chapter.Chapter4Read> fresh) {
+        var freshOrdids = fresh.stream().map(Chapter.Chapter4Read::chapterOrdid).collect(Collectors.toSet());
+        return manifest.entries().stream().map(BookManifest.Entry::chapterOrdid).filter(ordid -> !freshOrdids.contains(ordid)).collect(Collectors.toSet());
+    }
+
+    /*
+     * 下载章节：沿用 contentFlow（流控、缓存、解密、排版），排版后的字节逐章写入暂存文件，任一章节失败时本次更新失败
+     */
+    private static Staging download(String bookName, List<Chapter.Chapter4Read> toFetch) {
+        final var staging = new Staging(BookCache.getFolderPath(bookName).resolve(STAGING_FILE_NAME));
+        if (toFetch.isEmpty()) return staging;
+        final Writer collector = chapter4Write -> {
+            staging.put(chapter4Write.chapterOrdid(), chapter4Write.chapterBytes());
+            return CompletableFuture.completedFuture(new Chapter.Chapter4Merge(chapter4Write.bookName(), chapter4Write.chapterOrdid(), null, null));
+        };
+        try {
+            Flow.parallelFlow(Function.identity(), Flow.Flows.contentFlow(collector), Function.identity(), Task.Window.items(FlowEngine.PARALLEL_WINDOW)).start(toFetch);
+        } catch (RuntimeException e) {
+            staging.close();
+            throw e;
+        }
+        return staging;
+    }
+
+    // 暂存章节在暂存文件中的区段
+    private record Staged(Long offset, Integer length, Long crc) {
+    }
+
+    /**
+     * 暂存文件：各章按到达顺序写入（位置预先占用，并发写入互不覆盖），关闭时删除
+     * 文件名以 . 开头，不计入分治合并的预分配
+     */
+    private static final class Staging implements AutoCloseable {
+        private final Path path;
+        private final AtomicLong position = new AtomicLong();
+        // 章节序号 → 区段
+        private final Map<Integer, Staged> staged = new ConcurrentHashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile FileChannel channel;
+
+        Staging(Path path) {
+            this.path = path;
+        }
+
+        // 首章到达时才创建暂存文件
+        private FileChannel channel() throws IOException {
+            if (channel == null) {
+                lock.lock();
+                try {
+                    if (channel == null) {
+                        Files.createDirectories(path.getParent());
+                        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return channel;
+        }
+
+        void put(Integer chapterOrdid, byte[] bytes) {
+            try {
+                var offset = position.getAndAdd(bytes.length);
+                var buffer = ByteBuffer.wrap(bytes);
+                var target = channel();
+                while (buffer.hasRemaining()) target.write(buffer, offset + buffer.position());
+                staged.put(chapterOrdid, new Staged(offset, bytes.length, BookManifest.crc32(bytes)));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        Optional<Staged> get(Integer chapterOrdid) {
+            return Optional.ofNullable(staged.get(chapterOrdid));
+        }
+
+        int size() {
+            return staged.size();
+        }
+
+        // 读回一章
+        byte[] read(Staged chapter) throws IOException {
+            var buffer = ByteBuffer.allocate(chapter.length());
+            while (buffer.hasRemaining()) {
+                var read = channel.read(buffer, chapter.offset() + buffer.position());
+                Assert.isTrue(read, n -> n > 0, () -> new IllegalStateException("staging file shrank: " + path));
+            }
+            return buffer.array();
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (channel != null) channel.close();
+            } catch (IOException e) {
+                log.warn("{} - 关闭暂存文件失败 => {}", NAME, path);
+            }
+        }
+    }
+
+    // 一章的写出来源：staged 为空时沿用书籍文件中的原有区段
+    private record Piece(Chapter.Chapter4Read chapter4Read, BookManifest.Entry old, Staged staged) {
+        int length() {
+            return staged == null ? old.length() : staged.length();
+        }
+
+        long crc() {
+            return staged == null ? old.crc() : staged.crc();
+        }
+    }
+
+    /*
+     * 写出书籍文件、清单与章节索引
+     */
+    private static Result apply(String bookName, String bid, Optional<BookManifest> manifest, boolean persisted, List<Chapter.Chapter4Read> fresh,
+                                Set<Integer> removed, Staging staging) {
+        var pieces = fresh.stream().map(chapter4Read -> {
+            var old = manifest.flatMap(m -> m.get(chapter4Read.chapterOrdid())).orElse(null);
+            var staged = staging.get(chapter4Read.chapterOrdid()).orElse(null);
+            // 复查后内容未变的章节沿用原有区段
+            if (staged != null && old != null && old.length().equals(staged.length()) && old.crc().equals(staged.crc())
+                    && old.chapterName().equals(BookManifest.sanitize(chapter4Read.chapterName()))) staged = null;
+            return new Piece(chapter4Read, old, staged);
+        }).toList();
+        var added = (int) pieces.stream().filter(piece -> piece.old() == null).count();
+        var changed = (int) pieces.stream().filter(piece -> piece.old() != null && piece.staged() != null).count();
+        var bookPath = BookCache.getTargetFilePath(bookName);
+        final Mode mode;
+        if (manifest.isEmpty()) mode = Mode.CREATED;
+        else if (added == 0 && changed == 0 && removed.isEmpty()) mode = Mode.UP_TO_DATE;
+        else if (changed == 0 && removed.isEmpty() && pieces.stream().filter(piece -> piece.old() == null).allMatch(piece -> piece.chapter4Read().chapterOrdid() > manifest.get().entries().stream().mapToInt(BookManifest.Entry::chapterOrdid).max().orElse(0)))
+            mode = Mode.APPENDED;
+        else if (added == 0 && removed.isEmpty() && pieces.stream().filter(piece -> piece.staged() != null).allMatch(piece -> piece.staged().length().equals(piece.old().length())))
+            mode = Mode.PATCHED;
+        else mode = Mode.REBUILT;
+        try {
+            switch (mode) {
+                case UP_TO_DATE -> {
+                    // 由章节索引生成的清单首次落盘
+                    if (!persisted) manifest.get().save(bookName);
+                    return new Result(bookName, mode, 0, 0, 0, staging.size(), manifest.get().bookLength());
+                }
+                case APPENDED -> {
+                    try (var channel = FileChannel.open(bookPath, StandardOpenOption.WRITE)) {
+                        channel.position(manifest.get().bookLength());
+                        for (var piece : pieces) {
+                            if (piece.old() != null) continue;
+                            var buffer = ByteBuffer.wrap(staging.read(piece.staged()));
+                            while (buffer.hasRemaining()) channel.write(buffer);
+                        }
+                        channel.force(true);
+                    }
+                }
+                case PATCHED -> {
+                    try (var channel = FileChannel.open(bookPath, StandardOpenOption.WRITE)) {
+                        for (var piece : pieces) {
+                            if (piece.staged() == null) continue;
+                            var buffer = ByteBuffer.wrap(staging.read(piece.staged()));
+                            while (buffer.hasRemaining()) channel.write(buffer, piece.old().offset() + buffer.position());
+                        }
+                        channel.force(true);
+                    }
+                }
+                case CREATED, REBUILT -> rebuild(bookPath, pieces, staging);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        // 按章节顺序重新计算偏移
+        var entries = new ArrayList<BookManifest.Entry>(pieces.size());
+        var chapter4Merges = new ArrayList<Chapter.Chapter4Merge>(pieces.size());
+        var offset = 0L;
+        for (var piece : pieces) {
+            var chapterOrdid = piece.chapter4Read().chapterOrdid();
+            entries.add(new BookManifest.Entry(chapterOrdid, piece.chapter4Read().chapterName(), offset, piece.length(), piece.crc()));
+            chapter4Merges.add(new Chapter.Chapter4Merge(bookName, chapterOrdid, null, null, offset));
+            offset += piece.length();
+        }
+        new BookManifest(bid, offset, entries).save(bookName);
+        // 书籍文件已变化，原有的章节索引随之重写
+        if (FlowEngine.USE_INDEX || Files.exists(BookIndex.indexPath(bookPath))) BookIndex.write(bookPath, chapter4Merges);
+        return new Result(bookName, mode, added, changed, removed.size(), staging.size(), offset);
+    }
+
+    // 重写：未变的区段自原书籍文件零拷贝传输，新内容自暂存文件逐章读回写入，落盘后原子替换（临时文件以 . 开头，不计入分治合并的预分配）
+    private static void rebuild(Path bookPath, List<Piece> pieces, Staging staging) throws Exception {
+        Files.createDirectories(bookPath.getParent());
+        var tempPath = bookPath.resolveSibling("." + bookPath.getFileName() + ".tmp");
+        try (var target = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             var source = pieces.stream().anyMatch(piece -> piece.staged() == null) ? FileChannel.open(bookPath, StandardOpenOption.READ) : null) {
+            for (var piece : pieces) {
+                if (piece.staged() == null) {
+                    for (long position = 0; position < piece.old().length(); ) {
+                        var transferred = source.transferTo(piece.old().offset() + position, piece.old().length() - position, target);
+                        Assert.isTrue(transferred, n -> n > 0, () -> new IllegalStateException("book file shrank while rebuilding: " + bookPath));
+                        position += transferred;
+                    }
+                } else {
+                    var buffer = ByteBuffer.wrap(staging.read(piece.staged()));
+                    while (buffer.hasRemaining()) target.write(buffer);
+                }
+            }
+            target.force(true);
+        }
+        Files.move(tempPath, bookPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 订阅：于虚拟线程中按固定间隔轮询，每轮更新全部书籍，单本失败不影响其余书籍与下一轮
+     */
+    public static final class Subscription implements AutoCloseable {
+        private final Thread poller;
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+        private final LongAdder rounds = new LongAdder();
+        private final LongAdder updated = new LongAdder();
+        private final LongAdder fetched = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        /**
+         * 订阅统计
+         *
+         * @param rounds  已完成的轮数
+         * @param updated 书籍文件发生变化的次数
+         * @param fetched 累计下载的章节数
+         * @param failed  累计失败次数
+         */
+        public record Stats(Long rounds, Long updated, Long fetched, Long failed) {
+        }
+
+        private Subscription(BookUpdater updater, Duration interval, List<String> bookNames) {
+            this.poller = Thread.ofVirtual().name("subscription").start(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        var futures = bookNames.stream().map(updater::submit).toList();
+                        futures.forEach(future -> {
+                            try {
+                                var result = future.join();
+                                if (result.mode() != Mode.UP_TO_DATE) updated.increment();
+                                fetched.add(result.fetched());
+                            } catch (RuntimeException e) {
+                                failed.increment();
+                            }
+                        });
+                        rounds.increment();
+                        log.info("{} - 第 {} 轮轮询完成 => {}, 下次轮询 => {} 后", NAME, rounds.sum(), stats(), interval);
+                        Thread.sleep(interval);
+                    }
+                } catch (InterruptedException _) {
+                    // 关闭订阅
+                } finally {
+                    closed.complete(null);
+                }
+            });
+        }
+
+        public Stats stats() {
+            return new Stats(rounds.sum(), updated.sum(), fetched.sum(), failed.sum());
+        }
+
+        // 等待订阅关闭
+        public void join() {
+            closed.join();
+        }
+
+        // 关闭订阅：轮询间隔中立即退出，轮询进行中时等待本轮结束
+        @Override
+        public void close() {
+            poller.interrupt();
+            closed.join();
+        }
+    }
+}
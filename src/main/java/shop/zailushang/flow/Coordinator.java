@@ -0,0 +1,437 @@
+package shop.zailushang.flow;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import shop.zailushang.component.Cleaner;
+import shop.zailushang.component.Merger;
+import shop.zailushang.component.Parser;
+import shop.zailushang.component.Reader;
+import shop.zailushang.component.Selector;
+import shop.zailushang.component.Writer;
+import shop.zailushang.entity.Chapter;
+import shop.zailushang.entity.Tao;
+import shop.zailushang.util.Assert;
+import shop.zailushang.util.ScopedExecutor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 协调者（分布式模式）：持有书籍队列，将章节按区间切分为租约，经 HTTP 分派给各工作节点（见 Worker）
+ * 1. 工作节点领取租约后下载、排版区间内的章节，逐章提交排版后的字节，协调者按零散章节文件落盘
+ * 2. 工作节点须在租约有效期内续约，过期未续约（节点失联）的租约由巡检线程收回，未收到的章节重新入队
+ * 3. 同一章节以先到者为准，重复提交直接丢弃；一本书的章节全部到齐后，沿用 Merger / Cleaner 合并、清理
+ * 4. 章节须经所属租约提交：租约已过期、已归还，或不属于提交者、不含该章节时拒收
+ * 协议（均为 POST，文本为 UTF-8）：
+ * /lease?worker=        200 首行「租约号\t书名\t有效期毫秒」，其后每行「章节序号\t章节名\t请求地址后缀」，文本字段中的反斜杠、制表符与换行经 escape 转义；204 暂无可领取的区间；410 协调者已关闭
+ * /renew?lease=         200 已续约；410 租约已失效，节点可放弃剩余章节
+ * /chapter?lease=&worker=&ordid= 请求体为排版后的章节字节；200 已接收；208 重复提交；409 租约不属于该节点或不含该章节；410 租约已失效
+ * /done?lease=          200 租约已归还，区间内缺失的章节重新入队；410 租约已失效
+ */
+@Slf4j
+public class Coordinator implements AutoCloseable {
+    // 租约有效期，可通过 -Dshuqi.cluster.lease.ttl 调整（秒）
+    public static final Duration LEASE_TTL = Duration.ofSeconds(Long.getLong("shuqi.cluster.lease.ttl", 15L));
+    // 每个租约包含的章节数，可通过 -Dshuqi.cluster.lease.size 调整
+    public static final Integer LEASE_SIZE = Integer.getInteger("shuqi.cluster.lease.size", 20);
+    // 同一区间的最大分派次数，超出后该书失败，可通过 -Dshuqi.cluster.attempts 调整
+    public static final Integer MAX_ATTEMPTS = Integer.getInteger("shuqi.cluster.attempts", 5);
+    // 組件名稱
+    private static final String NAME = "「中军帐」";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // 租约巡检线程：收回过期的租约
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("lease-reaper").daemon().factory());
+    private final AtomicLong leaseIds = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // 以下字段均在持有锁时访问
+    // 书名 → 书籍进度
+    private final Map<String, BookState> books = new HashMap<>();
+    // 待分派的区间，按提交顺序
+    private final ArrayDeque<Range> pending = new ArrayDeque<>();
+    // 租约号 → 在途租约
+    private final Map<Long, Lease> leases = new HashMap<>();
+    private boolean closing;
+
+    // 统计计数器
+    private final LongAdder granted = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder duplicated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public Coordinator(int port) {
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        server.setExecutor(executor);
+        server.createContext("/lease", exchange -> handle(exchange, this::lease));
+        server.createContext("/renew", exchange -> handle(exchange, this::renew));
+        server.createContext("/chapter", exchange -> handle(exchange, this::chapter));
+        server.createContext("/done", exchange -> handle(exchange, this::done));
+        server.start();
+        final var period = Math.max(LEASE_TTL.toMillis() / 3, 100);
+        reaper.scheduleAtFixedRate(this::reap, period, period, TimeUnit.MILLISECONDS);
+        log.info("{} - 开坛 port => {}, 租约 => {} 章 / {} s", NAME, port(), LEASE_SIZE, LEASE_TTL.toSeconds());
+    }
+
+    /**
+     * 协调统计
+     *
+     * @param books      在途书籍数
+     * @param pending    待分派的区间数
+     * @param leased     在途租约数
+     * @param granted    累计分派的租约数
+     * @param expired    累计收回的过期租约数
+     * @param received   累计接收的章节数
+     * @param duplicated 累计丢弃的重复章节数
+     * @param rejected   累计拒收的章节数（租约失效或不属于提交者）
+     */
+    public record Stats(Integer books, Integer pending, Integer leased, Long granted, Long expired, Long received,
+                        Long duplicated, Long rejected) {
+    }
+
+    // 待分派的区间：attempt 为第几次分派
+    private record Range(BookState book, List<Chapter.Chapter4Read> chapters, Integer attempt) {
+    }
+
+    // 在途租约
+    private static class Lease {
+        private final Long id;
+        private final String worker;
+        private final Range range;
+        private long expiresAt;
+
+        Lease(Long id, String worker, Range range) {
+            this.id = id;
+            this.worker = worker;
+            this.range = range;
+            this.expiresAt = System.nanoTime() + LEASE_TTL.toNanos();
+        }
+    }
+
+    // 一本书的进度（持有锁时访问）
+    private static class BookState {
+        private final String bookName;
+        // 章节序号 → 尚未收到的章节
+        private final Map<Integer, Chapter.Chapter4Read> remaining = new LinkedHashMap<>();
+        private final List<Chapter.Chapter4Merge> merges = new ArrayList<>();
+        private final CompletableFuture<Tao> future = new CompletableFuture<>();
+        // 正在落盘的章节数
+        private int writing;
+
+        BookState(String bookName, List<Chapter.Chapter4Read> chapters) {
+            this.bookName = bookName;
+            chapters.forEach(chapter4Read -> remaining.put(chapter4Read.chapterOrdid(), chapter4Read));
+        }
+    }
+
+    // 监听端口（构造时传入 0 则为随机端口）
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /*
+     * 提交一本书：获取章节列表后切分为租约，全部章节合并、清理完成时返回
+     */
+    public CompletableFuture<Tao> submit(String bookName) {
+        // 测试模式下仅下载前 20 章
+        return CompletableFuture.supplyAsync(() -> Flow.Flows.bidFlow().thenAsync(chapterListFlow()).start(Tao.TAO), ScopedExecutor.ScopedExecutors.newScopedExecutor(bookName))
+                .thenApply(chapter4Reads -> FlowEngine.IS_TEST ? chapter4Reads.stream().limit(20).toList() : chapter4Reads)
+                .thenCompose(chapter4Reads -> submit(bookName, chapter4Reads));
+    }
+
+    // 章节列表（不打开断点记录：零散章节文件由协调者统一写入）
+    private static Flow<String, List<Chapter.Chapter4Read>> chapterListFlow() {
+        return () -> Reader.Readers.chapterReader()
+                .thenAsync(Selector.Selectors.chapterSelector())
+                .thenAsync(Parser.Parsers.chapterParser());
+    }
+
+    /*
+     * 提交一本书：章节列表由调用方给出，按章节顺序切分为租约
+     */
+    public CompletableFuture<Tao> submit(String bookName, List<Chapter.Chapter4Read> chapter4Reads) {
+        Assert.isTrue(chapter4Reads, Assert::isNotNull, () -> new NullPointerException("A journey of a thousand miles begins with a single step. — Lao Tzu"));
+        final var sorted = chapter4Reads.stream().sorted(Comparator.comparing(Chapter.Chapter4Read::chapterOrdid)).toList();
+        lock.lock();
+        try {
+            Assert.isTrue(bookName, name -> !books.containsKey(name), () -> new IllegalStateException("book already submitted: " + bookName));
+            final var book = new BookState(bookName, sorted);
+            books.put(bookName, book);
+            for (int from = 0; from < sorted.size(); from += LEASE_SIZE) {
+                pending.addLast(new Range(book, sorted.subList(from, Math.min(from + LEASE_SIZE, sorted.size())), 1));
+            }
+            log.info("{} - 收录 [{}] 章节数 => {}, 租约数 => {}", NAME, bookName, sorted.size(), (sorted.size() + LEASE_SIZE - 1) / LEASE_SIZE);
+            if (sorted.isEmpty()) finish(book);
+            return book.future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 领取租约：跳过已失败的书籍与已全部收到的区间
+    private Response lease(Map<String, String> params, byte[] body) {
+        final var worker = params.getOrDefault("worker", "?");
+        lock.lock();
+        try {
+            if (closing) return Response.GONE;
+            Range range;
+            while ((range = pending.pollFirst()) != null) {
+                final var book = range.book();
+                if (book.future.isDone()) continue;
+                final var chapters = range.chapters().stream().filter(chapter4Read -> book.remaining.containsKey(chapter4Read.chapterOrdid())).toList();
+                if (chapters.isEmpty()) continue;
+                final var lease = new Lease(leaseIds.incrementAndGet(), worker, new Range(book, chapters, range.attempt()));
+                leases.put(lease.id, lease);
+                granted.increment();
+                log.info("{} - 分派租约 {} => {} [{}] 章节 {} - {}, 第 {} 次", NAME, lease.id, worker, book.bookName, chapters.getFirst().chapterOrdid(), chapters.getLast().chapterOrdid(), range.attempt());
+                final var text = new StringBuilder()
+                        .append(lease.id).append('\t').append(escape(book.bookName)).append('\t').append(LEASE_TTL.toMillis()).append('\n');
+                chapters.forEach(chapter4Read -> text.append(chapter4Read.chapterOrdid()).append('\t').append(escape(chapter4Read.chapterName())).append('\t').append(escape(chapter4Read.contUrlSuffix())).append('\n'));
+                return new Response(200, text.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            return Response.NO_CONTENT;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 续约
+    private Response renew(Map<String, String> params, byte[] body) {
+        lock.lock();
+        try {
+            final var lease = leases.get(Long.parseLong(params.get("lease")));
+            if (lease == null) return Response.GONE;
+            lease.expiresAt = System.nanoTime() + LEASE_TTL.toNanos();
+            return Response.OK;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * 接收章节：校验租约后先到者为准，于锁外落盘为零散章节文件；最后一章落盘后触发合并
+     * 已过期但巡检尚未收回的租约同样视为失效，其区间随时可能分派给其他节点
+     */
+    private Response chapter(Map<String, String> params, byte[] body) {
+        final var leaseId = Long.parseLong(params.get("lease"));
+        final var worker = params.getOrDefault("worker", "?");
+        final var chapterOrdid = Integer.valueOf(params.get("ordid"));
+        final BookState book;
+        final Chapter.Chapter4Read chapter4Read;
+        lock.lock();
+        try {
+            final var lease = leases.get(leaseId);
+            if (lease == null || System.nanoTime() - lease.expiresAt >= 0 || lease.range.book().future.isDone()) {
+                rejected.increment();
+                return Response.GONE;
+            }
+            if (!lease.worker.equals(worker) || lease.range.chapters().stream().noneMatch(read -> read.chapterOrdid().equals(chapterOrdid))) {
+                rejected.increment();
+                log.warn("{} - 拒收章节 {}，租约 {} 属于 {}，提交者 {}", NAME, chapterOrdid, leaseId, lease.worker, worker);
+                return Response.CONFLICT;
+            }
+            book = lease.range.book();
+            chapter4Read = book.remaining.remove(chapterOrdid);
+            if (chapter4Read == null) {
+                duplicated.increment();
+                return Response.ALREADY_REPORTED;
+            }
+            book.writing++;
+        } finally {
+            lock.unlock();
+        }
+        Chapter.Chapter4Merge chapter4Merge = null;
+        try {
+            chapter4Merge = Writer.write0(new Chapter.Chapter4Write(book.bookName, chapter4Read.chapterName(), chapterOrdid, body)).join();
+        } finally {
+            lock.lock();
+            try {
+                book.writing--;
+                // 落盘失败时放回，由租约归还或过期时重新分派
+                if (chapter4Merge == null) book.remaining.put(chapterOrdid, chapter4Read);
+                else {
+                    book.merges.add(chapter4Merge);
+                    received.increment();
+                    if (book.remaining.isEmpty() && book.writing == 0) finish(book);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return Response.OK;
+    }
+
+    // 归还租约：区间内缺失的章节（节点下载失败）重新入队
+    private Response done(Map<String, String> params, byte[] body) {
+        lock.lock();
+        try {
+            final var lease = leases.remove(Long.parseLong(params.get("lease")));
+            if (lease == null) return Response.GONE;
+            requeue(lease, "归还");
+            return Response.OK;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 巡检：收回过期的租约
+    private void reap() {
+        lock.lock();
+        try {
+            final var now = System.nanoTime();
+            final var iterator = leases.values().iterator();
+            while (iterator.hasNext()) {
+                final var lease = iterator.next();
+                if (now - lease.expiresAt < 0) continue;
+                iterator.remove();
+                expired.increment();
+                log.warn("{} - 租约 {} 过期，节点 {} 失联", NAME, lease.id, lease.worker);
+                requeue(lease, "收回");
+            }
+        } catch (RuntimeException e) {
+            log.error("{} - 巡检租约失败", NAME, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 缺失的章节重新入队（持有锁时调用），优先于尚未分派的区间；超出分派次数时该书失败
+    private void requeue(Lease lease, String reason) {
+        final var book = lease.range.book();
+        if (book.future.isDone()) return;
+        final var missing = lease.range.chapters().stream().filter(chapter4Read -> book.remaining.containsKey(chapter4Read.chapterOrdid())).toList();
+        if (missing.isEmpty()) return;
+        final var attempt = lease.range.attempt() + 1;
+        if (attempt > MAX_ATTEMPTS) {
+            log.error("{} - [{}] 章节 {} 已分派 {} 次仍未完成", NAME, book.bookName, missing.stream().map(Chapter.Chapter4Read::chapterOrdid).toList(), MAX_ATTEMPTS);
+            books.remove(book.bookName);
+            book.merges.forEach(Coordinator::closeQuietly);
+            book.future.completeExceptionally(new IllegalStateException("chapters of " + book.bookName + " exceeded " + MAX_ATTEMPTS + " attempts"));
+            return;
+        }
+        log.info("{} - {}租约 {} [{}] 缺失章节数 => {}，重新入队", NAME, reason, lease.id, book.bookName, missing.size());
+        pending.addFirst(new Range(book, missing, attempt));
+    }
+
+    /*
+     * 章节全部到齐（持有锁时调用）：按章节顺序累加文件大小设置 skip，于书名作用域中合并、清理
+     */
+    private void finish(BookState book) {
+        books.remove(book.bookName);
+        final var chapter4Merges = Chapter.Chapter4Merge.plan(book.merges.stream()
+                .sorted(Comparator.comparing(Chapter.Chapter4Merge::chapterOrdid))
+                .toList());
+        final Flow<List<Chapter.Chapter4Merge>, Tao> mergeFlow = () -> Merger.Mergers.fileMerger().thenAsync(Cleaner.Cleaners.fileCleaner());
+        log.info("{} - [{}] 章节已到齐，开始合并", NAME, book.bookName);
+        CompletableFuture.supplyAsync(() -> mergeFlow.start(chapter4Merges), ScopedExecutor.ScopedExecutors.newScopedExecutor(book.bookName))
+                .whenComplete((tao, e) -> {
+                    if (e != null) book.future.completeExceptionally(e);
+                    else book.future.complete(tao);
+                });
+    }
+
+    // 租约文本字段转义：章节名等可能含制表符、换行，转义后逐行、逐字段切分不受影响，由 unescape 原样还原
+    static String escape(String field) {
+        return String.valueOf(field).replace("\\", "\\\\").replace("\t", "\\t").replace("\r", "\\r").replace("\n", "\\n");
+    }
+
+    // 还原 escape 转义的字段（转义后的文本中只会出现 \\、\t、\r、\n 四种转义）
+    static String unescape(String field) {
+        return field.translateEscapes();
+    }
+
+    private static void closeQuietly(Chapter.Chapter4Merge chapter4Merge) {
+        try {
+            if (chapter4Merge.fileChannel() != null) chapter4Merge.fileChannel().close();
+        } catch (IOException e) {
+            log.warn("{} - 关闭文件通道失败 => {}", NAME, chapter4Merge.filePath());
+        }
+    }
+
+    // 获取统计快照
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(books.size(), pending.size(), leases.size(), granted.sum(), expired.sum(), received.sum(), duplicated.sum(), rejected.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 关闭：此后领取租约的节点收到 410 并退出，稍候再停止监听
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closing = true;
+        } finally {
+            lock.unlock();
+        }
+        log.info("{} - 散帐 => {}", NAME, stats());
+        reaper.shutdownNow();
+        server.stop((int) Math.max(1, Worker.POLL_INTERVAL.toSeconds() * 2));
+        executor.shutdown();
+    }
+
+    // 响应：状态码 + 响应体
+    private record Response(Integer status, byte[] body) {
+        private static final Response OK = new Response(200, new byte[0]);
+        private static final Response NO_CONTENT = new Response(204, null);
+        private static final Response ALREADY_REPORTED = new Response(208, new byte[0]);
+        private static final Response CONFLICT = new Response(409, new byte[0]);
+        private static final Response GONE = new Response(410, new byte[0]);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Response handle(Map<String, String> params, byte[] body);
+    }
+
+    // 解析查询参数、读取请求体并写回响应，处理失败时返回 500
+    private static void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try (exchange) {
+            Response response;
+            try {
+                final var query = exchange.getRequestURI().getRawQuery();
+                final Map<String, String> params = query == null ? Map.of() : Arrays.stream(query.split("&"))
+                        .map(pair -> pair.split("=", 2))
+                        .collect(Collectors.toMap(pair -> pair[0], pair -> pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "", (a, _) -> a));
+                final var body = exchange.getRequestBody().readAllBytes();
+                response = handler.handle(params, body);
+            } catch (RuntimeException e) {
+                log.error("{} - 处理请求失败 {} => {}", NAME, exchange.getRequestURI(), e.toString());
+                response = new Response(500, e.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            final var body = response.body();
+            exchange.sendResponseHeaders(response.status(), body == null ? -1 : body.length == 0 ? -1 : body.length);
+            if (body != null && body.length > 0) exchange.getResponseBody().write(body);
+        }
+    }
+}
@@ -5,10 +5,15 @@ import shop.zailushang.component.Formatter;
 import shop.zailushang.entity.Tao;
 import shop.zailushang.util.Assert;
 import shop.zailushang.entity.Chapter;
+import shop.zailushang.util.BookCache;
+import shop.zailushang.util.ScopedExecutor;
+import shop.zailushang.util.Transport;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * 抽象流程：组装多个 Task，形成一条任务链
@@ -67,6 +72,32 @@ public interface Flow<T, R> {
         return () -> Task.parallelTask(before, flow.head(), after);
     }
 
+    /*
+     * 窗口化并行流程：最多 window 个子流程同时在途
+     */
+    static <T, R> Flow<List<T>, List<R>> parallelFlow(Function<List<T>, List<T>> before, Flow<? super T, R> flow, Function<List<R>, List<R>> after, Task.Window window) {
+        Assert.isTrue(flow, Assert::isNotNull, () -> new NullPointerException("Do not, for one repulse, forgo the purpose that you resolved to effort. — William Shakespeare"));
+        return () -> Task.parallelTask(before, flow.head(), after, window);
+    }
+
+    /*
+     * 流式并行流程
+     */
+    static <T, R> Flow<Stream<T>, List<R>> streamFlow(Function<Stream<T>, Stream<T>> before, Flow<? super T, R> flow, Function<List<R>, List<R>> after) {
+        Assert.isTrue(before, Assert::isNotNull, () -> new NullPointerException("Do not, for one repulse, forgo the purpose that you resolved to effort. — William Shakespeare"));
+        Assert.isTrue(flow, Assert::isNotNull, () -> new NullPointerException("Do not, for one repulse, forgo the purpose that you resolved to effort. — William Shakespeare"));
+        Assert.isTrue(after, Assert::isNotNull, () -> new NullPointerException("Do not, for one repulse, forgo the purpose that you resolved to effort. — William Shakespeare"));
+        return () -> Task.streamTask(before, flow.head(), after);
+    }
+
+    /*
+     * 窗口化流式并行流程：窗口有空位时才从流中拉取下一项
+     */
+    static <T, R> Flow<Stream<T>, List<R>> streamFlow(Function<Stream<T>, Stream<T>> before, Flow<? super T, R> flow, Function<List<R>, List<R>> after, Task.Window window) {
+        Assert.isTrue(flow, Assert::isNotNull, () -> new NullPointerException("Do not, for one repulse, forgo the purpose that you resolved to effort. — William Shakespeare"));
+        return () -> Task.streamTask(before, flow.head(), after, window);
+    }
+
     /**
      * 关于流程的组装，这里想稍稍多谈一点，其实一开始想用「模板方法模式」组装多个任务成一条抽象流程，用「迭代器」组装多条流程
      * 但实际操作时，发现参数和返回值的不统一，不太可行，因为迭代需要提供统一的调用方式，强行统一的话，只能用更宽泛的类型来接受
@@ -87,36 +118,204 @@ public interface Flow<T, R> {
 
         // 完整 下载章节列表 的流程组装
         public static Flow<String, List<Chapter.Chapter4Read>> chapterFlow() {
+            // 章节并发下载前预热章节内容主机的连接
+            final Task<List<Chapter.Chapter4Read>, List<Chapter.Chapter4Read>> prewarm = prewarm();
+            // 断点续传：以 bid 打开日志，读取上次运行遗留的记录
+            if (FlowEngine.USE_JOURNAL) return () -> Task.<String>identity()
+                    .thenAsync(bid -> {
+                        BookCache.openJournal(ScopedExecutor.ScopedExecutors.KEY.get(), bid);
+                        return CompletableFuture.completedFuture(bid);
+                    })
+                    .thenAsync(Reader.Readers.chapterReader())
+                    .thenAsync(Selector.Selectors.chapterSelector())
+                    .thenAsync(Parser.Parsers.chapterParser())
+                    .thenAsync(prewarm);
+            return () -> Reader.Readers.chapterReader()
+                    .thenAsync(Selector.Selectors.chapterSelector())
+                    .thenAsync(Parser.Parsers.chapterParser())
+                    .thenAsync(prewarm);
+        }
+
+        // 完整 下载章节列表 的流程组装（流式解析：返回惰性的章节流，供章节内容下载边解析边派发）
+        public static Flow<String, Stream<Chapter.Chapter4Read>> chapterStreamFlow() {
             return () -> Reader.Readers.chapterReader()
                     .thenAsync(Selector.Selectors.chapterSelector())
-                    .thenAsync(Parser.Parsers.chapterParser());
+                    .thenAsync(Parser.Parsers.chapterStreamParser())
+                    .thenAsync(prewarm());
+        }
+
+        // 预热章节内容主机的连接
+        private static <T> Task<T, T> prewarm() {
+            return t -> CompletableFuture.supplyAsync(() -> {
+                Transport.prewarm(Transport.CONTENT_ORIGIN);
+                return t;
+            }, Task.taskExecutor());
         }
 
         // 完整 下载章节内容 的流程组装[针对所有章节内容]
         public static Flow<List<Chapter.Chapter4Read>, List<Chapter.Chapter4Merge>> contentListFlow() {
+            return contentListFlow(Flows.contentFlow());
+        }
+
+        // 完整 下载章节内容 的流程组装，单条章节的处理流程由参数给出
+        public static Flow<List<Chapter.Chapter4Read>, List<Chapter.Chapter4Merge>> contentListFlow(Flow<Chapter.Chapter4Read, Chapter.Chapter4Merge> contentFlow) {
+            final var atomicLong = new AtomicLong(0L);
+            // 测试模式下仅下载前 20 章
+            final Function<List<Chapter.Chapter4Read>, List<Chapter.Chapter4Read>> limiter = FlowEngine.IS_TEST ? chapter4Reads -> chapter4Reads.stream().limit(20).toList() : Function.identity();
+            // 并行窗口：同时在途的章节数上限
+            final Task.Window window = Task.Window.items(FlowEngine.PARALLEL_WINDOW);
+            // DEGUB模式下跳过设置 skip
+            if (FlowEngine.IS_DEBUG) return parallelFlow(limiter, contentFlow, Function.identity(), window);
+            return switch (FlowEngine.SINK) {
+                case CHAPTER_FILES -> FlowEngine.USE_JOURNAL ? parallelFlow(
+                        // 断点续传：跳过已完成且校验通过的章节
+                        limiter.andThen(chapter4Reads -> BookCache.getJournal(ScopedExecutor.ScopedExecutors.KEY.get()).resume(chapter4Reads)),
+                        contentFlow,
+                        // 补回跳过的章节，按章节顺序累加文件大小，设置 skip
+                        chapter4Merges -> {
+                            final var bookName = ScopedExecutor.ScopedExecutors.KEY.get();
+                            return Chapter.Chapter4Merge.plan(Stream.concat(BookCache.getJournal(bookName).resumed().stream().map(chapterOrdid -> Chapter.Chapter4Merge.reopen(bookName, chapterOrdid)), chapter4Merges.stream())
+                                    .sorted(Comparator.comparing(Chapter.Chapter4Merge::chapterOrdid))
+                                    .toList());
+                        }, window) : parallelFlow(
+                        limiter,
+                        // 单条章节处理流程
+                        contentFlow,
+                        // 按章节顺序累加文件大小，设置 skip
+                        Chapter.Chapter4Merge::plan,
+                        window);
+                case APPENDER -> {
+                    final var contentTask = contentFlow.head();
+                    yield parallelFlow(
+                            // 按最终写入顺序打开追加器
+                            limiter.andThen(chapter4Reads -> {
+                                BookCache.openAppender(ScopedExecutor.ScopedExecutors.KEY.get(), chapter4Reads.stream().map(Chapter.Chapter4Read::chapterOrdid).toList());
+                                return chapter4Reads;
+                            }),
+                            // 任一章节失败时终止追加，唤醒因背压而等待的章节
+                            () -> chapter4Read -> {
+                                final var bookName = ScopedExecutor.ScopedExecutors.KEY.get();
+                                return contentTask.apply(chapter4Read).whenComplete((_, e) -> {
+                                    if (e != null) BookCache.getAppender(bookName).abort(e);
+                                });
+                            },
+                            // skip 已由追加器给出
+                            Function.identity(),
+                            // 追加按输入顺序派发，最早未完成的章节总在窗口内，背压等待不会死锁
+                            window);
+                }
+                case SPOOL -> parallelFlow(
+                        // 打开堆外暂存区
+                        limiter.andThen(chapter4Reads -> {
+                            BookCache.openSpool(ScopedExecutor.ScopedExecutors.KEY.get());
+                            return chapter4Reads;
+                        }),
+                        contentFlow,
+                        // 按章节顺序累加暂存字节数，设置 skip
+                        chapter4Merges -> {
+                            final var spool = BookCache.getSpool(ScopedExecutor.ScopedExecutors.KEY.get());
+                            return chapter4Merges.stream().map(chapter4Merge -> new Chapter.Chapter4Merge(chapter4Merge, atomicLong.getAndAdd(spool.sizeOf(chapter4Merge.chapterOrdid())))).toList();
+                        },
+                        window);
+                case EPUB -> parallelFlow(
+                        // 打开 EPUB
+                        limiter.andThen(chapter4Reads -> {
+                            BookCache.openEpub(ScopedExecutor.ScopedExecutors.KEY.get());
+                            return chapter4Reads;
+                        }),
+                        contentFlow,
+                        // EPUB 写出时按章节序号排列条目，无需设置 skip
+                        Function.identity(),
+                        window);
+            };
+        }
+
+        // 完整 下载章节内容 的流程组装[针对流式解析的章节列表]
+        public static Flow<Stream<Chapter.Chapter4Read>, List<Chapter.Chapter4Merge>> contentStreamFlow() {
+            return contentStreamFlow(Flows.contentFlow());
+        }
+
+        // 完整 下载章节内容 的流程组装[针对流式解析的章节列表]，单条章节的处理流程由参数给出
+        // 章节按解析顺序派发、汇总，设置 skip 前须按章节顺序重排（章节列表的文档顺序未必为章节顺序）
+        public static Flow<Stream<Chapter.Chapter4Read>, List<Chapter.Chapter4Merge>> contentStreamFlow(Flow<Chapter.Chapter4Read, Chapter.Chapter4Merge> contentFlow) {
             final var atomicLong = new AtomicLong(0L);
-            return parallelFlow(
-                    // 测试模式下仅下载前 20 章
-                    FlowEngine.IS_TEST ? chapter4Reads -> chapter4Reads.stream().limit(20).toList() : Function.identity(),
-                    // 单条章节处理流程
-                    Flows.contentFlow(),
-                    // DEGUB模式下跳过设置 skip
-                    FlowEngine.IS_DEBUG ? Function.identity() : chapter4Merges -> chapter4Merges.stream().map(chapter4Merge -> Chapter.Chapter4Merge.of(chapter4Merge, atomicLong)).toList());
+            // 测试模式下仅下载前 20 章：文档顺序未必为章节顺序，按章节序号（1 - N 的连续自然数）筛选，与列表流程排序后取前 20 章一致且无需等待整个列表解析完成
+            final Function<Stream<Chapter.Chapter4Read>, Stream<Chapter.Chapter4Read>> limiter = FlowEngine.IS_TEST ? chapter4Reads -> chapter4Reads.filter(chapter4Read -> chapter4Read.chapterOrdid() <= 20) : Function.identity();
+            // 并行窗口：同时在途的章节数上限，窗口有空位时才继续解析章节列表
+            final Task.Window window = Task.Window.items(FlowEngine.PARALLEL_WINDOW);
+            return switch (FlowEngine.SINK) {
+                case CHAPTER_FILES -> streamFlow(
+                        limiter,
+                        contentFlow,
+                        // 按章节顺序累加文件大小，设置 skip
+                        chapter4Merges -> Chapter.Chapter4Merge.plan(chapter4Merges.stream()
+                                .sorted(Comparator.comparing(Chapter.Chapter4Merge::chapterOrdid))
+                                .toList()),
+                        window);
+                case SPOOL -> streamFlow(
+                        // 打开堆外暂存区
+                        limiter.andThen(chapter4Reads -> {
+                            BookCache.openSpool(ScopedExecutor.ScopedExecutors.KEY.get());
+                            return chapter4Reads;
+                        }),
+                        contentFlow,
+                        // 按章节顺序累加暂存字节数，设置 skip
+                        chapter4Merges -> {
+                            final var spool = BookCache.getSpool(ScopedExecutor.ScopedExecutors.KEY.get());
+                            return chapter4Merges.stream()
+                                    .sorted(Comparator.comparing(Chapter.Chapter4Merge::chapterOrdid))
+                                    .map(chapter4Merge -> new Chapter.Chapter4Merge(chapter4Merge, atomicLong.getAndAdd(spool.sizeOf(chapter4Merge.chapterOrdid()))))
+                                    .toList();
+                        },
+                        window);
+                case EPUB -> streamFlow(
+                        // 打开 EPUB
+                        limiter.andThen(chapter4Reads -> {
+                            BookCache.openEpub(ScopedExecutor.ScopedExecutors.KEY.get());
+                            return chapter4Reads;
+                        }),
+                        contentFlow,
+                        // EPUB 写出时按章节序号排列条目，无需重排与设置 skip
+                        Function.identity(),
+                        window);
+                // 顺序追加器须在下载前得知全部章节的写入顺序
+                case APPENDER -> throw new IllegalStateException("appender sink requires the full chapter list, disable streaming with -Dshuqi.streaming=false");
+            };
         }
 
         // 部分 下载章节内容 的流程组装[针对一条章节内容]
         public static Flow<Chapter.Chapter4Read, Chapter.Chapter4Merge> contentFlow() {
+            return contentFlow(FlowEngine.IS_DEBUG ? Writer.Writers.consoleWriter() : switch (FlowEngine.SINK) {
+                case CHAPTER_FILES -> Writer.Writers.fileWriter();
+                case APPENDER -> Writer.Writers.appendWriter();
+                case SPOOL -> Writer.Writers.spoolWriter();
+                case EPUB -> Writer.Writers.epubWriter();
+            });
+        }
+
+        // 部分 下载章节内容 的流程组装[针对一条章节内容]，写入方式由参数给出（e.g. 分布式模式下提交至协调者）
+        public static Flow<Chapter.Chapter4Read, Chapter.Chapter4Merge> contentFlow(Writer writer) {
+            Assert.isTrue(writer, Assert::isNotNull, () -> new NullPointerException("Do not, for one repulse, forgo the purpose that you resolved to effort. — William Shakespeare"));
             return () -> Reader.Readers.contentReader()
                     .thenAsync(Selector.Selectors.contentSelector())
                     .thenAsync(Parser.Parsers.contentParser())
                     .thenAsync(Decoder.Decoders.contentDecoder())
                     .thenAsync(Formatter.Formatters.contentFormatter())
-                    .thenAsync(FlowEngine.IS_DEBUG ? Writer.Writers.consoleWriter() : Writer.Writers.fileWriter());
+                    .thenAsync(writer);
         }
 
         // 完整 合并文件 的流程组装
         public static Flow<List<Chapter.Chapter4Merge>, Tao> mergeFlow() {
-            return FlowEngine.IS_DEBUG ? Flow.empty() : () -> Merger.Mergers.fileMerger().thenAsync(Cleaner.Cleaners.fileCleaner());
+            if (FlowEngine.IS_DEBUG) return Flow.empty();
+            return switch (FlowEngine.SINK) {
+                case CHAPTER_FILES -> () -> Merger.Mergers.fileMerger().thenAsync(Cleaner.Cleaners.fileCleaner());
+                // 章节已按序写入书籍文件，无需合并，仅关闭追加器
+                case APPENDER -> () -> Merger.Mergers.appendMerger().thenAsync(Cleaner.Cleaners.fileCleaner());
+                // 暂存区一次性写出，无零散文件
+                case SPOOL -> () -> Merger.Mergers.spoolMerger().thenAsync(Cleaner.Cleaners.fileCleaner());
+                // 章节已压缩，按序写出 EPUB 容器，无零散文件
+                case EPUB -> () -> Merger.Mergers.epubMerger().thenAsync(Cleaner.Cleaners.fileCleaner());
+            };
         }
     }
 }
\ No newline at end of file
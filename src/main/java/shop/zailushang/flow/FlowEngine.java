@@ -2,10 +2,20 @@ package shop.zailushang.flow;
 
 import lombok.extern.slf4j.Slf4j;
 import shop.zailushang.util.Assert;
+import shop.zailushang.util.ChapterSpool;
+import shop.zailushang.util.ContextPool;
+import shop.zailushang.util.HttpCache;
+import shop.zailushang.util.ProgressLog;
+import shop.zailushang.util.RateLimiter;
+import shop.zailushang.util.Transport;
 
 import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static shop.zailushang.entity.Tao.TAO;
 import static shop.zailushang.util.ScopedExecutor.*;
@@ -18,16 +28,42 @@ public class FlowEngine implements AutoCloseable {
     public static final boolean IS_TEST = true;
     // 是否启用本地解密
     public static final boolean USE_NATIVE = true;
+    // 是否启用阶段融合：相邻的纯计算步骤于同一线程内联执行，仅在 I/O 边界切换虚拟线程（-Dshuqi.fusion=false 关闭）
+    public static final boolean USE_FUSION = Boolean.parseBoolean(System.getProperty("shuqi.fusion", "true"));
+    // 是否启用响应缓存：内存 + 磁盘两级缓存，新鲜命中时跳过请求与流控（-Dshuqi.cache=false 关闭）
+    public static final boolean USE_CACHE = Boolean.parseBoolean(System.getProperty("shuqi.cache", "true"));
     // 删除文件标识
     public static final boolean NEED_DELETE = true;
+    // 章节写入方式（-Dshuqi.sink=APPENDER / SPOOL / EPUB 切换）
+    public static final Sink SINK = Sink.valueOf(System.getProperty("shuqi.sink", Sink.CHAPTER_FILES.name()));
+    // 是否启用断点续传：记录已完成的零散章节文件，中断后重启时仅下载缺失或损坏的章节（仅适用于零散章节文件方式，-Dshuqi.journal=false 关闭）
+    public static final boolean USE_JOURNAL = !IS_DEBUG && SINK == Sink.CHAPTER_FILES && Boolean.parseBoolean(System.getProperty("shuqi.journal", "true"));
+    // 是否启用流式章节列表：边解析章节列表边派发下载（需在下载前得知全部章节的断点续传、顺序追加方式不适用，-Dshuqi.streaming=false 关闭）
+    public static final boolean USE_STREAMING = !IS_DEBUG && !USE_JOURNAL && SINK != Sink.APPENDER && Boolean.parseBoolean(System.getProperty("shuqi.streaming", "true"));
+    // 是否启用详细日志：逐章输出各阶段日志；默认关闭，仅按周期输出每本书的汇总、失败与采样明细（-Dshuqi.log.verbose=true 开启）
+    public static final boolean VERBOSE_LOG = Boolean.parseBoolean(System.getProperty("shuqi.log.verbose", "false"));
+    // 是否启用成书引擎：按规划的偏移精确预分配目标文件，按书籍大小选择内存拼接、零拷贝传输或内存映射并行写入；关闭时使用 PartBook 分治合并（-Dshuqi.merge.assembler=false 关闭）
+    public static final boolean USE_ASSEMBLER = Boolean.parseBoolean(System.getProperty("shuqi.merge.assembler", "true"));
+    // 是否写出章节索引：合并后于书籍文件旁写出定长二进制索引（章节序号、标题、偏移、长度），供按章随机读取（-Dshuqi.index=false 关闭）
+    public static final boolean USE_INDEX = Boolean.parseBoolean(System.getProperty("shuqi.index", "true"));
     // 默认文件夹路径 e.g. D:/斗破苍穹
     public static final String FOLDER_FORMATTER = "D:/%s";
 
 
     // 每个线程默认处理的章节数量
     public static final Integer DEFAULT_CAPACITY = 5;
-    // http客户端（使用原生虚拟线程池）
-    public static final HttpClient HTTP_CLIENT = HttpClient.newBuilder().executor(delegate()).build();
+    // 并行窗口：每本书同时在途的章节数上限，先派发的完成后再补入，峰值内存不随书籍章节数增长（-Dshuqi.window 调整，0 为不限）
+    public static final Integer PARALLEL_WINDOW = Integer.getInteger("shuqi.window", 32);
+    // http客户端（使用原生虚拟线程池，优先 HTTP/2：同一主机的并发请求复用一条连接）
+    public static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .executor(delegate())
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Transport.CONNECT_TIMEOUT)
+            .build();
+    // 书籍调度器：限制同时下载的书籍数量
+    private final BookScheduler scheduler = new BookScheduler(this::startBook);
+    // 增量更新器
+    private final BookUpdater updater = new BookUpdater();
     // 单例模式：静态实例对象，使用 volatile 修饰，防止指令重排导致的 NPE 问题
     private static volatile FlowEngine DEFAULT_FLOW_ENGINE;
 
@@ -45,15 +81,43 @@ public class FlowEngine implements AutoCloseable {
         });
     }
 
-    // 启动流程引擎，设置书籍名称的作用域变量
+    // 启动流程引擎：每本书交由调度器排队执行，全部结束后返回，任一书籍失败时抛出其异常
     public void start(String... bookNames) {
-        Arrays.stream(bookNames)
-                .parallel()
-                .forEach(bookName -> ScopedValue.where(ScopedExecutors.KEY, bookName).run(this::start0));
+        var futures = Arrays.stream(bookNames)
+                .map(scheduler::submit)
+                .toList();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .exceptionally(_ -> null)
+                .join();
+        log.info("书籍调度统计 => {}", scheduler.stats());
+        futures.forEach(CompletableFuture::join);
+    }
+
+    // 批量模式：流式读取书目文件（每行一个书名），按并发上限逐本执行，单本失败不影响其余书籍
+    public BookScheduler.Stats start(Path catalog) {
+        return scheduler.submitAll(catalog).join();
+    }
+
+    // 增量更新：仅下载新增或变化的章节，追加或修补已合并的书籍文件，全部结束后返回，任一书籍失败时抛出其异常
+    public List<BookUpdater.Result> update(String... bookNames) {
+        return updater.update(bookNames);
+    }
+
+    // 订阅：按固定间隔轮询各书的章节列表，有更新时增量下载
+    public BookUpdater.Subscription subscribe(Duration interval, String... bookNames) {
+        return updater.subscribe(interval, bookNames);
+    }
+
+    // 执行一本书，设置书籍名称的作用域变量
+    private void startBook(String bookName) {
+        ScopedValue.where(ScopedExecutors.KEY, bookName).run(this::start0);
     }
 
     // 组装串联流程
     private void start0() {
+        final var bookName = ScopedExecutors.KEY.get();
+        // 按书统计各阶段进展，周期输出汇总
+        ProgressLog.open(bookName);
         try {
             log.info("""
                     \u001B[93m敕令：「
@@ -89,18 +153,31 @@ public class FlowEngine implements AutoCloseable {
             log.info("\u001B[93m敕令：「四笔煞无形，乾坤朗朗清。」\u001B[0m");
 
             // 起始亦是终，始于道，亦终于道
-            tao = bidFlow.thenAsync(chapterFlow)
-                    .thenAsync(contentListFlow)
+            // 流式章节列表：下载章节内容与解析章节列表交错进行
+            tao = bidFlow.thenAsync(USE_STREAMING ? Flow.Flows.chapterStreamFlow().thenAsync(Flow.Flows.contentStreamFlow()) : chapterFlow.thenAsync(contentListFlow))
                     .thenAsync(mergeFlow)
                     .start(tao);
             log.info("\u001B[93m敕令：「笔收星芒，符镇八荒，朱砂既凝，邪魔永丧。」\u001B[0m");
         } catch (Exception e) {
             log.error("\u001B[91m敕令：「心念不纯，符窍无光！僭请神明，触怒天罡！伏请三清垂慈，赦宥愚诚！」\u001B[0m");
             throw e;
+        } finally {
+            ProgressLog.close(bookName);
         }
     }
 
     public void end() {
+        if (USE_CACHE) log.info("响应缓存统计 => {}", HttpCache.stats());
+        final var transportStats = Transport.stats();
+        log.info("传输统计 => {}, 压缩率 => {}", transportStats, "%.2f".formatted(transportStats.ratio()));
+        log.info("流控统计 => {}", RateLimiter.stats());
+        log.info("公平队列统计 => {}", RateLimiter.fairStats());
+        if (SINK == Sink.SPOOL) log.info("暂存区统计 => 堆外内存峰值(字节) => {}, 溢写次数 => {}", ChapterSpool.globalPeakBytes(), ChapterSpool.globalSpillCount());
+        // 仅 js 解密时输出，避免为统计而初始化引擎
+        if (!USE_NATIVE) {
+            final var poolStats = ContextPool.stats();
+            log.info("js引擎池统计 => {}, 平均等待(微秒) => {}, 平均解密(微秒) => {}", poolStats, "%.2f".formatted(poolStats.avgWaitMicros()), "%.2f".formatted(poolStats.avgDecodeMicros()));
+        }
         log.info("\u001B[92m敕令：「香云奉送，祖师归坛；神兵返驾，各归玄庭！弟子稽首，再沐恩光！散坛！」\u001B[0m");
         HTTP_CLIENT.close();
         shutdown();
@@ -110,4 +187,16 @@ public class FlowEngine implements AutoCloseable {
     public void close() {
         end();
     }
+
+    // 章节写入方式
+    public enum Sink {
+        // 每章写入零散文件，下载完成后合并、清理
+        CHAPTER_FILES,
+        // 按章节顺序直接追加至书籍文件，无需合并、清理
+        APPENDER,
+        // 暂存于堆外内存（超出预算时溢写至映射文件），下载完成后一次性写出
+        SPOOL,
+        // 每章排版后即并行压缩，下载完成后按章节顺序写出 EPUB 容器
+        EPUB
+    }
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+package shop.zailushang.flow;
+
+import lombok.extern.slf4j.Slf4j;
+import shop.zailushang.component.Task;
+import shop.zailushang.component.Writer;
+import shop.zailushang.entity.Chapter;
+import shop.zailushang.util.Assert;
+import shop.zailushang.util.ScopedExecutor;
+import shop.zailushang.util.Transport;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 工作节点（分布式模式）：向协调者（见 Coordinator）领取租约，下载、排版区间内的章节，逐章将排版后的字节提交给协调者
+ * 1. 单条章节沿用 contentFlow，仅将写入方式替换为提交至协调者；单章失败不影响同一租约内的其余章节，缺失的章节由协调者重新分派
+ * 2. 持有租约期间由心跳线程按有效期的三分之一周期续约，节点失联（进程退出、网络中断）时租约自然过期
+ * 3. 暂无可领取的区间时轮询等待，协调者关闭（410）或持续无法连接时退出
+ */
+@Slf4j
+public class Worker implements Runnable {
+    // 暂无租约或无法连接协调者时的轮询间隔
+    public static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+    // 连续无法连接协调者的最大次数
+    public static final Integer MAX_UNREACHABLE = 10;
+    // 組件名稱
+    private static final String NAME = "「游骑」";
+
+    // 协调者地址 e.g. http://127.0.0.1:8520/
+    private final URI coordinator;
+    // 节点标识
+    private final String workerId;
+
+    public Worker(URI coordinator) {
+        this(coordinator, "worker-" + ProcessHandle.current().pid());
+    }
+
+    public Worker(URI coordinator, String workerId) {
+        Assert.isTrue(coordinator, Assert::isNotNull, () -> new NullPointerException("United we stand, divided we fall. — Aesop"));
+        this.coordinator = coordinator;
+        this.workerId = workerId;
+    }
+
+    // 一个租约
+    private record Lease(Long id, String bookName, Duration ttl, List<Chapter.Chapter4Read> chapters) {
+        // 首行「租约号\t书名\t有效期毫秒」，其后每行「章节序号\t章节名\t请求地址后缀」，文本字段经 Coordinator.escape 转义
+        static Lease parse(String text) {
+            final var lines = text.lines().toList();
+            final var head = lines.getFirst().split("\t", 3);
+            final var bookName = Coordinator.unescape(head[1]);
+            final var chapters = lines.stream().skip(1)
+                    .filter(line -> !line.isEmpty())
+                    .map(line -> line.split("\t", 3))
+                    .map(fields -> new Chapter.Chapter4Read(bookName, Coordinator.unescape(fields[1]), Integer.valueOf(fields[0]), Coordinator.unescape(fields[2])))
+                    .toList();
+            return new Lease(Long.valueOf(head[0]), bookName, Duration.ofMillis(Long.parseLong(head[2])), chapters);
+        }
+    }
+
+    /*
+     * 领取并执行租约，直至协调者关闭
+     */
+    @Override
+    public void run() {
+        log.info("{} - {} 出营 coordinator => {}, content => {}", NAME, workerId, coordinator, Transport.CONTENT_ORIGIN);
+        var unreachable = 0;
+        while (true) {
+            final HttpResponse<String> response;
+            try {
+                response = post("lease?worker=" + encode(workerId), new byte[0], HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                unreachable = 0;
+            } catch (IOException e) {
+                Assert.isTrue(++unreachable, n -> n < MAX_UNREACHABLE, () -> new RuntimeException("coordinator unreachable: " + coordinator, e));
+                log.warn("{} - {} 无法连接协调者（第 {} 次） => {}", NAME, workerId, unreachable, e.toString());
+                pause();
+                continue;
+            }
+            switch (response.statusCode()) {
+                case 200 -> execute(Lease.parse(response.body()));
+                case 204 -> pause();
+                case 410 -> {
+                    log.info("{} - {} 协调者已关闭，收营", NAME, workerId);
+                    return;
+                }
+                default -> throw new IllegalStateException("unexpected lease response: " + response.statusCode());
+            }
+        }
+    }
+
+    /*
+     * 执行一个租约：心跳续约的同时并行下载区间内的章节，全部结束后归还
+     */
+    private void execute(Lease lease) {
+        log.info("{} - {} 领取租约 {} [{}] 章节数 => {}", NAME, workerId, lease.id(), lease.bookName(), lease.chapters().size());
+        final var heartbeat = Thread.ofVirtual().name("heartbeat-" + lease.id()).start(() -> heartbeat(lease));
+        try {
+            final var contentTask = Flow.Flows.contentFlow(remoteWriter(lease)).head();
+            // 单章失败时记为 null，由协调者于归还租约时重新分派
+            final Flow<Chapter.Chapter4Read, Chapter.Chapter4Merge> tolerant = () -> chapter4Read -> contentTask.apply(chapter4Read)
+                    .exceptionally(e -> {
+                        log.warn("{} - {} 章节 {} 失败 => {}", NAME, workerId, chapter4Read.chapterOrdid(), e.toString());
+                        return null;
+                    });
+            ScopedValue.where(ScopedExecutor.ScopedExecutors.KEY, lease.bookName())
+                    .run(() -> Flow.parallelFlow(Function.identity(), tolerant, Function.identity(), Task.Window.items(FlowEngine.PARALLEL_WINDOW)).start(lease.chapters()));
+        } finally {
+            heartbeat.interrupt();
+        }
+        try {
+            final var status = post("done?lease=" + lease.id(), new byte[0], HttpResponse.BodyHandlers.discarding()).statusCode();
+            log.info("{} - {} 归还租约 {} => {}", NAME, workerId, lease.id(), status);
+        } catch (IOException e) {
+            // 无法归还时由协调者于租约过期后收回
+            log.warn("{} - {} 归还租约 {} 失败 => {}", NAME, workerId, lease.id(), e.toString());
+        }
+    }
+
+    // 心跳：每隔有效期的三分之一续约一次，租约失效或被中断时退出
+    private void heartbeat(Lease lease) {
+        final var period = lease.ttl().dividedBy(3);
+        while (true) {
+            try {
+                Thread.sleep(period);
+                if (post("renew?lease=" + lease.id(), new byte[0], HttpResponse.BodyHandlers.discarding()).statusCode() == 410) {
+                    log.warn("{} - {} 租约 {} 已失效", NAME, workerId, lease.id());
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("{} - {} 续约 {} 失败 => {}", NAME, workerId, lease.id(), e.toString());
+            }
+        }
+    }
+
+    // 远程写入器：经租约将排版后的章节字节提交至协调者，返回的 Chapter4Merge 无文件路径与通道
+    private Writer remoteWriter(Lease lease) {
+        return chapter4Write -> {
+            final var request = request("chapter?lease=" + lease.id() + "&worker=" + encode(workerId) + "&ordid=" + chapter4Write.chapterOrdid(), chapter4Write.chapterBytes());
+            return FlowEngine.HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenApplyAsync(response -> {
+                        // 208：该章已由其他节点提交；410：租约已失效，该章由协调者重新分派
+                        Assert.isTrue(response.statusCode(), status -> status == 200 || status == 208 || status == 410, () -> new IllegalStateException("unexpected chapter response: " + response.statusCode()));
+                        if (response.statusCode() == 410) log.warn("{} - {} 租约 {} 已失效，章节 {} 未被接收", NAME, workerId, lease.id(), chapter4Write.chapterOrdid());
+                        return new Chapter.Chapter4Merge(chapter4Write.bookName(), chapter4Write.chapterOrdid(), null, null);
+                    }, Task.cpuExecutor());
+        };
+    }
+
+    private <T> HttpResponse<T> post(String path, byte[] body, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return FlowEngine.HTTP_CLIENT.send(request(path, body), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    // 协调者为 HTTP/1.1 明文服务，不尝试升级
+    private HttpRequest request(String path, byte[] body) {
+        return HttpRequest.newBuilder(coordinator.resolve(path))
+                .version(HttpClient.Version.HTTP_1_1)
+                .timeout(Transport.REQUEST_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(POLL_INTERVAL);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,5 +1,12 @@
 import shop.zailushang.component.Reader;
+import shop.zailushang.flow.BookUpdater;
+import shop.zailushang.flow.Coordinator;
 import shop.zailushang.flow.FlowEngine;
+import shop.zailushang.flow.Worker;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 本程序在编时，该网站大多数书籍均为免费阅读，后该网站调整运营策略，全文章需要 VIP校验，仅前 20 章可免费阅读
@@ -10,9 +17,40 @@ import shop.zailushang.flow.FlowEngine;
  * 是否启用测试模式 {@link FlowEngine#IS_TEST } 默认启用，测试模式下仅下载前 20 章内容
  * 是否启用调试模式 {@link FlowEngine#IS_DEBUG } 默认禁止，调试模式下，会将抓取的章节内容输出至控制台，不会写入文件
  * 是否启用本地解密模式 {@link FlowEngine#USE_NATIVE } 默认启用，使用java本地解密方法免加载js脚本，免排队更快
+ * 章节写入方式 {@link FlowEngine#SINK } 默认零散章节文件 + 合并；APPENDER 模式按章节顺序直接追加至书籍文件，免合并、免清理；SPOOL 模式暂存于堆外内存，一次性写出；EPUB 模式每章排版后即并行压缩，下载完成后写出带目录的 EPUB（-Dshuqi.epub.level 调整压缩级别）
+ * 是否启用阶段融合模式 {@link FlowEngine#USE_FUSION } 默认启用，纯计算步骤内联执行，仅在 I/O 边界切换虚拟线程
+ * 是否启用断点续传 {@link FlowEngine#USE_JOURNAL } 默认启用（零散章节文件方式），中断后重新启动时仅下载缺失或损坏的章节
+ * 是否启用响应缓存 {@link FlowEngine#USE_CACHE } 默认启用，内存 + 磁盘两级缓存（位于 D:/.cache），命中时跳过请求与流控
+ * 下载章节内容的速率上限 {@link shop.zailushang.util.RateLimiter#MAX_RATE } 默认 1.5 次/秒，被限流（429 / 503）或响应过慢时自动降速，恢复后逐步回升
+ * 传输层 {@link shop.zailushang.util.Transport } 协商 gzip / deflate 压缩并边接收边解压，优先 HTTP/2，连接超时 10 秒、请求超时 30 秒，下载章节前预热连接
+ * 是否启用流式章节列表 {@link FlowEngine#USE_STREAMING } 默认启用（关闭断点续传且非顺序追加方式时生效），边解析章节列表边下载章节内容
+ * 飞行记录 {@link shop.zailushang.util.FlightEvents } 以 -XX:StartFlightRecording 启动即可记录各阶段、流控等待、JS 引擎获取、分治合并与文件预分配的耗时，未开启记录时几无开销
+ * 是否启用详细日志 {@link FlowEngine#VERBOSE_LOG } 默认关闭，每本书每 5 秒输出一行各阶段汇总（-Dshuqi.log.interval），逐章明细按 1% 采样（-Dshuqi.log.sample），失败总是输出；日志经异步追加器输出
+ * 同时下载的书籍数量 {@link shop.zailushang.flow.BookScheduler#MAX_CONCURRENT_BOOKS } 默认 2（-Dshuqi.books），多出的书籍排队；批量模式 {@link FlowEngine#start(java.nio.file.Path) } 按行流式读取书目文件
+ * 多本书共享流控速率时按书公平轮询 {@link shop.zailushang.util.FairQueue } 小书不被大书饿死，权重通过 -Dshuqi.fair.weights=书名:权重 配置
+ * 并行窗口 {@link FlowEngine#PARALLEL_WINDOW } 默认每本书同时在途 32 章（-Dshuqi.window），完成一章补入一章，峰值内存不随章节数增长
+ * 是否启用成书引擎 {@link FlowEngine#USE_ASSEMBLER } 默认启用，按并行前缀和规划的偏移精确预分配书籍文件，8 MB 以下内存拼接、64 MB 以下零拷贝传输、更大的书内存映射并行写入（-Dshuqi.merge.concat / -Dshuqi.merge.mapped）
+ * 是否写出章节索引 {@link FlowEngine#USE_INDEX } 默认启用，合并后于书籍文件旁写出定长二进制索引 {@link shop.zailushang.util.BookIndex }（e.g. D:/斗破苍穹/斗破苍穹.idx），按章节序号定位读取或映射切片，无需扫描书籍文件
+ * 增量更新 -Dshuqi.update=once 比对章节清单（D:/斗破苍穹/.manifest）仅下载新增或变化的章节，追加或修补已合并的书籍文件；-Dshuqi.update=poll 每隔 {@link BookUpdater#POLL_INTERVAL } 轮询章节列表页（-Dshuqi.update.interval 分钟，-Dshuqi.update.recheck 复查最近 N 章）
+ * 分布式模式 -Dshuqi.cluster=coordinator 启动协调者 {@link shop.zailushang.flow.Coordinator }（-Dshuqi.cluster.port 默认 8520），按租约分派章节并统一合并；-Dshuqi.cluster=worker 启动工作节点 {@link shop.zailushang.flow.Worker }（-Dshuqi.cluster.coordinator=http://主机:8520/），多台机器分摊流控与磁盘
  */
 void main() {
-    try (var engine = FlowEngine.getDefaultFlowEngine()) {
-        engine.start("斗破苍穹", "武动乾坤", "大主宰", "元尊");
+    final var books = new String[]{"斗破苍穹", "武动乾坤", "大主宰", "元尊"};
+    switch (System.getProperty("shuqi.cluster", "")) {
+        case "coordinator" -> {
+            try (var coordinator = new Coordinator(Integer.getInteger("shuqi.cluster.port", 8520))) {
+                CompletableFuture.allOf(Arrays.stream(books).map(coordinator::submit).toArray(CompletableFuture[]::new)).join();
+            }
+        }
+        case "worker" -> new Worker(URI.create(System.getProperty("shuqi.cluster.coordinator", "http://127.0.0.1:8520/"))).run();
+        default -> {
+            try (var engine = FlowEngine.getDefaultFlowEngine()) {
+                switch (System.getProperty("shuqi.update", "")) {
+                    case "once" -> engine.update(books);
+                    case "poll" -> engine.subscribe(BookUpdater.POLL_INTERVAL, books).join();
+                    default -> engine.start(books);
+                }
+            }
+        }
     }
 }
\ No newline at end of file
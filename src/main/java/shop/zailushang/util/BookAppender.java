@@ -0,0 +1,194 @@
+package shop.zailushang.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 顺序追加器：将排版后的章节按章节顺序直接追加至最终的书籍文件，无需零散章节文件，也无需合并与清理
+ * 乱序到达的章节暂存于有界重排缓冲区，连续的章节聚合为一次 gather write
+ * 下载过程中，书籍文件始终为正确的前缀，可直接阅读
+ */
+@Slf4j
+public class BookAppender implements AutoCloseable {
+    // 重排缓冲区上限（字节）：超出时，非队首章节阻塞等待，形成背压
+    public static final Long MAX_PENDING_BYTES = 32L * 1024 * 1024;
+    // 单次聚合写入的最大章节数
+    private static final int MAX_GATHER = 64;
+    // 組件名稱
+    private static final String NAME = "「八卦镜」";
+
+    private final String bookName;
+    private final Path targetPath;
+    private final FileChannel fileChannel;
+    // 章节序号 → 写入次序
+    private final Map<Integer, Integer> indexes;
+    // 按写入次序存放待写入的章节
+    private final Pending[] pendings;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition drained = lock.newCondition();
+    // 下一个待写入的次序
+    private int next;
+    // 已写入的字节数，即下一章的起始偏移
+    private long position;
+    // 重排缓冲区中的字节数
+    private long pendingBytes;
+    // 失败原因，非空时拒绝后续追加
+    private Throwable failure;
+
+    // 待写入的章节
+    private record Pending(ByteBuffer buffer, CompletableFuture<Long> offset) {
+    }
+
+    // 已写入的章节及其起始偏移
+    private record Written(CompletableFuture<Long> offset, Long position) {
+    }
+
+    /**
+     * @param bookName   书籍名称
+     * @param targetPath 目标文件路径
+     * @param ordids     本次下载的全部章节序号（按写入顺序排列）
+     */
+    public BookAppender(String bookName, Path targetPath, List<Integer> ordids) {
+        this.bookName = bookName;
+        this.targetPath = targetPath;
+        this.indexes = HashMap.newHashMap(ordids.size());
+        for (int i = 0; i < ordids.size(); i++) indexes.put(ordids.get(i), i);
+        this.pendings = new Pending[ordids.size()];
+        try {
+            Files.createDirectories(targetPath.getParent());
+            this.fileChannel = FileChannel.open(targetPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        log.info("{} - 打开顺序追加文件 [{}] path => {}, 章节数 => {}", NAME, bookName, targetPath, ordids.size());
+    }
+
+    public Path targetPath() {
+        return targetPath;
+    }
+
+    /*
+     * 追加章节，返回该章在书籍文件中的起始偏移；该章之前的章节全部写入后才会完成
+     */
+    public CompletableFuture<Long> append(Integer chapterOrdid, byte[] bytes) {
+        var index = indexes.get(chapterOrdid);
+        Assert.isTrue(index, Assert::isNotNull, () -> new IllegalArgumentException("unknown chapterOrdid " + chapterOrdid + " for " + bookName));
+        var offset = new CompletableFuture<Long>();
+        List<Written> written;
+        lock.lock();
+        try {
+            // 背压：缓冲区已满时，只有队首章节可以进入
+            while (failure == null && index != next && pendingBytes + bytes.length > MAX_PENDING_BYTES) drained.await();
+            if (failure != null) return CompletableFuture.failedFuture(failure);
+            Assert.isTrue(pendings[index], Assert::isNull, () -> new IllegalStateException("duplicate chapterOrdid " + chapterOrdid + " for " + bookName));
+            pendings[index] = new Pending(ByteBuffer.wrap(bytes), offset);
+            pendingBytes += bytes.length;
+            written = drain();
+        } catch (Throwable e) {
+            abort(e);
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            lock.unlock();
+        }
+        // 在锁外完成，避免后续内联步骤持有锁
+        written.forEach(w -> w.offset().complete(w.position()));
+        return offset;
+    }
+
+    // 写出所有已连续到达的章节（持有锁时调用），返回本次写出的章节
+    private List<Written> drain() throws Exception {
+        List<Written> written = List.of();
+        while (next < pendings.length && pendings[next] != null) {
+            var end = next;
+            while (end < pendings.length && end - next < MAX_GATHER && pendings[end] != null) end++;
+            var buffers = new ByteBuffer[end - next];
+            var batchBytes = 0L;
+            for (int i = next; i < end; i++) {
+                buffers[i - next] = pendings[i].buffer();
+                batchBytes += pendings[i].buffer().remaining();
+            }
+            // 聚合写入，直至全部写出
+            var remaining = batchBytes;
+            while (remaining > 0) remaining -= fileChannel.write(buffers);
+            if (written.isEmpty()) written = new ArrayList<>();
+            for (int i = next; i < end; i++) {
+                var pending = pendings[i];
+                var length = pending.buffer().capacity();
+                // 先记录偏移，锁外再通知
+                written.add(new Written(pending.offset(), position));
+                position += length;
+                pendingBytes -= length;
+                pendings[i] = null;
+            }
+            next = end;
+        }
+        if (!written.isEmpty()) drained.signalAll();
+        return written;
+    }
+
+    /*
+     * 终止追加：唤醒所有等待者，缓冲区中及后续追加的章节全部失败
+     */
+    public void abort(Throwable cause) {
+        var aborted = new ArrayList<CompletableFuture<Long>>();
+        long written;
+        lock.lock();
+        try {
+            if (failure != null) return;
+            failure = cause;
+            for (int i = next; i < pendings.length; i++) {
+                if (pendings[i] != null) aborted.add(pendings[i].offset());
+                pendings[i] = null;
+            }
+            pendingBytes = 0;
+            written = position;
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        aborted.forEach(offset -> offset.completeExceptionally(cause));
+        log.error("{} - 顺序追加终止 [{}] 已写入 {} 字节", NAME, bookName, written, cause);
+    }
+
+    // 已写入的字节数
+    public long position() {
+        lock.lock();
+        try {
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 是否全部章节均已写入
+    public boolean isComplete() {
+        lock.lock();
+        try {
+            return failure == null && next == pendings.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        try (fileChannel) {
+            fileChannel.force(true);
+            log.info("{} - 关闭顺序追加文件 [{}] 共写入 {} 字节", NAME, bookName, position());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package shop.zailushang.util;
+
+import lombok.extern.slf4j.Slf4j;
+import shop.zailushang.component.Task;
+import shop.zailushang.entity.Chapter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 成书：按已规划的偏移（见 Chapter4Merge#plan）将零散章节并行写入目标文件，目标文件按总长度精确预分配
+ * 1. 章节按偏移切分为若干连续的分段（每段约 SEGMENT_SIZE 字节），各分段于虚拟线程中并行写入互不重叠的区域
+ * 2. 按书籍大小选择写入方式：小书读入内存拼接后一次写出；中等的书逐章零拷贝传输；大书映射目标文件，章节直接读入映射区域
+ * 3. 不再统计文件夹中的文件大小，遗留的其他文件不影响目标文件长度
+ */
+@Slf4j
+public class BookAssembler {
+    // 内存拼接的上限，可通过 -Dshuqi.merge.concat 调整（字节）
+    public static final Long CONCAT_LIMIT = Long.getLong("shuqi.merge.concat", 8L << 20);
+    // 内存映射的下限，可通过 -Dshuqi.merge.mapped 调整（字节）
+    public static final Long MAPPED_THRESHOLD = Long.getLong("shuqi.merge.mapped", 64L << 20);
+    // 每个并行分段的目标大小（字节）
+    public static final Long SEGMENT_SIZE = 4L << 20;
+    // 組件名稱
+    private static final String NAME = "「炼字炉」";
+
+    private BookAssembler() {
+    }
+
+    // 写入方式
+    public enum Strategy {
+        // 读入内存拼接，一次写出
+        CONCAT,
+        // 逐章零拷贝传输至目标文件的对应位置
+        TRANSFER,
+        // 映射目标文件，章节直接读入映射区域
+        MAPPED;
+
+        // 按书籍大小选择
+        public static Strategy of(long totalLength) {
+            if (totalLength <= CONCAT_LIMIT) return CONCAT;
+            return totalLength < MAPPED_THRESHOLD ? TRANSFER : MAPPED;
+        }
+    }
+
+    /*
+     * 成书：按书籍大小选择写入方式
+     */
+    public static IOForkJoinTask.Result assemble(String bookName, List<Chapter.Chapter4Merge> chapter4Merges) {
+        return assemble(bookName, chapter4Merges, Strategy.of(totalLength(chapter4Merges)));
+    }
+
+    /*
+     * 成书：以指定的方式写入，完成后关闭各章的文件通道
+     */
+    public static IOForkJoinTask.Result assemble(String bookName, List<Chapter.Chapter4Merge> chapter4Merges, Strategy strategy) {
+        var totalLength = totalLength(chapter4Merges);
+        log.info("{} - [{}] 合并章节数 => {}, 总长度 => {}, 方式 => {}", NAME, bookName, chapter4Merges.size(), totalLength, strategy);
+        var event = new FlightEvents.PreallocateEvent();
+        event.begin();
+        try (var raf = new RandomAccessFile(BookCache.getTargetFilePath(bookName).toFile(), "rw"); var target = raf.getChannel()) {
+            // 精确预分配：截断上次遗留的内容
+            raf.setLength(totalLength);
+            event.end();
+            if (event.shouldCommit()) {
+                event.bookName = bookName;
+                event.length = totalLength;
+                event.commit();
+            }
+            switch (strategy) {
+                case CONCAT -> concat(chapter4Merges, target, totalLength);
+                case TRANSFER -> parallel(chapter4Merges, chapter4Merge -> {
+                    // 章节文件缩短时 transferFrom 返回 0，与 readFully 一样失败而非空转
+                    var source = chapter4Merge.fileChannel();
+                    var size = chapter4Merge.size();
+                    for (long position = 0; position < size; ) {
+                        var transferred = target.transferFrom(source.position(position), chapter4Merge.skip() + position, size - position);
+                        Assert.isTrue(transferred, n -> n > 0, () -> new IllegalStateException("chapter file shrank while merging"));
+                        position += transferred;
+                    }
+                });
+                case MAPPED -> {
+                    // 映射的生命周期与 Arena 绑定，关闭时解除映射
+                    try (var arena = Arena.ofShared()) {
+                        var region = target.map(FileChannel.MapMode.READ_WRITE, 0, totalLength, arena);
+                        parallel(chapter4Merges, chapter4Merge -> readFully(chapter4Merge.fileChannel(), region.asSlice(chapter4Merge.skip(), chapter4Merge.size()).asByteBuffer()));
+                        region.force();
+                    }
+                }
+            }
+            return new IOForkJoinTask.Result(chapter4Merges.size(), totalLength);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            chapter4Merges.forEach(BookAssembler::closeQuietly);
+        }
+    }
+
+    // 目标文件总长度：末章的起始偏移 + 末章大小
+    private static long totalLength(List<Chapter.Chapter4Merge> chapter4Merges) {
+        if (chapter4Merges.isEmpty()) return 0L;
+        var last = chapter4Merges.getLast();
+        Assert.isTrue(last.skip(), skip -> skip >= 0, () -> new IllegalStateException("chapters must be planned before assembling, see Chapter4Merge#plan"));
+        return last.skip() + last.size();
+    }
+
+    // 内存拼接：各章并行读入同一数组的对应位置，随后一次写出
+    private static void concat(List<Chapter.Chapter4Merge> chapter4Merges, FileChannel target, long totalLength) throws IOException {
+        var buffer = new byte[Math.toIntExact(totalLength)];
+        parallel(chapter4Merges, chapter4Merge -> readFully(chapter4Merge.fileChannel(), ByteBuffer.wrap(buffer, Math.toIntExact(chapter4Merge.skip()), Math.toIntExact(chapter4Merge.size()))));
+        var byteBuffer = ByteBuffer.wrap(buffer);
+        while (byteBuffer.hasRemaining()) target.write(byteBuffer, byteBuffer.position());
+    }
+
+    // 单章的写入操作
+    @FunctionalInterface
+    private interface ChapterCopy {
+        void copy(Chapter.Chapter4Merge chapter4Merge) throws IOException;
+    }
+
+    /*
+     * 按偏移切分为连续的分段，各分段于虚拟线程中并行执行，全部完成后返回，任一分段失败时抛出其异常
+     */
+    private static void parallel(List<Chapter.Chapter4Merge> chapter4Merges, ChapterCopy copy) {
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        var from = 0;
+        while (from < chapter4Merges.size()) {
+            var segmentEnd = chapter4Merges.get(from).skip() + SEGMENT_SIZE;
+            var to = from + 1;
+            while (to < chapter4Merges.size() && chapter4Merges.get(to).skip() < segmentEnd) to++;
+            var segment = chapter4Merges.subList(from, to);
+            futures.add(CompletableFuture.runAsync(() -> segment.forEach(chapter4Merge -> {
+                try {
+                    copy.copy(chapter4Merge);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }), Task.taskExecutor()));
+            from = to;
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+    }
+
+    // 自文件起始位置读满缓冲区
+    private static void readFully(FileChannel source, ByteBuffer buffer) throws IOException {
+        var position = 0L;
+        while (buffer.hasRemaining()) {
+            var read = source.read(buffer, position);
+            Assert.isTrue(read, n -> n >= 0, () -> new IllegalStateException("chapter file shrank while merging"));
+            position += read;
+        }
+    }
+
+    private static void closeQuietly(Chapter.Chapter4Merge chapter4Merge) {
+        try {
+            chapter4Merge.fileChannel().close();
+        } catch (IOException e) {
+            log.warn("{} - 关闭文件通道失败 => {}", NAME, chapter4Merge.filePath());
+        }
+    }
+}
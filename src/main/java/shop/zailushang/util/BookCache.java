@@ -7,15 +7,27 @@ import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 // 书籍缓存类：用于记录一些书籍在下载过程中的所需数据
 public class BookCache {
     // 默认文件路径 e.g. D:/斗破苍穹/1.txt or D:/斗破苍穹/斗破苍穹.txt
     private static final String FILE_PATH_FORMATTER = "%s/%s.txt";
+    // EPUB 文件路径 e.g. D:/斗破苍穹/斗破苍穹.epub
+    private static final String EPUB_PATH_FORMATTER = "%s/%s.epub";
     // 文件通道缓存
     private static final Map<String, FileChannel> FILE_CHANNEL_MAP = new ConcurrentHashMap<>();
+    // 顺序追加器缓存
+    private static final Map<String, BookAppender> APPENDER_MAP = new ConcurrentHashMap<>();
+    // 堆外暂存区缓存
+    private static final Map<String, ChapterSpool> SPOOL_MAP = new ConcurrentHashMap<>();
+    // EPUB 缓存
+    private static final Map<String, EpubBook> EPUB_MAP = new ConcurrentHashMap<>();
+    // 断点续传日志缓存
+    private static final Map<String, BookJournal> JOURNAL_MAP = new ConcurrentHashMap<>();
 
     // 获取文件夹路径
     public static Path getFolderPath(String bookName) {
@@ -35,18 +47,40 @@ public class BookCache {
         }
     }
 
+    // 获取合并后的目标文件路径 e.g. D:/斗破苍穹/斗破苍穹.txt
+    public static Path getTargetFilePath(String bookName) {
+        try {
+            return Paths.get(FILE_PATH_FORMATTER.formatted(getFolderPath(bookName), bookName));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // 获取 EPUB 文件路径 e.g. D:/斗破苍穹/斗破苍穹.epub
+    public static Path getEpubFilePath(String bookName) {
+        try {
+            return Paths.get(EPUB_PATH_FORMATTER.formatted(getFolderPath(bookName), bookName));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // 获取文件通道
     public static FileChannel getFileChannel(String bookName) {
         return FILE_CHANNEL_MAP.computeIfAbsent(bookName, bkName -> {
+            var event = new FlightEvents.PreallocateEvent();
+            event.begin();
             try {
                 // 文件夹路径
                 var folderPath = getFolderPath(bkName);
-                // 合并后的目标文件路径 e.g. D:/斗破苍穹/斗破苍穹.txt
-                var targetFilePath = Paths.get(FILE_PATH_FORMATTER.formatted(folderPath, bkName));
+                // 合并后的目标文件路径
+                var targetFilePath = getTargetFilePath(bkName);
                 // 使用 RandomAccessFile 预设文件大小，与 FileChannel 共享文件描述符，此处无需关闭
                 var raf = new RandomAccessFile(targetFilePath.toFile(), "rw");
-                // 计算合并后的文件总长度（字节）
+                // 计算合并后的文件总长度（字节），排除隐藏文件（断点续传日志等）、上次中断时遗留的目标文件与章节索引
+                var indexPath = BookIndex.indexPath(targetFilePath);
                 var totalLength = Files.list(folderPath)
+                        .filter(path -> !path.getFileName().toString().startsWith(".") && !path.equals(targetFilePath) && !path.equals(indexPath))
                         .map(path -> {
                             try {
                                 return Files.size(path);
@@ -57,6 +91,12 @@ public class BookCache {
                         .reduce(0L, Long::sum);
                 // 预设置总文件大小，避免重复扩容，提升写入时性能
                 raf.setLength(totalLength);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.bookName = bkName;
+                    event.length = totalLength;
+                    event.commit();
+                }
                 return raf.getChannel();
             } catch (Exception e) {
                 throw new RuntimeException(e);
@@ -76,4 +116,112 @@ public class BookCache {
             }
         });
     }
+
+    // 打开顺序追加器（每本书同时仅有一个）
+    public static BookAppender openAppender(String bookName, List<Integer> chapterOrdids) {
+        return APPENDER_MAP.compute(bookName, (bkName, appender) -> {
+            // 关闭上次下载失败时遗留的追加器
+            if (appender != null) appender.close();
+            return new BookAppender(bkName, getTargetFilePath(bkName), chapterOrdids);
+        });
+    }
+
+    // 获取顺序追加器
+    public static BookAppender getAppender(String bookName) {
+        var appender = APPENDER_MAP.get(bookName);
+        Assert.isTrue(appender, Assert::isNotNull, () -> new IllegalStateException("appender not opened for " + bookName));
+        return appender;
+    }
+
+    // 关闭并删除顺序追加器
+    public static void removeAppender(String bookName) {
+        APPENDER_MAP.computeIfPresent(bookName, (_, v) -> {
+            v.close();
+            return null;
+        });
+    }
+
+    // 打开堆外暂存区（每本书同时仅有一个）
+    public static ChapterSpool openSpool(String bookName) {
+        return SPOOL_MAP.compute(bookName, (bkName, spool) -> {
+            // 释放上次下载失败时遗留的暂存区
+            if (spool != null) spool.close();
+            return new ChapterSpool(bkName, getFolderPath(bkName));
+        });
+    }
+
+    // 获取堆外暂存区
+    public static ChapterSpool getSpool(String bookName) {
+        var spool = SPOOL_MAP.get(bookName);
+        Assert.isTrue(spool, Assert::isNotNull, () -> new IllegalStateException("spool not opened for " + bookName));
+        return spool;
+    }
+
+    // 释放并删除堆外暂存区
+    public static void removeSpool(String bookName) {
+        SPOOL_MAP.computeIfPresent(bookName, (_, v) -> {
+            v.close();
+            return null;
+        });
+    }
+
+    // 打开 EPUB（每本书同时仅有一个）
+    public static EpubBook openEpub(String bookName) {
+        return EPUB_MAP.compute(bookName, (bkName, epub) -> {
+            // 丢弃上次下载失败时遗留的章节
+            if (epub != null) epub.close();
+            return new EpubBook(bkName);
+        });
+    }
+
+    // 获取 EPUB
+    public static EpubBook getEpub(String bookName) {
+        var epub = EPUB_MAP.get(bookName);
+        Assert.isTrue(epub, Assert::isNotNull, () -> new IllegalStateException("epub not opened for " + bookName));
+        return epub;
+    }
+
+    // 释放并删除 EPUB
+    public static void removeEpub(String bookName) {
+        EPUB_MAP.computeIfPresent(bookName, (_, v) -> {
+            v.close();
+            return null;
+        });
+    }
+
+    // 打开断点续传日志（读取上次运行遗留的记录）
+    public static BookJournal openJournal(String bookName, String bid) {
+        return JOURNAL_MAP.compute(bookName, (bkName, journal) -> {
+            if (journal != null) journal.close();
+            return new BookJournal(bkName, getFolderPath(bkName), bid);
+        });
+    }
+
+    // 获取断点续传日志
+    public static BookJournal getJournal(String bookName) {
+        var journal = JOURNAL_MAP.get(bookName);
+        Assert.isTrue(journal, Assert::isNotNull, () -> new IllegalStateException("journal not opened for " + bookName));
+        return journal;
+    }
+
+    // 获取断点续传日志（未启用时为空）
+    public static Optional<BookJournal> findJournal(String bookName) {
+        return Optional.ofNullable(JOURNAL_MAP.get(bookName));
+    }
+
+    // 书籍合并失败时关闭断点续传日志，保留日志文件供下次运行续传
+    public static void closeJournal(String bookName) {
+        JOURNAL_MAP.computeIfPresent(bookName, (_, v) -> {
+            v.close();
+            return null;
+        });
+    }
+
+    // 书籍合并完成后删除断点续传日志
+    public static void removeJournal(String bookName) {
+        JOURNAL_MAP.computeIfPresent(bookName, (_, v) -> {
+            v.delete();
+            return null;
+        });
+    }
 }
@@ -0,0 +1,250 @@
+package shop.zailushang.util;
+
+import lombok.extern.slf4j.Slf4j;
+import shop.zailushang.entity.Chapter;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 章节索引：合并时已按章节顺序求得每章在书籍文件中的偏移（Chapter4Merge#skip），将其持久化为书籍文件旁的定长二进制索引 e.g. D:/斗破苍穹/斗破苍穹.idx
+ * 布局（大端序）：
+ * 文件头 24 字节：魔数 "SQIX"(4) 版本(2) 记录长度(2) 章节数(4) 保留(4) 书籍文件长度(8)
+ * 每章一条记录 RECORD_SIZE 字节：章节序号(4) 偏移(8) 长度(4) 标题字节数(2) 标题 UTF-8（TITLE_WIDTH 字节，超出时按字符边界截断，不足补零）
+ * 读取时仅映射索引文件，第 i 章的记录位于 24 + i * RECORD_SIZE，按偏移定位读取或映射章节内容，无需扫描书籍文件
+ */
+@Slf4j
+public class BookIndex implements AutoCloseable {
+    // 魔数 "SQIX"
+    private static final int MAGIC = 0x53514958;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    // 标题定长字节数（约 30 个汉字）
+    public static final Integer TITLE_WIDTH = 94;
+    // 单条记录字节数
+    public static final Integer RECORD_SIZE = 4 + 8 + 4 + 2 + TITLE_WIDTH;
+    // 大端序、非对齐访问的布局
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    // 組件名稱
+    private static final String NAME = "「书签」";
+
+    // 一章的索引：章节序号、标题、在书籍文件中的起始偏移与长度（字节）
+    public record Entry(Integer chapterOrdid, String title, Long offset, Integer length) {
+    }
+
+    private final Path bookPath;
+    // 索引与书籍映射的生命周期与 Arena 绑定，关闭时解除映射
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment records;
+    private final FileChannel bookChannel;
+    private final long bookLength;
+    private final int size;
+    // 书籍文件的只读映射，首次按映射方式读取时建立
+    private volatile MemorySegment bookSegment;
+
+    private BookIndex(Path bookPath, Path indexPath) {
+        this.bookPath = bookPath;
+        FileChannel channel = null;
+        try (var indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            var index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size(), arena);
+            Assert.isTrue(index.byteSize(), n -> n >= HEADER_SIZE, () -> new IllegalStateException("truncated index: " + indexPath));
+            Assert.isTrue(index.get(INT, 0), magic -> magic == MAGIC, () -> new IllegalStateException("not a chapter index: " + indexPath));
+            Assert.isTrue(index.get(SHORT, 4), version -> version == VERSION, () -> new IllegalStateException("unsupported index version: " + indexPath));
+            Assert.isTrue(index.get(SHORT, 6), recordSize -> recordSize == RECORD_SIZE.shortValue(), () -> new IllegalStateException("unexpected index record size: " + indexPath));
+            this.size = index.get(INT, 8);
+            this.bookLength = index.get(LONG, 16);
+            Assert.isTrue(index.byteSize(), n -> n == HEADER_SIZE + (long) size * RECORD_SIZE, () -> new IllegalStateException("truncated index: " + indexPath));
+            this.records = index.asSlice(HEADER_SIZE);
+            channel = FileChannel.open(bookPath, StandardOpenOption.READ);
+            // 书籍文件被改写后索引不再可信
+            Assert.isTrue(channel.size(), n -> n == bookLength, () -> new IllegalStateException("stale index, book length changed: " + bookPath));
+            this.bookChannel = channel;
+        } catch (Exception e) {
+            arena.close();
+            closeQuietly(channel);
+            throw e instanceof RuntimeException runtimeException ? runtimeException : new RuntimeException(e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            if (channel != null) channel.close();
+        } catch (Exception e) {
+            log.warn("{} - 关闭文件通道失败 => {}", NAME, e.toString());
+        }
+    }
+
+    /*
+     * 打开书籍的章节索引
+     */
+    public static BookIndex open(String bookName) {
+        return open(BookCache.getTargetFilePath(bookName));
+    }
+
+    /*
+     * 打开书籍文件旁的章节索引，索引缺失、损坏或与书籍文件长度不符时抛出异常
+     */
+    public static BookIndex open(Path bookPath) {
+        return new BookIndex(bookPath, indexPath(bookPath));
+    }
+
+    // 索引文件路径：书籍文件同目录、同名，扩展名为 .idx
+    public static Path indexPath(Path bookPath) {
+        var fileName = bookPath.getFileName().toString();
+        var dot = fileName.lastIndexOf('.');
+        return bookPath.resolveSibling((dot > 0 ? fileName.substring(0, dot) : fileName) + ".idx");
+    }
+
+    /*
+     * 写出章节索引：偏移取自已设置的 skip，长度为相邻两章偏移之差（末章至书籍文件末尾），标题取自书籍文件中各章的首行
+     * 先写入临时文件再原子替换，读取方不会看到写了一半的索引
+     */
+    public static int write(Path bookPath, List<Chapter.Chapter4Merge> chapter4Merges) {
+        var sorted = chapter4Merges.stream().sorted(Comparator.comparing(Chapter.Chapter4Merge::skip)).toList();
+        Assert.isTrue(sorted, list -> list.isEmpty() || list.getFirst().skip() >= 0, () -> new IllegalStateException("chapters must be planned before indexing"));
+        var indexPath = indexPath(bookPath);
+        var tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (var bookChannel = FileChannel.open(bookPath, StandardOpenOption.READ); var arena = Arena.ofConfined()) {
+            var bookLength = bookChannel.size();
+            var book = bookLength == 0 ? MemorySegment.NULL : bookChannel.map(FileChannel.MapMode.READ_ONLY, 0, bookLength, arena);
+            var buffer = ByteBuffer.allocate(HEADER_SIZE + sorted.size() * RECORD_SIZE).order(ByteOrder.BIG_ENDIAN)
+                    .putInt(MAGIC)
+                    .putShort(VERSION)
+                    .putShort(RECORD_SIZE.shortValue())
+                    .putInt(sorted.size())
+                    .putInt(0)
+                    .putLong(bookLength);
+            for (int i = 0; i < sorted.size(); i++) {
+                var offset = sorted.get(i).skip();
+                var end = i + 1 < sorted.size() ? sorted.get(i + 1).skip() : bookLength;
+                var length = Math.toIntExact(end - offset);
+                var title = title(book, offset, length);
+                buffer.putInt(sorted.get(i).chapterOrdid())
+                        .putLong(offset)
+                        .putInt(length)
+                        .putShort((short) title.length)
+                        .put(title)
+                        .put(new byte[TITLE_WIDTH - title.length]);
+            }
+            Files.write(tempPath, buffer.array());
+            Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        log.info("{} - 写出章节索引 => {}, 章节数 => {}", NAME, indexPath, sorted.size());
+        return sorted.size();
+    }
+
+    // 章节首行（排版后的标题），至多 TITLE_WIDTH 字节，截断时退回至 UTF-8 字符边界
+    private static byte[] title(MemorySegment book, long offset, int length) {
+        var limit = Math.min(length, TITLE_WIDTH);
+        var end = 0;
+        while (end < limit && book.get(ValueLayout.JAVA_BYTE, offset + end) != '\n') end++;
+        if (end == limit && end < length && book.get(ValueLayout.JAVA_BYTE, offset + end) != '\n') {
+            // 退过续字节（10xxxxxx），停在被截断字符的首字节之前
+            while (end > 0 && (book.get(ValueLayout.JAVA_BYTE, offset + end) & 0xC0) == 0x80) end--;
+        }
+        var title = new byte[end];
+        MemorySegment.copy(book, ValueLayout.JAVA_BYTE, offset, title, 0, end);
+        return title;
+    }
+
+    // 章节数
+    public int size() {
+        return size;
+    }
+
+    // 第 i 条索引（按书籍中的顺序，自 0 起）
+    public Entry entry(int i) {
+        Assert.isTrue(i, n -> n >= 0 && n < size, () -> new IndexOutOfBoundsException("chapter index " + i + " out of [0, " + size + ")"));
+        var base = (long) i * RECORD_SIZE;
+        var titleLength = records.get(SHORT, base + 16);
+        var title = new byte[titleLength];
+        MemorySegment.copy(records, ValueLayout.JAVA_BYTE, base + 18, title, 0, titleLength);
+        return new Entry(records.get(INT, base), new String(title, StandardCharsets.UTF_8), records.get(LONG, base + 4), records.get(INT, base + 12));
+    }
+
+    /*
+     * 按章节序号查找：章节序号通常为 1 - N 的连续自然数，直接定位；不连续时（e.g. 续传遗漏）按定长记录二分查找
+     */
+    public Optional<Entry> find(int chapterOrdid) {
+        if (chapterOrdid >= 1 && chapterOrdid <= size && ordidAt(chapterOrdid - 1) == chapterOrdid) return Optional.of(entry(chapterOrdid - 1));
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            var mid = (low + high) >>> 1;
+            var ordid = ordidAt(mid);
+            if (ordid == chapterOrdid) return Optional.of(entry(mid));
+            if (ordid < chapterOrdid) low = mid + 1;
+            else high = mid - 1;
+        }
+        return Optional.empty();
+    }
+
+    private int ordidAt(int i) {
+        return records.get(INT, (long) i * RECORD_SIZE);
+    }
+
+    /*
+     * 读取一章的内容（UTF-8 字节）：按偏移定位读取
+     */
+    public byte[] read(int chapterOrdid) {
+        var entry = require(chapterOrdid);
+        var buffer = ByteBuffer.allocate(entry.length());
+        try {
+            while (buffer.hasRemaining()) {
+                var read = bookChannel.read(buffer, entry.offset() + buffer.position());
+                Assert.isTrue(read, n -> n >= 0, () -> new IllegalStateException("book file shrank: " + bookPath));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return buffer.array();
+    }
+
+    /*
+     * 一章的内容在书籍文件只读映射中的切片，不复制；索引关闭后不可再访问
+     */
+    public MemorySegment slice(int chapterOrdid) {
+        var entry = require(chapterOrdid);
+        return bookSegment().asSlice(entry.offset(), entry.length());
+    }
+
+    private Entry require(int chapterOrdid) {
+        return find(chapterOrdid).orElseThrow(() -> new IllegalArgumentException("chapterOrdid " + chapterOrdid + " not indexed in " + bookPath));
+    }
+
+    private MemorySegment bookSegment() {
+        var segment = bookSegment;
+        if (segment != null) return segment;
+        try {
+            // 并发时可能重复映射，多余的映射随 Arena 关闭一并解除
+            segment = bookLength == 0 ? MemorySegment.NULL : bookChannel.map(FileChannel.MapMode.READ_ONLY, 0, bookLength, arena);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return bookSegment = segment;
+    }
+
+    @Override
+    public void close() {
+        try (bookChannel) {
+            arena.close();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
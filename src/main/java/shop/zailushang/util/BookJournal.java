@@ -0,0 +1,228 @@
+package shop.zailushang.util;
+
+import lombok.extern.slf4j.Slf4j;
+import shop.zailushang.entity.Chapter;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 断点续传日志：逐章记录已写入的零散章节文件（仅追加），进程中断后重启时据此跳过已完成且校验通过的章节
+ * 文件格式（每行一条记录，未以换行结尾的残行视为写入中断，直接丢弃）：
+ * H {bid} {章节列表摘要}
+ * C {chapterOrdid} {字节数} {crc32}
+ * 记录先写入页缓存，按批次（或定时）统一 fsync，写入路径上几乎无额外开销
+ * 章节文件本身不做 fsync，重启时按 字节数 + crc32 校验，校验失败的章节重新下载
+ */
+@Slf4j
+public class BookJournal implements AutoCloseable {
+    // 日志文件名 e.g. D:/斗破苍穹/.journal
+    public static final String JOURNAL_FILE_NAME = ".journal";
+    // 累计多少条记录后 fsync
+    public static final Integer FSYNC_BATCH = 64;
+    // 未达批次时，最迟多久 fsync
+    public static final Duration FSYNC_INTERVAL = Duration.ofMillis(200);
+    // 組件名稱
+    private static final String NAME = "「功德簿」";
+
+    private final String bookName;
+    private final String bid;
+    private final Path journalPath;
+    // 上次运行遗留的章节列表摘要，无有效日志时为 null
+    private final String replayedDigest;
+    // 上次运行遗留的完成记录：章节序号 → 记录
+    private final Map<Integer, Entry> replayed;
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+    // 本次续传时跳过的章节序号（按章节顺序）
+    private List<Integer> resumed = List.of();
+    // 尚未 fsync 的记录数
+    private int unsynced;
+    // 是否已安排定时 fsync
+    private boolean flushScheduled;
+
+    // 单章完成记录
+    private record Entry(Long length, Long crc) {
+    }
+
+    public BookJournal(String bookName, Path folderPath, String bid) {
+        this.bookName = bookName;
+        this.bid = bid;
+        this.journalPath = folderPath.resolve(JOURNAL_FILE_NAME);
+        this.replayed = new HashMap<>();
+        this.replayedDigest = replay();
+    }
+
+    // 读取上次运行遗留的日志，bid 不一致时视为无效
+    private String replay() {
+        if (Files.notExists(journalPath)) return null;
+        try {
+            var content = Files.readString(journalPath, StandardCharsets.UTF_8);
+            // 最后一个换行之后的内容为写入中断的残行
+            var lines = content.substring(0, content.lastIndexOf('\n') + 1).lines().toList();
+            if (lines.isEmpty()) return null;
+            var header = lines.getFirst().split(" ");
+            if (header.length != 3 || !"H".equals(header[0]) || !bid.equals(header[1])) return null;
+            for (var line : lines.subList(1, lines.size())) {
+                var fields = line.split(" ");
+                if (fields.length != 4 || !"C".equals(fields[0])) continue;
+                try {
+                    replayed.put(Integer.valueOf(fields[1]), new Entry(Long.valueOf(fields[2]), Long.valueOf(fields[3])));
+                } catch (NumberFormatException _) {
+                    // 损坏的记录按未完成处理
+                }
+            }
+            log.info("{} - 读取断点续传日志 [{}] 完成记录 => {}", NAME, bookName, replayed.size());
+            return header[2];
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // 章节列表摘要：章节序号与章节名（请求地址中含时间戳与签名，每次不同，不参与计算）
+    private static String digest(List<Chapter.Chapter4Read> chapter4Reads) {
+        try {
+            var messageDigest = MessageDigest.getInstance("SHA-256");
+            chapter4Reads.forEach(chapter4Read -> messageDigest.update("%d\t%s\n".formatted(chapter4Read.chapterOrdid(), chapter4Read.chapterName()).getBytes(StandardCharsets.UTF_8)));
+            return HexFormat.of().formatHex(messageDigest.digest(), 0, 16);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long crc32(byte[] bytes) {
+        var crc32 = new CRC32();
+        crc32.update(bytes);
+        return crc32.getValue();
+    }
+
+    // 校验章节文件是否与完成记录一致
+    private boolean verify(Integer chapterOrdid, Entry entry) {
+        var filePath = BookCache.getFilePath(bookName, chapterOrdid);
+        try {
+            if (Files.notExists(filePath) || Files.size(filePath) != entry.length()) return false;
+            return crc32(Files.readAllBytes(filePath)) == entry.crc();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /*
+     * 续传：校验上次的完成记录，重写日志（仅保留校验通过的记录），返回仍需下载的章节
+     */
+    public List<Chapter.Chapter4Read> resume(List<Chapter.Chapter4Read> chapter4Reads) {
+        var digest = digest(chapter4Reads);
+        // 章节列表发生变化时，上次的记录全部作废
+        var sameBook = digest.equals(replayedDigest);
+        var verified = sameBook
+                ? chapter4Reads.stream().map(Chapter.Chapter4Read::chapterOrdid).filter(ordid -> replayed.containsKey(ordid) && verify(ordid, replayed.get(ordid))).toList()
+                : List.<Integer>of();
+        var sb = new StringBuilder("H %s %s\n".formatted(bid, digest));
+        verified.forEach(ordid -> sb.append("C %d %d %d\n".formatted(ordid, replayed.get(ordid).length(), replayed.get(ordid).crc())));
+        lock.lock();
+        try {
+            Files.createDirectories(journalPath.getParent());
+            // 重写并落盘后再追加，残行与失效记录随之清除
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            write(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)));
+            channel.force(false);
+            resumed = verified;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+        if (sameBook) log.info("{} - 断点续传 [{}] 跳过已完成章节 => {}, 校验失败 => {}, 待下载 => {}", NAME, bookName, verified.size(), replayed.size() - verified.size(), chapter4Reads.size() - verified.size());
+        else if (replayedDigest != null) log.info("{} - 章节列表已变化 [{}]，丢弃上次的断点记录", NAME, bookName);
+        var skipped = Set.copyOf(verified);
+        return chapter4Reads.stream().filter(chapter4Read -> !skipped.contains(chapter4Read.chapterOrdid())).toList();
+    }
+
+    // 本次续传时跳过的章节序号
+    public List<Integer> resumed() {
+        return resumed;
+    }
+
+    /*
+     * 记录章节完成：章节文件写入之后调用
+     */
+    public void complete(Integer chapterOrdid, byte[] bytes) {
+        var record = "C %d %d %d\n".formatted(chapterOrdid, bytes.length, crc32(bytes)).getBytes(StandardCharsets.UTF_8);
+        var scheduleFlush = false;
+        lock.lock();
+        try {
+            Assert.isTrue(channel, Assert::isNotNull, () -> new IllegalStateException("journal not resumed for " + bookName));
+            write(ByteBuffer.wrap(record));
+            // 达到批次立即落盘，否则安排一次定时落盘
+            if (++unsynced >= FSYNC_BATCH) sync();
+            else if (!flushScheduled) scheduleFlush = flushScheduled = true;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+        if (scheduleFlush)
+            CompletableFuture.runAsync(this::flush, CompletableFuture.delayedExecutor(FSYNC_INTERVAL.toMillis(), TimeUnit.MILLISECONDS, ScopedExecutor.delegate()));
+    }
+
+    // 写入记录（持有锁时调用）
+    private void write(ByteBuffer buffer) throws Exception {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    // 落盘（持有锁时调用）
+    private void sync() throws Exception {
+        if (unsynced > 0 && channel.isOpen()) channel.force(false);
+        unsynced = 0;
+        flushScheduled = false;
+    }
+
+    // 定时落盘
+    private void flush() {
+        lock.lock();
+        try {
+            if (channel != null) sync();
+        } catch (Exception e) {
+            log.warn("{} - 断点续传日志落盘失败 [{}]", NAME, bookName, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (channel == null) return;
+            sync();
+            channel.close();
+            channel = null;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 书籍合并完成后删除日志
+    public void delete() {
+        close();
+        CheckedExceptionFucker.deleteIfExists(journalPath);
+        log.info("{} - 删除断点续传日志 [{}]", NAME, bookName);
+    }
+}
@@ -0,0 +1,205 @@
+package shop.zailushang.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * 章节清单（增量更新）：记录书籍文件上次写出时的 bid 与每章的序号、章节名、偏移、长度、CRC32，位于书籍文件夹中 e.g. D:/斗破苍穹/.manifest
+ * 文件格式（制表符分隔，章节名位于行尾）：
+ * H {bid} {书籍文件长度} {书籍文件的 crc32}
+ * C {chapterOrdid} {偏移} {长度} {crc32} {章节名}
+ * 清单总在书籍文件落盘之后原子替换；书籍文件比清单记录的更长时，多出的部分为上次追加后未及提交的内容，截断后仍可沿用
+ * 书籍文件的前 {书籍文件长度} 字节与记录的 crc32 不符时（如普通模式重新下载、中途失败的原位修补），清单不再属于该文件，随之作废
+ */
+@Slf4j
+public class BookManifest {
+    // 清单文件名 e.g. D:/斗破苍穹/.manifest
+    public static final String MANIFEST_FILE_NAME = ".manifest";
+    // 組件名稱
+    private static final String NAME = "「玉牒」";
+    // 计算书籍文件 CRC32 的读取缓冲区大小
+    private static final int CRC_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 一章的清单记录
+     *
+     * @param chapterOrdid 章节序号
+     * @param chapterName  章节名
+     * @param offset       在书籍文件中的起始偏移（字节）
+     * @param length       长度（字节）
+     * @param crc          排版后内容的 CRC32
+     */
+    public record Entry(Integer chapterOrdid, String chapterName, Long offset, Integer length, Long crc) {
+        public Entry {
+            chapterName = sanitize(chapterName);
+        }
+    }
+
+    // 章节名中的制表符、换行替换为空格，与清单格式兼容；比较章节名前须同样处理
+    public static String sanitize(String chapterName) {
+        return String.valueOf(chapterName).replaceAll("[\t\r\n]", " ");
+    }
+
+    private final String bid;
+    private final long bookLength;
+    // 章节序号 → 记录
+    private final NavigableMap<Integer, Entry> entries;
+
+    public BookManifest(String bid, long bookLength, List<Entry> entries) {
+        this.bid = bid;
+        this.bookLength = bookLength;
+        this.entries = new TreeMap<>();
+        entries.forEach(entry -> this.entries.put(entry.chapterOrdid(), entry));
+    }
+
+    public String bid() {
+        return bid;
+    }
+
+    public long bookLength() {
+        return bookLength;
+    }
+
+    // 全部记录（按章节顺序）
+    public Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    public Optional<Entry> get(Integer chapterOrdid) {
+        return Optional.ofNullable(entries.get(chapterOrdid));
+    }
+
+    // 清单文件路径
+    public static Path manifestPath(String bookName) {
+        return BookCache.getFolderPath(bookName).resolve(MANIFEST_FILE_NAME);
+    }
+
+    /*
+     * 读取上次的清单：清单缺失、损坏，或书籍文件缺失、短于清单记录、内容与清单不符时为空（须完整下载）
+     */
+    public static Optional<BookManifest> load(String bookName) {
+        var manifestPath = manifestPath(bookName);
+        if (Files.notExists(manifestPath)) return Optional.empty();
+        final BookManifest manifest;
+        final long bookCrc;
+        try {
+            var lines = Files.readAllLines(manifestPath, StandardCharsets.UTF_8);
+            var header = lines.getFirst().split("\t");
+            Assert.isTrue(header, fields -> fields.length == 4 && "H".equals(fields[0]), () -> new IllegalStateException("corrupted manifest header: " + manifestPath));
+            var entries = lines.stream().skip(1)
+                    .filter(line -> !line.isEmpty())
+                    .map(line -> line.split("\t", 6))
+                    .map(fields -> new Entry(Integer.valueOf(fields[1]), fields[5], Long.valueOf(fields[2]), Integer.valueOf(fields[3]), Long.valueOf(fields[4])))
+                    .toList();
+            manifest = new BookManifest(header[1], Long.parseLong(header[2]), entries);
+            bookCrc = Long.parseLong(header[3]);
+        } catch (Exception e) {
+            log.warn("{} - 清单损坏 [{}]，将完整下载 => {}", NAME, bookName, e.toString());
+            return Optional.empty();
+        }
+        return manifest.reconcile(bookName, bookCrc) ? Optional.of(manifest) : Optional.empty();
+    }
+
+    // 核对书籍文件：更短、缺失或内容不符时清单作废，更长时截断未提交的尾部
+    private boolean reconcile(String bookName, long bookCrc) {
+        var bookPath = BookCache.getTargetFilePath(bookName);
+        try {
+            if (Files.notExists(bookPath)) {
+                log.warn("{} - 书籍文件缺失 [{}]，清单作废", NAME, bookName);
+                return false;
+            }
+            var length = Files.size(bookPath);
+            if (length < bookLength) {
+                log.warn("{} - 书籍文件短于清单记录 [{}] {} < {}，清单作废", NAME, bookName, length, bookLength);
+                return false;
+            }
+            if (crc32(bookPath, bookLength) != bookCrc) {
+                log.warn("{} - 书籍文件与清单不符 [{}]，清单作废", NAME, bookName);
+                return false;
+            }
+            if (length > bookLength) {
+                try (var raf = new RandomAccessFile(bookPath.toFile(), "rw")) {
+                    raf.setLength(bookLength);
+                }
+                log.warn("{} - 截断书籍文件未提交的尾部 [{}] {} => {}", NAME, bookName, length, bookLength);
+            }
+            return true;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /*
+     * 由章节索引（见 BookIndex）生成清单：沿用普通模式下载的书籍，无需重新下载；索引缺失或失效时为空
+     */
+    public static Optional<BookManifest> bootstrap(String bookName, String bid) {
+        var bookPath = BookCache.getTargetFilePath(bookName);
+        if (Files.notExists(BookIndex.indexPath(bookPath))) return Optional.empty();
+        try (var bookIndex = BookIndex.open(bookPath)) {
+            var entries = IntStream.range(0, bookIndex.size())
+                    .mapToObj(bookIndex::entry)
+                    .map(entry -> new Entry(entry.chapterOrdid(), entry.title(), entry.offset(), entry.length(), crc32(bookIndex.read(entry.chapterOrdid()))))
+                    .toList();
+            var manifest = new BookManifest(bid, Files.size(bookPath), entries);
+            log.info("{} - 由章节索引生成清单 [{}] 章节数 => {}", NAME, bookName, entries.size());
+            return Optional.of(manifest);
+        } catch (Exception e) {
+            log.warn("{} - 章节索引不可用 [{}]，将完整下载 => {}", NAME, bookName, e.toString());
+            return Optional.empty();
+        }
+    }
+
+    /*
+     * 写出清单：先写入临时文件再原子替换，须在书籍文件落盘之后调用，头部记录书籍文件的 crc32
+     */
+    public void save(String bookName) {
+        var manifestPath = manifestPath(bookName);
+        try {
+            var sb = new StringBuilder("H\t%s\t%d\t%d\n".formatted(bid, bookLength, crc32(BookCache.getTargetFilePath(bookName), bookLength)));
+            entries.values().forEach(entry -> sb.append("C\t%d\t%d\t%d\t%d\t%s\n".formatted(entry.chapterOrdid(), entry.offset(), entry.length(), entry.crc(), entry.chapterName())));
+            var tempPath = manifestPath.resolveSibling(MANIFEST_FILE_NAME + ".tmp");
+            Files.writeString(tempPath, sb, StandardCharsets.UTF_8);
+            Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static long crc32(byte[] bytes) {
+        var crc32 = new CRC32();
+        crc32.update(bytes);
+        return crc32.getValue();
+    }
+
+    // 文件前 length 字节的 CRC32
+    private static long crc32(Path path, long length) throws IOException {
+        var crc32 = new CRC32();
+        var buffer = ByteBuffer.allocateDirect(CRC_BUFFER_SIZE);
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (long position = 0; position < length; ) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), length - position));
+                var read = channel.read(buffer, position);
+                Assert.isTrue(read, n -> n > 0, () -> new IllegalStateException("book file shrank while checking: " + path));
+                position += read;
+                crc32.update(buffer.flip());
+            }
+        }
+        return crc32.getValue();
+    }
+}
@@ -0,0 +1,174 @@
+package shop.zailushang.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 堆外章节暂存区：章节内容以 UTF-8 字节存放于 Arena 分配的堆外内存，超出预算后溢写至内存映射文件
+ * 全部章节就绪后，按章节顺序一次性聚合写入书籍文件，免去逐章的 文件写入 → 打开通道 → transferFrom
+ */
+@Slf4j
+public class ChapterSpool implements AutoCloseable {
+    // 堆外内存预算（字节），超出后溢写至内存映射文件（-Dshuqi.spool.budget=N 调整）
+    public static final Long MEMORY_BUDGET = Long.getLong("shuqi.spool.budget", 256L * 1024 * 1024);
+    // 溢写文件每次映射的区域大小（字节）
+    private static final long SPILL_REGION_SIZE = 64L * 1024 * 1024;
+    // 溢写文件名 e.g. D:/斗破苍穹/.spool
+    private static final String SPILL_FILE_NAME = ".spool";
+    // 組件名稱
+    private static final String NAME = "「聚宝盆」";
+    // 全局统计：各书同时占用的堆外内存（字节）、其历史峰值与溢写次数
+    private static final AtomicLong GLOBAL_RESIDENT_BYTES = new AtomicLong();
+    private static final AtomicLong GLOBAL_PEAK_BYTES = new AtomicLong();
+    private static final LongAdder GLOBAL_SPILLS = new LongAdder();
+
+    private final String bookName;
+    // 共享 Arena：多个虚拟线程并发写入，关闭时统一释放
+    private final Arena arena = Arena.ofShared();
+    // 偏移表：章节序号 → 章节字节所在的内存段（按章节顺序排列）
+    private final NavigableMap<Integer, MemorySegment> segments = new ConcurrentSkipListMap<>();
+    // 堆外内存已用字节数，关闭时归零
+    private final AtomicLong memoryBytes = new AtomicLong();
+    // 暂存总字节数
+    private final AtomicLong totalBytes = new AtomicLong();
+    // 溢写状态，仅在持有锁时访问
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private final Path spillPath;
+    private FileChannel spillChannel;
+    private MemorySegment spillRegion;
+    private long spillRegionUsed;
+    private long spillFileSize;
+    private long spillCount;
+
+    public ChapterSpool(String bookName, Path folderPath) {
+        this.bookName = bookName;
+        this.spillPath = folderPath.resolve(SPILL_FILE_NAME);
+        log.info("{} - 打开堆外暂存区 [{}] 预算 => {} 字节", NAME, bookName, MEMORY_BUDGET);
+    }
+
+    /*
+     * 暂存章节：排版后的字节复制至堆外内存（或溢写区域），返回暂存的字节数
+     */
+    public long put(Integer chapterOrdid, byte[] chapterBytes) {
+        var length = chapterBytes.length;
+        var segment = allocate(length);
+        MemorySegment.copy(chapterBytes, 0, segment, ValueLayout.JAVA_BYTE, 0, length);
+        Assert.isTrue(segments.putIfAbsent(chapterOrdid, segment), Assert::isNull, () -> new IllegalStateException("duplicate chapterOrdid " + chapterOrdid + " for " + bookName));
+        totalBytes.addAndGet(length);
+        return length;
+    }
+
+    // 分配内存段：预算以内使用堆外内存，否则使用内存映射的溢写文件
+    private MemorySegment allocate(long length) {
+        if (memoryBytes.addAndGet(length) <= MEMORY_BUDGET) {
+            GLOBAL_PEAK_BYTES.accumulateAndGet(GLOBAL_RESIDENT_BYTES.addAndGet(length), Math::max);
+            return arena.allocate(length);
+        }
+        memoryBytes.addAndGet(-length);
+        spillLock.lock();
+        try {
+            if (spillRegion == null || spillRegion.byteSize() - spillRegionUsed < length) {
+                if (spillChannel == null) {
+                    Files.createDirectories(spillPath.getParent());
+                    spillChannel = FileChannel.open(spillPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE);
+                }
+                var regionSize = Math.max(length, SPILL_REGION_SIZE);
+                // 映射的生命周期与 Arena 绑定
+                spillRegion = spillChannel.map(FileChannel.MapMode.READ_WRITE, spillFileSize, regionSize, arena);
+                spillFileSize += regionSize;
+                spillRegionUsed = 0;
+                spillCount++;
+                GLOBAL_SPILLS.increment();
+                log.info("{} - 堆外预算已满，溢写至映射文件 [{}] 第 {} 次，文件大小 => {} 字节", NAME, bookName, spillCount, spillFileSize);
+            }
+            var segment = spillRegion.asSlice(spillRegionUsed, length);
+            spillRegionUsed += length;
+            return segment;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    // 某章暂存的字节数
+    public long sizeOf(Integer chapterOrdid) {
+        var segment = segments.get(chapterOrdid);
+        Assert.isTrue(segment, Assert::isNotNull, () -> new IllegalStateException("chapterOrdid " + chapterOrdid + " not spooled for " + bookName));
+        return segment.byteSize();
+    }
+
+    /*
+     * 按章节顺序一次性聚合写入书籍文件，返回写入的字节数
+     */
+    public long writeTo(Path targetPath) {
+        var buffers = segments.values().stream().map(MemorySegment::asByteBuffer).toArray(ByteBuffer[]::new);
+        try {
+            Files.createDirectories(targetPath.getParent());
+            try (var targetChannel = FileChannel.open(targetPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                var remaining = totalBytes.get();
+                while (remaining > 0) remaining -= targetChannel.write(buffers);
+                targetChannel.force(true);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        log.info("{} - 写出书籍 [{}] 章节数 => {}, 字节数 => {}, 堆外 => {} 字节, 溢写 => {} 次", NAME, bookName, segments.size(), totalBytes.get(), memoryBytes(), spillCount());
+        return totalBytes.get();
+    }
+
+    // 本书占用的堆外内存（字节），溢写部分不计
+    public long memoryBytes() {
+        return memoryBytes.get();
+    }
+
+    // 本书溢写次数
+    public long spillCount() {
+        spillLock.lock();
+        try {
+            return spillCount;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    // 全局堆外内存占用峰值（字节）：各书同时占用之和，暂存区关闭时扣除
+    public static long globalPeakBytes() {
+        return GLOBAL_PEAK_BYTES.get();
+    }
+
+    // 全局溢写次数
+    public static long globalSpillCount() {
+        return GLOBAL_SPILLS.sum();
+    }
+
+    @Override
+    public void close() {
+        // 释放堆外内存与映射，溢写文件随通道关闭删除
+        arena.close();
+        GLOBAL_RESIDENT_BYTES.addAndGet(-memoryBytes.getAndSet(0));
+        spillLock.lock();
+        try {
+            if (spillChannel != null) spillChannel.close();
+            spillChannel = null;
+            spillRegion = null;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+}
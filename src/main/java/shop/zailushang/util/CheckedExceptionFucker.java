@@ -1,5 +1,6 @@
 package shop.zailushang.util;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -24,6 +25,14 @@ public class CheckedExceptionFucker {
         }
     }
 
+    public static <T> T readValue(byte[] jsonBytes, Class<T> cls) {
+        try {
+            return OBJECT_MAPPER.readValue(jsonBytes, cls);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static JsonNode readTree(String jsonStr) {
         try {
             return OBJECT_MAPPER.readTree(jsonStr);
@@ -33,6 +42,14 @@ public class CheckedExceptionFucker {
 
     }
 
+    public static JsonParser createParser(String jsonStr) {
+        try {
+            return OBJECT_MAPPER.createParser(jsonStr);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static <T> T treeToValue(ObjectNode objectNode, Class<T> cls) {
         try {
             return OBJECT_MAPPER.treeToValue(objectNode, cls);
@@ -2,75 +2,210 @@ package shop.zailushang.util;
 
 import lombok.extern.slf4j.Slf4j;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
 
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * JS 引擎池：缓存JS引擎对象
+ * JS 引擎池：弹性缓存 JS 上下文
+ * 所有 Context 共享同一个 Engine 与预解析的 Source，脚本只解析、编译一次
+ * 按需创建，上限 MAX_SIZE，空闲超过 IDLE_TIMEOUT 的 Context 在获取、归还时以及定时清扫时被回收
+ * 进程退出时关闭全部空闲 Context 与共享引擎
  */
 @Slf4j
 public class ContextPool {
-    // JS 脚本
-    private static final String JS_SCRIPT;
-    // 阻塞队列
-    private static final BlockingDeque<Context> BLOCKING_DEQUE;
+    // 最大 Context 数量（-Dshuqi.js.pool=N 调整）
+    public static final Integer MAX_SIZE = Integer.getInteger("shuqi.js.pool", 300);
+    // 空闲超时：超时未被使用的 Context 将被关闭
+    public static final Duration IDLE_TIMEOUT = Duration.ofSeconds(60);
     // 組件名稱
     private static final String NAME = "「三清铃」";
+    // 共享引擎：多个 Context 共享已解析、编译的代码
+    private static final Engine ENGINE;
+    // JS 脚本（缓存解析结果）
+    private static final Source SOURCE;
+    // 空闲栈：头部为最近归还，尾部为最久未用
+    private static final Deque<PooledContext> IDLE_DEQUE = new ConcurrentLinkedDeque<>();
+    // 许可：限制同时存在的 Context 数量
+    private static final Semaphore PERMITS = new Semaphore(MAX_SIZE, true);
+    // 定时清扫：无流量时空闲 Context 同样按时回收
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("context-sweeper").daemon().factory());
+
+    // 统计计数器
+    private static final AtomicInteger SIZE = new AtomicInteger();
+    private static final AtomicInteger PEAK_SIZE = new AtomicInteger();
+    private static final LongAdder ACQUIRED = new LongAdder();
+    private static final LongAdder WAIT_NANOS = new LongAdder();
+    private static final LongAdder DECODED = new LongAdder();
+    private static final LongAdder DECODE_NANOS = new LongAdder();
+    private static final LongAdder EVICTED = new LongAdder();
 
     static {
-        // 禁用部分警告
-        System.setProperty("polyglot.engine.WarnInterpreterOnly", "false");
         log.info("{} - 执行初始化js引擎池", NAME);
         try (var resourceStream = ClassLoader.getSystemClassLoader().getResourceAsStream("decode.js")) {
             Assert.isTrue(resourceStream, Assert::isNotNull, () -> new NullPointerException("To be, or not to be, that is the question. — William Shakespeare, Hamlet"));
-            JS_SCRIPT = new String(resourceStream.readAllBytes(), StandardCharsets.UTF_8);
-            // 缓存300个 Context
-            BLOCKING_DEQUE = IntStream.rangeClosed(1, 300)
-                    .mapToObj(_ -> createContext())
-                    .collect(Collectors.toCollection(LinkedBlockingDeque::new));
+            var script = new String(resourceStream.readAllBytes(), StandardCharsets.UTF_8);
+            ENGINE = Engine.newBuilder("js")
+                    .option("engine.WarnInterpreterOnly", "false")// 禁用部分警告
+                    .build();
+            SOURCE = Source.newBuilder("js", script, "decode.js")
+                    .cached(true)
+                    .build();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        var sweepMillis = IDLE_TIMEOUT.toMillis() / 2;
+        SWEEPER.scheduleWithFixedDelay(ContextPool::evictIdle, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(Thread.ofPlatform().name("context-pool-shutdown").unstarted(ContextPool::shutdown));
+    }
+
+    /**
+     * 池化的 Context：缓存 _decode 函数句柄，免去每次调用时的 getBindings/getMember 查找
+     *
+     * @param context    js 上下文
+     * @param decoder    _decode 函数句柄
+     * @param releasedAt 最近一次归还的时间（纳秒）
+     */
+    public record PooledContext(Context context, Value decoder, long releasedAt) {
+        // 执行解密
+        public String decode(String ciphertext) {
+            var start = System.nanoTime();
+            try {
+                return decoder.execute(ciphertext).asString();
+            } finally {
+                DECODED.increment();
+                DECODE_NANOS.add(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * 引擎池统计
+     *
+     * @param size        当前 Context 数量
+     * @param idle        当前空闲数量
+     * @param peakSize    历史峰值
+     * @param acquired    累计获取次数
+     * @param waitNanos   累计等待许可时间（纳秒）
+     * @param decoded     累计解密次数
+     * @param decodeNanos 累计解密耗时（纳秒）
+     * @param evicted     累计回收数量
+     */
+    public record Stats(Integer size, Integer idle, Integer peakSize, Long acquired, Long waitNanos,
+                        Long decoded, Long decodeNanos, Long evicted) {
+        // 平均等待时间（微秒）
+        public double avgWaitMicros() {
+            return acquired == 0 ? 0 : waitNanos / 1000.0 / acquired;
+        }
+
+        // 平均解密耗时（微秒）
+        public double avgDecodeMicros() {
+            return decoded == 0 ? 0 : decodeNanos / 1000.0 / decoded;
+        }
     }
 
     /*
-     * 创建 Context
+     * 创建 Context：共享引擎，仅执行已缓存的脚本
      */
-    private static Context createContext() {
+    private static PooledContext createContext() {
         try {
             var context = Context.newBuilder("js")
+                    .engine(ENGINE)
                     .allowAllAccess(true)
                     .build();
-            context.eval("js", JS_SCRIPT);
-            return context;
+            context.eval(SOURCE);
+            var decoder = context.getBindings("js").getMember("_decode");
+            var size = SIZE.incrementAndGet();
+            PEAK_SIZE.accumulateAndGet(size, Math::max);
+            log.info("{} - 扩容js引擎池 size => {}", NAME, size);
+            return new PooledContext(context, decoder, System.nanoTime());
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
     /*
-     * 获取 Context
+     * 获取 Context：优先复用空闲 Context，不足且未达上限时新建，达到上限时等待
      */
-    public static Context acquire() {
+    public static PooledContext acquire() {
+        var event = new FlightEvents.ContextAcquireEvent();
+        event.begin();
+        var start = System.nanoTime();
         try {
-            return BLOCKING_DEQUE.take();
+            PERMITS.acquire();
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
+        WAIT_NANOS.add(System.nanoTime() - start);
+        ACQUIRED.increment();
+        // 先回收栈底的超时空闲 Context，再从栈顶取用
+        evictIdle();
+        var pooled = IDLE_DEQUE.pollFirst();
+        var created = pooled == null;
+        if (created) {
+            try {
+                pooled = createContext();
+            } catch (RuntimeException e) {
+                PERMITS.release();
+                throw e;
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.created = created;
+            event.poolSize = SIZE.get();
+            event.commit();
+        }
+        return pooled;
     }
 
     /*
-     * 释放 Context
+     * 释放 Context：归还至栈顶，并顺带回收栈底的超时空闲 Context
      */
-    public static void release(Context context) {
-        try {
-            BLOCKING_DEQUE.put(context);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+    public static void release(PooledContext pooled) {
+        IDLE_DEQUE.offerFirst(new PooledContext(pooled.context(), pooled.decoder(), System.nanoTime()));
+        PERMITS.release();
+        evictIdle();
+    }
+
+    // 回收超时的空闲 Context
+    private static void evictIdle() {
+        var deadline = System.nanoTime() - IDLE_TIMEOUT.toNanos();
+        PooledContext eldest;
+        while ((eldest = IDLE_DEQUE.peekLast()) != null && eldest.releasedAt() - deadline < 0) {
+            // 并发时可能已被其他线程取走
+            if (!IDLE_DEQUE.removeLastOccurrence(eldest)) continue;
+            eldest.context().close();
+            EVICTED.increment();
+            log.info("{} - 回收空闲js引擎 size => {}", NAME, SIZE.decrementAndGet());
+        }
+    }
+
+    // 关闭：停止清扫，关闭空闲 Context 与共享引擎（仍在使用中的 Context 随引擎一并取消）
+    private static void shutdown() {
+        SWEEPER.shutdownNow();
+        PooledContext pooled;
+        while ((pooled = IDLE_DEQUE.pollLast()) != null) {
+            pooled.context().close();
+            SIZE.decrementAndGet();
         }
+        ENGINE.close(true);
+    }
+
+    // 获取统计快照
+    public static Stats stats() {
+        return new Stats(SIZE.get(), IDLE_DEQUE.size(), PEAK_SIZE.get(), ACQUIRED.sum(), WAIT_NANOS.sum(),
+                DECODED.sum(), DECODE_NANOS.sum(), EVICTED.sum());
     }
-}
\ No newline at end of file
+}
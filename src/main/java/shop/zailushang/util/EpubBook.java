@@ -0,0 +1,359 @@
+package shop.zailushang.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * EPUB 成书：章节离开排版器后即于各自的虚拟线程中转换为 XHTML 并压缩（raw deflate），仅保留压缩后的字节与 CRC
+ * 全部章节就绪后，按章节顺序生成 mimetype、container.xml、content.opf、nav.xhtml、toc.ncx，与已压缩的章节一并顺序写出 ZIP 容器（本地文件头 + 数据 + 中央目录）
+ * 压缩随下载并行完成，写出阶段仅拼接字节，不再受单线程压缩速度限制
+ */
+@Slf4j
+public class EpubBook implements AutoCloseable {
+    // 压缩级别，可通过 -Dshuqi.epub.level 调整（0 - 9，-1 为默认级别）
+    public static final Integer DEFLATE_LEVEL = Integer.getInteger("shuqi.epub.level", Deflater.DEFAULT_COMPRESSION);
+    // ZIP 格式（非 ZIP64）的条目数与偏移上限
+    private static final int MAX_ENTRIES = 0xFFFF;
+    private static final long MAX_OFFSET = 0xFFFFFFFFL;
+    // 压缩方式
+    private static final short STORED = 0;
+    private static final short DEFLATED = 8;
+    // 組件名稱
+    private static final String NAME = "「装帧」";
+    // 全局统计：压缩前后的字节数
+    private static final LongAdder GLOBAL_RAW_BYTES = new LongAdder();
+    private static final LongAdder GLOBAL_DEFLATED_BYTES = new LongAdder();
+
+    private final String bookName;
+    // 章节序号 → 已压缩的章节（按章节顺序排列）
+    private final NavigableMap<Integer, Entry> chapters = new ConcurrentSkipListMap<>();
+    // 章节序号 → 章节名，用于生成目录
+    private final NavigableMap<Integer, String> titles = new ConcurrentSkipListMap<>();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder deflatedBytes = new LongAdder();
+
+    public EpubBook(String bookName) {
+        this.bookName = bookName;
+        log.info("{} - 打开 EPUB [{}] 压缩级别 => {}", NAME, bookName, DEFLATE_LEVEL);
+    }
+
+    // 一个已压缩的 ZIP 条目，data 为写入容器的字节（STORED 时即原文）
+    private record Entry(String name, short method, long crc, int size, byte[] data) {
+    }
+
+    /*
+     * 收录章节：排版后的字节转换为 XHTML 后压缩，于调用线程中完成，返回压缩后的字节数
+     * 章节名缺失时与文本书籍一致记为 null（见 Formatter），不因转义或目录而失败
+     */
+    public long put(Integer chapterOrdid, String chapterName, byte[] chapterBytes) {
+        var title = String.valueOf(chapterName);
+        var entry = deflate(chapterPath(chapterOrdid), xhtml(title, chapterBytes));
+        Assert.isTrue(chapters.putIfAbsent(chapterOrdid, entry), Assert::isNull, () -> new IllegalStateException("duplicate chapterOrdid " + chapterOrdid + " for " + bookName));
+        titles.put(chapterOrdid, title);
+        rawBytes.add(entry.size());
+        deflatedBytes.add(entry.data().length);
+        GLOBAL_RAW_BYTES.add(entry.size());
+        GLOBAL_DEFLATED_BYTES.add(entry.data().length);
+        return entry.data().length;
+    }
+
+    /*
+     * 按章节顺序写出 EPUB 容器，返回写入的字节数
+     * mimetype 须为首个条目且不压缩；其余元数据体积很小，于此处顺序压缩
+     */
+    public long writeTo(Path targetPath) {
+        var entries = new ArrayList<Entry>(chapters.size() + 5);
+        entries.add(stored("mimetype", "application/epub+zip".getBytes(StandardCharsets.US_ASCII)));
+        entries.add(deflate("META-INF/container.xml", containerXml()));
+        entries.add(deflate("OEBPS/content.opf", contentOpf()));
+        entries.add(deflate("OEBPS/nav.xhtml", navXhtml()));
+        entries.add(deflate("OEBPS/toc.ncx", tocNcx()));
+        entries.addAll(chapters.values());
+        Assert.isTrue(entries.size(), n -> n <= MAX_ENTRIES, () -> new IllegalStateException("too many entries for a non-zip64 epub: " + entries.size()));
+        var dosTime = dosTime(LocalDateTime.now());
+        // 本地文件头与数据交替排列，随后为中央目录与目录结束记录
+        var buffers = new ArrayList<ByteBuffer>(entries.size() * 2 + 2);
+        var centralDirectory = new ArrayList<ByteBuffer>(entries.size());
+        var offset = 0L;
+        for (var entry : entries) {
+            var name = entry.name().getBytes(StandardCharsets.US_ASCII);
+            var localHeader = localHeader(entry, name, dosTime);
+            centralDirectory.add(centralHeader(entry, name, dosTime, offset));
+            buffers.add(localHeader);
+            buffers.add(ByteBuffer.wrap(entry.data()));
+            offset += localHeader.remaining() + entry.data().length;
+        }
+        var centralOffset = offset;
+        var centralSize = centralDirectory.stream().mapToLong(ByteBuffer::remaining).sum();
+        Assert.isTrue(centralOffset + centralSize, n -> n <= MAX_OFFSET, () -> new IllegalStateException("epub exceeds 4 GB, zip64 is not supported: " + bookName));
+        buffers.addAll(centralDirectory);
+        buffers.add(endOfCentralDirectory(entries.size(), centralSize, centralOffset));
+        var totalBytes = centralOffset + centralSize + 22;
+        try {
+            Files.createDirectories(targetPath.getParent());
+            try (var targetChannel = FileChannel.open(targetPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                var array = buffers.toArray(ByteBuffer[]::new);
+                var remaining = totalBytes;
+                while (remaining > 0) remaining -= targetChannel.write(array);
+                targetChannel.force(true);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        log.info("{} - 写出 EPUB [{}] 章节数 => {}, 压缩前 => {} 字节, 压缩后 => {} 字节, 容器 => {} 字节", NAME, bookName, chapters.size(), rawBytes.sum(), deflatedBytes.sum(), totalBytes);
+        return totalBytes;
+    }
+
+    // 全局压缩率：压缩后 / 压缩前
+    public static double globalRatio() {
+        var raw = GLOBAL_RAW_BYTES.sum();
+        return raw == 0 ? 1.0 : (double) GLOBAL_DEFLATED_BYTES.sum() / raw;
+    }
+
+    @Override
+    public void close() {
+        chapters.clear();
+        titles.clear();
+    }
+
+    // 章节在容器中的路径 e.g. OEBPS/text/00001.xhtml
+    private static String chapterPath(Integer chapterOrdid) {
+        return "OEBPS/" + chapterHref(chapterOrdid);
+    }
+
+    private static String chapterHref(Integer chapterOrdid) {
+        return "text/%05d.xhtml".formatted(chapterOrdid);
+    }
+
+    // 压缩为 raw deflate（ZIP 条目不含 zlib 头尾），Deflater 持有本地内存，用后立即释放
+    private static Entry deflate(String name, byte[] bytes) {
+        var crc = new CRC32();
+        crc.update(bytes);
+        var deflater = new Deflater(DEFLATE_LEVEL, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            var out = new byte[Math.max(64, bytes.length / 2)];
+            var length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) out = Arrays.copyOf(out, out.length * 2);
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return new Entry(name, DEFLATED, crc.getValue(), bytes.length, Arrays.copyOf(out, length));
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static Entry stored(String name, byte[] bytes) {
+        var crc = new CRC32();
+        crc.update(bytes);
+        return new Entry(name, STORED, crc.getValue(), bytes.length, bytes);
+    }
+
+    // 本地文件头（小端序）
+    private static ByteBuffer localHeader(Entry entry, byte[] name, int dosTime) {
+        return ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0x04034b50)
+                .putShort((short) 20)// 解压所需版本 2.0
+                .putShort((short) 0)// 通用标志：条目名均为 ASCII，大小与 CRC 已知
+                .putShort(entry.method())
+                .putInt(dosTime)
+                .putInt((int) entry.crc())
+                .putInt(entry.data().length)
+                .putInt(entry.size())
+                .putShort((short) name.length)
+                .putShort((short) 0)
+                .put(name)
+                .flip();
+    }
+
+    // 中央目录文件头
+    private static ByteBuffer centralHeader(Entry entry, byte[] name, int dosTime, long offset) {
+        return ByteBuffer.allocate(46 + name.length).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0x02014b50)
+                .putShort((short) 20)
+                .putShort((short) 20)
+                .putShort((short) 0)
+                .putShort(entry.method())
+                .putInt(dosTime)
+                .putInt((int) entry.crc())
+                .putInt(entry.data().length)
+                .putInt(entry.size())
+                .putShort((short) name.length)
+                .putShort((short) 0)// 扩展字段长度
+                .putShort((short) 0)// 注释长度
+                .putShort((short) 0)// 起始磁盘号
+                .putShort((short) 0)// 内部属性
+                .putInt(0)// 外部属性
+                .putInt((int) offset)
+                .put(name)
+                .flip();
+    }
+
+    // 中央目录结束记录
+    private static ByteBuffer endOfCentralDirectory(int entries, long centralSize, long centralOffset) {
+        return ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0x06054b50)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) entries)
+                .putShort((short) entries)
+                .putInt((int) centralSize)
+                .putInt((int) centralOffset)
+                .putShort((short) 0)
+                .flip();
+    }
+
+    // MS-DOS 格式的日期时间（精度 2 秒，1980 年起）
+    private static int dosTime(LocalDateTime time) {
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    // 章节 XHTML：排版后的首行为标题，其余每行一段
+    private static byte[] xhtml(String chapterName, byte[] chapterBytes) {
+        var lines = new String(chapterBytes, StandardCharsets.UTF_8).lines().skip(1).filter(line -> !line.isEmpty()).toList();
+        var title = escape(chapterName);
+        var xhtml = new StringBuilder(chapterBytes.length + lines.size() * 8 + 512)
+                .append("""
+                        <?xml version="1.0" encoding="UTF-8"?>
+                        <!DOCTYPE html>
+                        <html xmlns="http://www.w3.org/1999/xhtml" xmlns:epub="http://www.idpf.org/2007/ops" xml:lang="zh-CN">
+                        <head><meta charset="UTF-8"/><title>""").append(title).append("</title></head>\n")
+                .append("<body><section epub:type=\"chapter\">\n<h2>").append(title).append("</h2>\n");
+        lines.forEach(line -> xhtml.append("<p>").append(escape(line)).append("</p>\n"));
+        return xhtml.append("</section></body>\n</html>\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] containerXml() {
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <container version="1.0" xmlns="urn:oasis:names:tc:opendocument:xmlns:container">
+                  <rootfiles>
+                    <rootfile full-path="OEBPS/content.opf" media-type="application/oebps-package+xml"/>
+                  </rootfiles>
+                </container>
+                """.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 书籍标识：由书名确定性生成，重复下载同一本书时阅读器视为同一本
+    private String identifier() {
+        return "urn:uuid:" + UUID.nameUUIDFromBytes(bookName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] contentOpf() {
+        var manifest = chapters.keySet().stream()
+                .map(chapterOrdid -> "    <item id=\"c%d\" href=\"%s\" media-type=\"application/xhtml+xml\"/>".formatted(chapterOrdid, chapterHref(chapterOrdid)))
+                .collect(Collectors.joining("\n"));
+        var spine = chapters.keySet().stream()
+                .map(chapterOrdid -> "    <itemref idref=\"c%d\"/>".formatted(chapterOrdid))
+                .collect(Collectors.joining("\n"));
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <package xmlns="http://www.idpf.org/2007/opf" version="3.0" unique-identifier="book-id" xml:lang="zh-CN">
+                  <metadata xmlns:dc="http://purl.org/dc/elements/1.1/">
+                    <dc:identifier id="book-id">%s</dc:identifier>
+                    <dc:title>%s</dc:title>
+                    <dc:language>zh-CN</dc:language>
+                    <meta property="dcterms:modified">%s</meta>
+                  </metadata>
+                  <manifest>
+                    <item id="nav" href="nav.xhtml" media-type="application/xhtml+xml" properties="nav"/>
+                    <item id="ncx" href="toc.ncx" media-type="application/x-dtbncx+xml"/>
+                %s
+                  </manifest>
+                  <spine toc="ncx">
+                %s
+                  </spine>
+                </package>
+                """.formatted(identifier(), escape(bookName), Instant.now().truncatedTo(ChronoUnit.SECONDS), manifest, spine)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    // EPUB 3 目录
+    private byte[] navXhtml() {
+        var items = titles.entrySet().stream()
+                .map(title -> "      <li><a href=\"%s\">%s</a></li>".formatted(chapterHref(title.getKey()), escape(title.getValue())))
+                .collect(Collectors.joining("\n"));
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <!DOCTYPE html>
+                <html xmlns="http://www.w3.org/1999/xhtml" xmlns:epub="http://www.idpf.org/2007/ops" xml:lang="zh-CN">
+                <head><meta charset="UTF-8"/><title>%s</title></head>
+                <body>
+                  <nav epub:type="toc" id="toc">
+                    <h1>目录</h1>
+                    <ol>
+                %s
+                    </ol>
+                  </nav>
+                </body>
+                </html>
+                """.formatted(escape(bookName), items).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // EPUB 2 目录，兼容较旧的阅读器
+    private byte[] tocNcx() {
+        var playOrder = new int[]{0};
+        var navPoints = titles.entrySet().stream()
+                .map(title -> {
+                    var order = ++playOrder[0];
+                    return "    <navPoint id=\"p%d\" playOrder=\"%d\"><navLabel><text>%s</text></navLabel><content src=\"%s\"/></navPoint>"
+                            .formatted(order, order, escape(title.getValue()), chapterHref(title.getKey()));
+                })
+                .collect(Collectors.joining("\n"));
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <ncx xmlns="http://www.daisy.org/z3986/2005/ncx/" version="2005-1">
+                  <head>
+                    <meta name="dtb:uid" content="%s"/>
+                    <meta name="dtb:depth" content="1"/>
+                    <meta name="dtb:totalPageCount" content="0"/>
+                    <meta name="dtb:maxPageNumber" content="0"/>
+                  </head>
+                  <docTitle><text>%s</text></docTitle>
+                  <navMap>
+                %s
+                  </navMap>
+                </ncx>
+                """.formatted(identifier(), escape(bookName), navPoints).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // XML 转义，XML 1.0 不允许的控制字符直接丢弃
+    private static String escape(String text) {
+        var escaped = new StringBuilder(text.length() + 16);
+        for (var i = 0; i < text.length(); i++) {
+            var c = text.charAt(i);
+            switch (c) {
+                case '&' -> escaped.append("&amp;");
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '"' -> escaped.append("&quot;");
+                default -> {
+                    if (c >= 0x20 || c == '\t') escaped.append(c);
+                }
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,231 @@
+package shop.zailushang.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 公平队列：按书（ScopedExecutors.KEY）分队，以加权差额轮询（DRR）决定谁先领取令牌
+ * 1. 同一时刻只放行一个请求去预约令牌，令牌的消耗顺序即轮询顺序，大书无法提前预约大量令牌而饿死小书
+ * 2. 每轮每本书可放行 weight 个请求，未配置的书权重为 1；仅一本书排队时独享全部速率
+ * 3. 无人排队且闸门空闲时直接放行，不入队
+ * 4. 仅为有请求排队的书保留队列，书的队列排空即移除，其统计按书留存（至多 HISTORY_SIZE 本，超出后最久未更新的书并入离队汇总）
+ */
+@Slf4j
+public class FairQueue {
+    // 书籍权重，格式：书名:权重,书名:权重（-Dshuqi.fair.weights=斗破苍穹:2,元尊:0.5）
+    public static final Map<String, Double> WEIGHTS = parseWeights(System.getProperty("shuqi.fair.weights", ""));
+    // 默认权重
+    public static final double DEFAULT_WEIGHT = 1.0;
+    // 离队后按书留存统计的书籍数量（-Dshuqi.fair.history=N 调整）
+    public static final Integer HISTORY_SIZE = Integer.getInteger("shuqi.fair.history", 64);
+    // 組件名稱
+    private static final String NAME = "「分香」";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // 书名 → 队列（仅含有请求排队的书，与 active 同进同出）
+    private final Map<String, BookQueue> queues = new HashMap<>();
+    // 有请求排队的书，按轮询顺序
+    private final ArrayDeque<BookQueue> active = new ArrayDeque<>();
+    // 闸门：已放行的请求尚未归还
+    private boolean busy;
+    // 书名 → 离队（直接放行或队列排空）时的累计统计，按最近更新排序，超出 HISTORY_SIZE 时移除最久未更新的书
+    private final Map<String, Stats> history = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Stats> eldest) {
+            if (size() <= HISTORY_SIZE) return false;
+            evictedGranted += eldest.getValue().granted();
+            evictedWaitNanos += eldest.getValue().waitNanos();
+            return true;
+        }
+    };
+    // 已移出留存的书的累计放行数与排队时间
+    private long evictedGranted;
+    private long evictedWaitNanos;
+
+    static {
+        if (!WEIGHTS.isEmpty()) log.info("{} - 书籍权重 => {}", NAME, WEIGHTS);
+    }
+
+    /**
+     * 单本书的排队统计
+     *
+     * @param bookName   书名，离队汇总为 *
+     * @param weight     权重，离队汇总为 null
+     * @param queued     当前排队数
+     * @param peakQueued 排队数峰值
+     * @param granted    累计放行数
+     * @param waitNanos  累计排队时间（纳秒）
+     */
+    public record Stats(String bookName, Double weight, Integer queued, Integer peakQueued, Long granted, Long waitNanos) {
+        // 平均排队时间（毫秒）
+        public double avgWaitMillis() {
+            return granted == 0 ? 0 : waitNanos / 1_000_000.0 / granted;
+        }
+
+        // 同一本书的两段统计合并
+        Stats merge(Stats other) {
+            return new Stats(bookName, weight, queued + other.queued, Math.max(peakQueued, other.peakQueued), granted + other.granted, waitNanos + other.waitNanos);
+        }
+    }
+
+    private static Map<String, Double> parseWeights(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::strip)
+                .filter(Assert::strNotBlank)
+                .map(entry -> entry.split(":"))
+                .collect(Collectors.toUnmodifiableMap(pair -> pair[0].strip(), pair -> Double.parseDouble(pair[1].strip())));
+    }
+
+    // 排队中的请求
+    private static class Waiter {
+        private final Condition condition;
+        private final long enqueuedAt = System.nanoTime();
+        private boolean granted;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    // 单本书的队列与差额（持有锁时访问）
+    private static class BookQueue {
+        private final String bookName;
+        private final double weight;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private double deficit;
+        private int peakQueued;
+        private long granted;
+        private long waitNanos;
+
+        BookQueue(String bookName) {
+            this.bookName = bookName;
+            this.weight = WEIGHTS.getOrDefault(bookName, DEFAULT_WEIGHT);
+            Assert.isTrue(weight, w -> w > 0, () -> new IllegalArgumentException("weight of " + bookName + " must be positive"));
+        }
+
+        void granted(long waitNanos) {
+            this.granted++;
+            this.waitNanos += waitNanos;
+        }
+
+        void enqueue(Waiter waiter) {
+            waiters.addLast(waiter);
+            peakQueued = Math.max(peakQueued, waiters.size());
+        }
+
+        Stats stats() {
+            return new Stats(bookName, weight, waiters.size(), peakQueued, granted, waitNanos);
+        }
+    }
+
+    /*
+     * 排队等待放行，放行后须调用 release 归还闸门
+     */
+    public void acquire(String bookName) {
+        lock.lock();
+        try {
+            // 无人排队时直接放行
+            if (!busy && active.isEmpty()) {
+                busy = true;
+                history.merge(bookName, new Stats(bookName, WEIGHTS.getOrDefault(bookName, DEFAULT_WEIGHT), 0, 0, 1L, 0L), Stats::merge);
+                return;
+            }
+            var queue = queues.computeIfAbsent(bookName, BookQueue::new);
+            var waiter = new Waiter(lock.newCondition());
+            if (queue.waiters.isEmpty()) active.addLast(queue);
+            queue.enqueue(waiter);
+            dispatch();
+            try {
+                while (!waiter.granted) waiter.condition.await();
+            } catch (InterruptedException e) {
+                // 已被放行则归还闸门，否则退出队列
+                if (waiter.granted) release0();
+                else if (queue.waiters.remove(waiter) && queue.waiters.isEmpty()) {
+                    active.remove(queue);
+                    retire(queue);
+                }
+                throw new RuntimeException(e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 归还闸门，放行下一个请求
+    public void release() {
+        lock.lock();
+        try {
+            release0();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release0() {
+        busy = false;
+        dispatch();
+    }
+
+    /*
+     * 差额轮询（持有锁时调用）：队首的书差额不足一次时补充 weight 并轮转，足够时放行其最早的请求
+     */
+    private void dispatch() {
+        if (busy) return;
+        while (!active.isEmpty()) {
+            var queue = active.peekFirst();
+            if (queue.deficit < 1) {
+                queue.deficit += queue.weight;
+                if (queue.deficit < 1) {
+                    active.addLast(active.pollFirst());
+                    continue;
+                }
+            }
+            var waiter = queue.waiters.pollFirst();
+            queue.deficit -= 1;
+            queue.granted(System.nanoTime() - waiter.enqueuedAt);
+            // 队列已空则退出轮询并移除；本轮额度用尽则轮转至队尾
+            if (queue.waiters.isEmpty()) {
+                active.pollFirst();
+                retire(queue);
+            } else if (queue.deficit < 1) active.addLast(active.pollFirst());
+            busy = true;
+            waiter.granted = true;
+            waiter.condition.signal();
+            return;
+        }
+    }
+
+    // 移除已排空的队列，统计按书留存（持有锁时调用）
+    private void retire(BookQueue queue) {
+        queues.remove(queue.bookName);
+        history.merge(queue.bookName, queue.stats(), Stats::merge);
+    }
+
+    // 各书的统计（排队中的书并入其留存的统计），末项为已移出留存的书的汇总
+    public List<Stats> stats() {
+        lock.lock();
+        try {
+            var live = new HashMap<String, Stats>();
+            queues.values().forEach(queue -> live.put(queue.bookName, queue.stats()));
+            // 遍历留存不改变其访问顺序
+            var retired = history.values().stream()
+                    .map(stats -> live.containsKey(stats.bookName()) ? live.remove(stats.bookName()).merge(stats) : stats)
+                    .toList();
+            return Stream.of(live.values().stream(), retired.stream(), Stream.of(new Stats("*", null, 0, 0, evictedGranted, evictedWaitNanos)))
+                    .flatMap(stream -> stream)
+                    .toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package shop.zailushang.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import shop.zailushang.entity.Chapter;
+
+import java.util.Collection;
+
+/**
+ * 飞行记录：JFR 自定义事件，无需挂载分析器即可查看一本书的耗时分布
+ * 启用：-XX:StartFlightRecording:filename=shuqi.jfr，于 JMC 中按「ShuQi Spider」分类查看
+ * 1. 未开启记录时 isEnabled() 为常量 false，事件对象经逃逸分析消除，开销近乎为零
+ * 2. 事件不采集栈，阶段事件的耗时为自派发至完成的墙钟时间（含排队等待）
+ * 3. 未知的章节序号记为 -1，未知的数据量记为 0
+ */
+public class FlightEvents {
+    private static final String CATEGORY = "ShuQi Spider";
+
+    // 任务类型 → 阶段名
+    private static final ClassValue<String> STAGES = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return stageOf0(type);
+        }
+    };
+
+    private FlightEvents() {
+    }
+
+    /**
+     * 组件阶段：Reader / Selector / Parser / Decoder / Formatter / Writer / Merger / Cleaner 及自定义任务
+     */
+    @Name("shop.zailushang.Stage")
+    @Label("Stage")
+    @Category(CATEGORY)
+    @Description("单个组件任务自派发至完成")
+    @StackTrace(false)
+    public static class StageEvent extends Event {
+        @Label("Stage")
+        public String stage;
+        @Label("Book Name")
+        public String bookName;
+        @Label("Chapter Ordid")
+        public int chapterOrdid;
+        @Label("Bytes In")
+        @Description("输入的数据量，文本按字符数计")
+        @DataAmount
+        public long bytesIn;
+        @Label("Bytes Out")
+        @Description("输出的数据量，文本按字符数计")
+        @DataAmount
+        public long bytesOut;
+        @Label("Failed")
+        public boolean failed;
+    }
+
+    /**
+     * 流控等待：按书公平排队、等待令牌与并发许可
+     */
+    @Name("shop.zailushang.RateLimitWait")
+    @Label("Rate Limit Wait")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class RateLimitWaitEvent extends Event {
+        @Label("Host")
+        public String host;
+        @Label("Token Wait")
+        @Description("预约令牌后的休眠时间，不含等待并发许可")
+        @Timespan
+        public long tokenWait;
+        @Label("Rate")
+        @Description("当前速率（次/秒）")
+        public double rate;
+    }
+
+    /**
+     * JS 引擎池：等待许可并取得（或新建）Context
+     */
+    @Name("shop.zailushang.ContextAcquire")
+    @Label("Context Acquire")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ContextAcquireEvent extends Event {
+        @Label("Created")
+        @Description("无空闲 Context，新建")
+        public boolean created;
+        @Label("Pool Size")
+        public int poolSize;
+    }
+
+    /**
+     * 分治合并：一个区间的合并，拆分时包含等待子任务
+     */
+    @Name("shop.zailushang.ForkJoin")
+    @Label("Fork Join")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ForkJoinEvent extends Event {
+        @Label("Task")
+        public String task;
+        @Label("Book Name")
+        public String bookName;
+        @Label("Start Index")
+        public int startIndex;
+        @Label("End Index")
+        public int endIndex;
+        @Label("Forked")
+        public boolean forked;
+        @Label("Successful")
+        public int successful;
+        @Label("Byte Size")
+        @DataAmount
+        public long byteSize;
+    }
+
+    /**
+     * 目标文件预分配：统计零散章节总长度并预设文件大小
+     */
+    @Name("shop.zailushang.Preallocate")
+    @Label("Preallocate")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class PreallocateEvent extends Event {
+        @Label("Book Name")
+        public String bookName;
+        @Label("Length")
+        @DataAmount
+        public long length;
+    }
+
+    // 阶段名：组件接口名，自定义任务取其所在的类名
+    public static String stageOf(Class<?> type) {
+        return STAGES.get(type);
+    }
+
+    private static String stageOf0(Class<?> type) {
+        for (var in : type.getInterfaces()) {
+            if (in.getPackageName().equals("shop.zailushang.component") && !in.getSimpleName().equals("Task")) return in.getSimpleName();
+        }
+        var name = type.getName();
+        var lambda = name.indexOf("$$Lambda");
+        if (lambda >= 0) name = name.substring(0, lambda);
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    // 当前作用域中的书名，未绑定时取自参数
+    public static String bookOf(Object param) {
+        if (ScopedExecutor.ScopedExecutors.KEY.isBound()) return ScopedExecutor.ScopedExecutors.KEY.get();
+        return switch (param) {
+            case Chapter.Chapter4Read c -> c.bookName();
+            case Chapter.Chapter4Select c -> c.bookName();
+            case Chapter.Chapter4Parse c -> c.bookName();
+            case Chapter.Chapter4Decode c -> c.bookName();
+            case Chapter.Chapter4Format c -> c.bookName();
+            case Chapter.Chapter4Write c -> c.bookName();
+            case Chapter.Chapter4Merge c -> c.bookName();
+            case Chapter.Chapter4Clean c -> c.bookName();
+            case null, default -> null;
+        };
+    }
+
+    // 章节序号
+    public static int ordidOf(Object value) {
+        var ordid = switch (value) {
+            case Chapter.Chapter4Read c -> c.chapterOrdid();
+            case Chapter.Chapter4Select c -> c.chapterOrdid();
+            case Chapter.Chapter4Parse c -> c.chapterOrdid();
+            case Chapter.Chapter4Decode c -> c.chapterOrdid();
+            case Chapter.Chapter4Format c -> c.chapterOrdid();
+            case Chapter.Chapter4Write c -> c.chapterOrdid();
+            case Chapter.Chapter4Merge c -> c.chapterOrdid();
+            case null, default -> null;
+        };
+        return ordid == null ? -1 : ordid;
+    }
+
+    // 数据量：字节数组按字节数，文本按字符数，集合按元素数之和
+    public static long sizeOf(Object value) {
+        return switch (value) {
+            case byte[] bytes -> bytes.length;
+            case String text -> text.length();
+            case Chapter.Chapter4Select c -> c.jsonBytes().length;
+            case Chapter.Chapter4Parse c -> c.jsonBytes().length;
+            case Chapter.Chapter4Decode c -> c.ciphertext().length();
+            case Chapter.Chapter4Format c -> c.unformattedChapterContent().length();
+            case Chapter.Chapter4Write c -> c.chapterBytes().length;
+            case Collection<?> collection -> collection.stream().mapToLong(FlightEvents::sizeOf).sum();
+            case null, default -> 0;
+        };
+    }
+
+    /*
+     * 提交阶段事件（仅在超过阈值时填充字段）
+     */
+    public static void commit(StageEvent event, String stage, String bookName, Object param, Object result, Throwable throwable) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.stage = stage;
+        event.bookName = bookName;
+        event.chapterOrdid = ordidOf(param) >= 0 ? ordidOf(param) : ordidOf(result);
+        event.bytesIn = sizeOf(param);
+        event.bytesOut = sizeOf(result);
+        event.failed = throwable != null;
+        event.commit();
+    }
+}
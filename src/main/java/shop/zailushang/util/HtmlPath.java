@@ -0,0 +1,131 @@
+package shop.zailushang.util;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 流式路径匹配：以 jsoup StreamParser 边读边解析页面（UTF-8），按绝对路径（仅支持 /name 与 /name[n]）匹配元素，目标元素闭合即停止，不再读取其后的内容
+ * 1. 树构建由 jsoup 完成，隐式闭合、错误嵌套等情形与 DOM 解析一致
+ * 2. 元素按闭合顺序给出：闭合时其子树与此前的兄弟均已完整，文本、属性与同名兄弟序号可直接确定
+ * 3. 路径层数固定，匹配的元素不会互相嵌套，首个闭合的匹配即文档顺序中的首个
+ * 4. 目标元素的祖先或后代中仍有未闭合的格式化元素时，其错误嵌套的结束标签会由收养算法重排目标元素，此时不提前停止，解析完成后在文档中查找
+ * 与 jsoup selectXpath 的差异测试见基准模块 HtmlPathHarness
+ */
+public class HtmlPath {
+    // 格式化元素：结束标签错误嵌套时由收养算法重排其后代
+    private static final Set<String> FORMATTING_ELEMENTS = Set.of("a", "b", "big", "code", "em", "font", "i", "nobr", "s", "small", "strike", "strong", "tt", "u");
+
+    private final String expression;
+    private final Step[] steps;
+
+    // 路径中的一层：序号从 1 开始，0 表示不限
+    private record Step(String name, int index) {
+        boolean matches(Element element) {
+            return name.equals(element.normalName()) && (index == 0 || index == indexOf(element));
+        }
+
+        // 在同名兄弟中的序号
+        private static int indexOf(Element element) {
+            var index = 1;
+            for (var sibling = element.previousElementSibling(); sibling != null; sibling = sibling.previousElementSibling()) {
+                if (sibling.normalName().equals(element.normalName())) index++;
+            }
+            return index;
+        }
+    }
+
+    private HtmlPath(String expression, Step[] steps) {
+        this.expression = expression;
+        this.steps = steps;
+    }
+
+    // 编译绝对路径 e.g. /html/body/div[1]/span[2]
+    public static HtmlPath compile(String expression) {
+        Assert.isTrue(expression, path -> path != null && path.startsWith("/"), () -> new IllegalArgumentException("absolute path required: " + expression));
+        var steps = Arrays.stream(expression.substring(1).split("/"))
+                .map(step -> {
+                    var bracket = step.indexOf('[');
+                    if (bracket < 0) return new Step(step.toLowerCase(), 0);
+                    return new Step(step.substring(0, bracket).toLowerCase(), Integer.parseInt(step.substring(bracket + 1, step.length() - 1)));
+                })
+                .toArray(Step[]::new);
+        return new HtmlPath(expression, steps);
+    }
+
+    // 目标元素的属性值；元素或属性不存在时返回空
+    public Optional<String> attr(InputStream html, String attribute) {
+        return find(html).filter(element -> element.hasAttr(attribute)).map(element -> element.attr(attribute));
+    }
+
+    public Optional<String> attr(byte[] html, String attribute) {
+        return attr(new ByteArrayInputStream(html), attribute);
+    }
+
+    // 目标元素的文本（与 Element.text() 一致）；元素不存在时返回空
+    public Optional<String> text(InputStream html) {
+        return find(html).map(Element::text);
+    }
+
+    public Optional<String> text(byte[] html) {
+        return text(new ByteArrayInputStream(html));
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    // 解析至目标元素闭合即停止（StreamParser 要求 Reader 支持 mark）
+    private Optional<Element> find(InputStream html) {
+        try (var parser = new StreamParser(Parser.htmlParser()).parse(new BufferedReader(new InputStreamReader(html, StandardCharsets.UTF_8)), "")) {
+            var iterator = parser.iterator();
+            // 已闭合的格式化元素
+            var closed = Collections.<Element>newSetFromMap(new IdentityHashMap<>());
+            // 遇到可能被重排的匹配后，文档顺序中的首个匹配只能在解析完成后确定
+            var settled = true;
+            while (iterator.hasNext()) {
+                var element = iterator.next();
+                if (FORMATTING_ELEMENTS.contains(element.normalName())) closed.add(element);
+                if (!matches(element)) continue;
+                if (settled && settled(element, closed)) return Optional.of(element);
+                settled = false;
+            }
+            return parser.document().getAllElements().stream().filter(this::matches).findFirst();
+        }
+    }
+
+    // 祖先与后代中没有未闭合的格式化元素：此后的收养算法不会再移动该元素或改写其子树
+    private static boolean settled(Element element, Set<Element> closed) {
+        for (var parent = element.parent(); parent != null; parent = parent.parent()) {
+            if (open(parent, closed)) return false;
+        }
+        return element.getAllElements().stream().noneMatch(descendant -> open(descendant, closed));
+    }
+
+    private static boolean open(Element element, Set<Element> closed) {
+        return FORMATTING_ELEMENTS.contains(element.normalName()) && !closed.contains(element);
+    }
+
+    // 自目标层起逐层向上比对，最外层的父节点须为文档根
+    private boolean matches(Element element) {
+        var current = element;
+        for (int i = steps.length - 1; i >= 0; i--) {
+            if (current == null || !steps[i].matches(current)) return false;
+            current = current.parent();
+        }
+        return current instanceof Document;
+    }
+}
@@ -0,0 +1,273 @@
+package shop.zailushang.util;
+
+import lombok.extern.slf4j.Slf4j;
+import shop.zailushang.flow.FlowEngine;
+
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 两级响应缓存：
+ * 1. 内存：按字节计量的 W-TinyLFU 缓存 {@link TinyLfuCache}
+ * 2. 磁盘：内容寻址存储，响应体以 sha256(响应体) 命名（相同内容只存一份），索引以 sha256(缓存键) 命名
+ * 过期条目不直接丢弃，携带 ETag / Last-Modified 发起条件请求，304 时续期复用
+ * 新鲜命中时由调用方跳过流控，见 {@link shop.zailushang.component.Reader#withCache}
+ */
+@Slf4j
+public class HttpCache {
+    // 内存缓存容量（字节）
+    public static final Long MEMORY_CAPACITY = 64L * 1024 * 1024;
+    // 磁盘缓存根目录 e.g. D:/.cache
+    public static final Path CACHE_FOLDER = Paths.get(FlowEngine.FOLDER_FORMATTER.formatted(".cache"));
+    // 組件名稱
+    private static final String NAME = "「藏经阁」";
+    // 内存缓存：响应体按原始字节计
+    private static final TinyLfuCache<String, CachedResponse> MEMORY = new TinyLfuCache<>(MEMORY_CAPACITY, 8192, cached -> cached.body().length + 256);
+
+    // 统计计数器
+    private static final LongAdder MEMORY_HITS = new LongAdder();
+    private static final LongAdder DISK_HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder REVALIDATED = new LongAdder();
+
+    /**
+     * 缓存的端点：按地址区分有效期，并剔除每次请求都会变化的查询参数（时间戳、签名）
+     *
+     * @param ttl        有效期
+     * @param pathMarker 地址路径特征
+     * @param keyParams  参与缓存键的查询参数，为空时使用完整地址
+     * @param bodyMarker 可缓存的响应体须包含的特征（排除站点以 200 返回的错误页面）
+     */
+    public enum Endpoint {
+        // 搜索页（bid）：书籍与 bid 的对应关系几乎不变
+        SEARCH(Duration.ofDays(1), "/search", new String[0], "data-bid"),
+        // 章节列表页：章节地址中的签名有时效，有效期宜短
+        CHAPTER_LIST(Duration.ofMinutes(10), "/reader", new String[0], "chapterList"),
+        // 章节内容：已发布章节内容不变，以 bookId + chapterId 为键
+        CONTENT(Duration.ofDays(30), "/contentfree/", new String[]{"bookId", "chapterId"}, "\"ChapterContent\"");
+
+        private final Duration ttl;
+        private final String pathMarker;
+        private final String[] keyParams;
+        private final byte[] bodyMarker;
+
+        Endpoint(Duration ttl, String pathMarker, String[] keyParams, String bodyMarker) {
+            this.ttl = ttl;
+            this.pathMarker = pathMarker;
+            this.keyParams = keyParams;
+            this.bodyMarker = bodyMarker.getBytes(StandardCharsets.UTF_8);
+        }
+
+        // 直接在原始字节中查找特征，无需解码
+        boolean cacheable(byte[] body) {
+            outer:
+            for (int i = 0, last = body.length - bodyMarker.length; i <= last; i++) {
+                for (int j = 0; j < bodyMarker.length; j++) if (body[i + j] != bodyMarker[j]) continue outer;
+                return true;
+            }
+            return false;
+        }
+
+        public Duration ttl() {
+            return ttl;
+        }
+
+        static Optional<Endpoint> of(String uri) {
+            return Arrays.stream(values()).filter(endpoint -> uri.contains(endpoint.pathMarker)).findFirst();
+        }
+
+        // 缓存键：端点名 + 参与缓存键的查询参数
+        String key(String uri) {
+            if (keyParams.length == 0) return name() + " " + uri;
+            var query = Optional.ofNullable(URI.create(uri).getRawQuery()).orElse("");
+            var params = Arrays.stream(query.split("&"))
+                    .filter(param -> Arrays.stream(keyParams).anyMatch(keyParam -> param.startsWith(keyParam + "=")))
+                    .sorted()
+                    .collect(Collectors.joining("&"));
+            return name() + " " + params;
+        }
+    }
+
+    /**
+     * 缓存的响应
+     *
+     * @param body         响应体（解压后的原始字节，内存缓存与调用方共享，不得修改）
+     * @param etag         ETag，可为 null
+     * @param lastModified Last-Modified，可为 null
+     * @param storedAt     写入（或最近一次验证）时间（毫秒）
+     */
+    public record CachedResponse(byte[] body, String etag, String lastModified, Long storedAt) {
+        boolean isFresh(Endpoint endpoint) {
+            return System.currentTimeMillis() - storedAt < endpoint.ttl().toMillis();
+        }
+    }
+
+    /**
+     * 缓存统计
+     *
+     * @param memoryHits  内存命中
+     * @param diskHits    磁盘命中
+     * @param misses      未命中（含过期）
+     * @param revalidated 条件请求返回 304 的次数
+     * @param evictions   内存淘汰数
+     * @param entries     内存条目数
+     * @param memoryBytes 内存占用（字节）
+     */
+    public record Stats(Long memoryHits, Long diskHits, Long misses, Long revalidated, Long evictions,
+                        Integer entries, Long memoryBytes) {
+        public double hitRatio() {
+            var total = memoryHits + diskHits + misses;
+            return total == 0 ? 0 : (double) (memoryHits + diskHits) / total;
+        }
+    }
+
+    private HttpCache() {
+    }
+
+    /*
+     * 查找新鲜的缓存（内存 → 磁盘），过期或未缓存时为空
+     */
+    public static Optional<byte[]> getFresh(String uri) {
+        if (!FlowEngine.USE_CACHE) return Optional.empty();
+        return Endpoint.of(uri).flatMap(endpoint -> lookup(endpoint, uri, true).filter(cached -> cached.isFresh(endpoint)).map(CachedResponse::body));
+    }
+
+    /*
+     * 查找缓存（不论是否过期），用于构造条件请求
+     */
+    public static Optional<CachedResponse> get(String uri) {
+        if (!FlowEngine.USE_CACHE) return Optional.empty();
+        return Endpoint.of(uri).flatMap(endpoint -> lookup(endpoint, uri, false));
+    }
+
+    /*
+     * 使缓存过期（保留响应体与校验器）：下次请求时发起条件请求，内容未变时由 304 续期
+     */
+    public static void expire(String uri) {
+        if (!FlowEngine.USE_CACHE) return;
+        Endpoint.of(uri).ifPresent(endpoint -> lookup(endpoint, uri, false)
+                .ifPresent(cached -> store(endpoint.key(uri), new CachedResponse(cached.body(), cached.etag(), cached.lastModified(), 0L))));
+    }
+
+    // 内存 → 磁盘，磁盘命中时回填内存；record 为 true 时计入命中统计
+    private static Optional<CachedResponse> lookup(Endpoint endpoint, String uri, boolean record) {
+        var key = endpoint.key(uri);
+        var cached = MEMORY.get(key);
+        var hits = MEMORY_HITS;
+        if (cached.isEmpty()) {
+            cached = readDisk(key);
+            cached.ifPresent(response -> MEMORY.put(key, response));
+            hits = DISK_HITS;
+        }
+        if (record) (cached.filter(response -> response.isFresh(endpoint)).isPresent() ? hits : MISSES).increment();
+        return cached;
+    }
+
+    /*
+     * 处理响应：200 时写入缓存，304 时续期并返回缓存的响应体，其余原样返回
+     */
+    public static byte[] update(String uri, HttpResponse<byte[]> response, CachedResponse stale) {
+        var endpoint = Endpoint.of(uri);
+        if (!FlowEngine.USE_CACHE || endpoint.isEmpty()) return response.body();
+        var key = endpoint.get().key(uri);
+        if (response.statusCode() == 304 && stale != null) {
+            REVALIDATED.increment();
+            store(key, new CachedResponse(stale.body(), stale.etag(), stale.lastModified(), System.currentTimeMillis()));
+            return stale.body();
+        }
+        if (response.statusCode() == 200 && endpoint.get().cacheable(response.body())) {
+            var headers = response.headers();
+            store(key, new CachedResponse(response.body(), headers.firstValue("ETag").orElse(null), headers.firstValue("Last-Modified").orElse(null), System.currentTimeMillis()));
+        }
+        return response.body();
+    }
+
+    private static void store(String key, CachedResponse cached) {
+        MEMORY.put(key, cached);
+        writeDisk(key, cached);
+    }
+
+    private static String sha256(String text) {
+        return sha256(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // 索引文件：四行 → 响应体摘要、ETag、Last-Modified、写入时间，空值记为 -
+    private static Path indexPath(String key) {
+        var hash = sha256(key);
+        return CACHE_FOLDER.resolve("index").resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static Path blobPath(String bodyHash) {
+        return CACHE_FOLDER.resolve("blobs").resolve(bodyHash.substring(0, 2)).resolve(bodyHash);
+    }
+
+    private static Optional<CachedResponse> readDisk(String key) {
+        var indexPath = indexPath(key);
+        try {
+            if (Files.notExists(indexPath)) return Optional.empty();
+            var lines = Files.readAllLines(indexPath, StandardCharsets.UTF_8);
+            if (lines.size() != 4 || Files.notExists(blobPath(lines.get(0)))) return Optional.empty();
+            var blobPath = blobPath(lines.get(0));
+            var body = Files.readAllBytes(blobPath);
+            return Optional.of(new CachedResponse(body, nullable(lines.get(1)), nullable(lines.get(2)), Long.valueOf(lines.get(3))));
+        } catch (Exception e) {
+            // 损坏的缓存视为未命中
+            log.warn("{} - 读取磁盘缓存失败 path => {}", NAME, indexPath, e);
+            return Optional.empty();
+        }
+    }
+
+    private static void writeDisk(String key, CachedResponse cached) {
+        try {
+            var bodyHash = sha256(cached.body());
+            var blobPath = blobPath(bodyHash);
+            // 内容寻址：相同响应体已存在时无需重复写入
+            if (Files.notExists(blobPath)) atomicWrite(blobPath, cached.body());
+            atomicWrite(indexPath(key), String.join("\n", bodyHash, Optional.ofNullable(cached.etag()).orElse("-"), Optional.ofNullable(cached.lastModified()).orElse("-"), String.valueOf(cached.storedAt())).getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            // 缓存写入失败不影响下载
+            log.warn("{} - 写入磁盘缓存失败 key => {}", NAME, key, e);
+        }
+    }
+
+    // 先写临时文件再原子替换，避免并发读到写了一半的文件
+    private static void atomicWrite(Path path, byte[] content) throws Exception {
+        Files.createDirectories(path.getParent());
+        var temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String nullable(String value) {
+        return "-".equals(value) ? null : value;
+    }
+
+    // 获取统计快照
+    public static Stats stats() {
+        return new Stats(MEMORY_HITS.sum(), DISK_HITS.sum(), MISSES.sum(), REVALIDATED.sum(), MEMORY.evictionCount(), MEMORY.size(), MEMORY.weightedSize());
+    }
+}
@@ -35,9 +35,31 @@ public interface IOForkJoinTask<T extends IOForkJoinTask<T>> {
         return (endIndex() - startIndex() + 1) > capacity();
     }
 
-    // 要在线程内执行的任务的起始点（模板方法模式，定义流程算法骨架）
+    // 要在线程内执行的任务的起始点（模板方法模式，定义流程算法骨架），仅在最外层阻塞等待
     default Result compute() {
-        return needFork() ? join(fork()) : doCompute();
+        return computeAsync().join();
+    }
+
+    // 异步执行：拆分时子任务全部完成后再回调汇总，不阻塞任何线程等待子任务
+    default CompletableFuture<Result> computeAsync() {
+        var event = new FlightEvents.ForkJoinEvent();
+        event.begin();
+        var forked = needFork();
+        var future = forked ? join(fork()) : CompletableFuture.completedFuture(doCompute());
+        return future.thenApply(result -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.task = getClass().getSimpleName();
+                event.bookName = ScopedExecutor.ScopedExecutors.KEY.isBound() ? ScopedExecutor.ScopedExecutors.KEY.get() : null;
+                event.startIndex = startIndex();
+                event.endIndex = endIndex();
+                event.forked = forked;
+                event.successful = result.successful();
+                event.byteSize = result.byteSize();
+                event.commit();
+            }
+            return result;
+        });
     }
 
     // 执行具体的任务操作由子类实现
@@ -47,24 +69,22 @@ public interface IOForkJoinTask<T extends IOForkJoinTask<T>> {
     @SuppressWarnings("unchecked")
     default CompletableFuture<Result>[] fork() {
         return Arrays.stream(doFork())
-                .map(task -> CompletableFuture.supplyAsync(task::compute, executor())) // 将子任务提交至线程池
+                .map(task -> CompletableFuture.completedFuture(task).thenComposeAsync(IOForkJoinTask::computeAsync, executor())) // 将子任务提交至线程池
                 .toArray(CompletableFuture[]::new);
     }
 
     // 具体拆分算法由子类实现
     T[] doFork();
 
-    // 当前任务阻塞等待子任务的返回结果
+    // 子任务全部完成后汇总结果（回调执行，当前线程不阻塞等待）
     @SuppressWarnings("unchecked")
-    default Result join(CompletableFuture<Result>... futures) {
+    default CompletableFuture<Result> join(CompletableFuture<Result>... futures) {
         // 返回值用以计算任务成功数量
-        log.info("{} - 等待子任务返回 ...", IOForkJoinTask.name());
+        ProgressLog.sampled(log).info("{} - 等待子任务返回 ...", IOForkJoinTask.name());
         // 合并子任务返回结果
-        var result = CompletableFuture.allOf(futures) // 等待所有子任务完成
-                .thenApplyAsync(_ -> Arrays.stream(futures).map(CompletableFuture::join).reduce(Result.ZERO, Result::reduce), executor()) // 汇总返回子任务结果
-                .join();
-        log.info("{} - 返回结果:{}", IOForkJoinTask.name(), result);
-        return result;
+        return CompletableFuture.allOf(futures) // 所有子任务完成时回调
+                .thenApplyAsync(_ -> Arrays.stream(futures).map(CompletableFuture::join).reduce(Result.ZERO, Result::reduce), executor()) // 汇总返回子任务结果（均已完成，join 不会阻塞）
+                .whenComplete((result, _) -> ProgressLog.sampled(log).info("{} - 返回结果:{}", IOForkJoinTask.name(), result));
     }
 
     /**
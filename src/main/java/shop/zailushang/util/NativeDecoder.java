@@ -0,0 +1,181 @@
+package shop.zailushang.util;
+
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 本地解密器：单次遍历完成 字母轮转 → 字母表过滤 → base64 解码 → UTF-8 解码，中间不产生任何副本
+ * 算法与 decode.js 保持一致：
+ * 1. 仅 ASCII 字母参与轮转（即 ROT13），非字母原样保留
+ * 2. 丢弃 base64 字母表 [A-Za-z0-9+/=] 以外的字符
+ * 3. base64 解码，'=' 视为数据结束
+ * 4. 按 decode.js 的方式解码 UTF-8（仅区分 1、2、3 字节序列）
+ */
+public class NativeDecoder {
+    // 填充符在反查表中的值
+    private static final byte PADDING = 64;
+    // 非字母表字符在反查表中的值
+    private static final byte IGNORED = -1;
+    // 反查表：密文字符 → 轮转后对应的 base64 六位值
+    private static final byte[] SEXTETS = new byte[128];
+    // 缓冲区池容量
+    private static final int POOL_SIZE = 64;
+    // 默认缓冲区大小（字符），足以容纳绝大多数章节
+    private static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+    // 超过此大小的缓冲区用完即弃，避免长期占用堆内存
+    private static final int MAX_POOLED_BUFFER_SIZE = 256 * 1024;
+    // 缓冲区池：虚拟线程用完即销毁，ThreadLocal 无法复用，故使用共享池
+    private static final BlockingQueue<char[]> BUFFER_POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    static {
+        final var alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (char c = 0; c < SEXTETS.length; c++) {
+            var rotated = rotate(c);
+            var index = alphabet.indexOf(rotated);
+            SEXTETS[c] = index >= 0 ? (byte) index : rotated == '=' ? PADDING : IGNORED;
+        }
+    }
+
+    private NativeDecoder() {
+    }
+
+    // 字母轮转：e = c / 97 区分大小写，i = (lower(c) - 83) % 26 || 26
+    private static char rotate(char c) {
+        if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z')) return c;
+        var e = c / 97;
+        var i = (Character.toLowerCase(c) - 83) % 26;
+        if (i == 0) i = 26;
+        return (char) (i + (e == 0 ? 64 : 96));
+    }
+
+    // 解密结果的最大字符数（每 4 个六位值最多 3 个字节，每个字节最多 1 个字符）
+    public static int maxDecodedLength(int ciphertextLength) {
+        return ciphertextLength / 4 * 3 + 2;
+    }
+
+    /*
+     * 解密为字符串：使用池化缓冲区，仅在构造结果字符串时复制一次
+     */
+    public static String decode(CharSequence ciphertext) {
+        var buffer = borrow(maxDecodedLength(ciphertext.length()));
+        try {
+            var length = decode0(ciphertext, buffer, 0, buffer.length);
+            return new String(buffer, 0, length);
+        } finally {
+            giveBack(buffer);
+        }
+    }
+
+    /*
+     * 解密至调用方提供的数组，返回写入的字符数；剩余空间不足时抛出 IndexOutOfBoundsException
+     */
+    public static int decode(CharSequence ciphertext, char[] dst, int offset) {
+        return decode0(ciphertext, dst, offset, dst.length) - offset;
+    }
+
+    /*
+     * 解密至调用方提供的 CharBuffer，写入后 position 前移；剩余空间不足时抛出 BufferOverflowException
+     */
+    public static void decode(CharSequence ciphertext, CharBuffer dst) {
+        if (dst.hasArray() && !dst.isReadOnly()) {
+            var start = dst.arrayOffset() + dst.position();
+            try {
+                var end = decode0(ciphertext, dst.array(), start, dst.arrayOffset() + dst.limit());
+                dst.position(end - dst.arrayOffset());
+            } catch (IndexOutOfBoundsException e) {
+                throw new BufferOverflowException();
+            }
+            return;
+        }
+        // 直接缓冲区：先解密至池化数组，再整体写入
+        var buffer = borrow(maxDecodedLength(ciphertext.length()));
+        try {
+            var length = decode0(ciphertext, buffer, 0, buffer.length);
+            dst.put(buffer, 0, length);
+        } finally {
+            giveBack(buffer);
+        }
+    }
+
+    // 单次遍历解密，返回写入结束位置
+    private static int decode0(CharSequence ciphertext, char[] dst, int offset, int limit) {
+        var position = offset;
+        var length = ciphertext.length();
+        // base64 状态：已累积的六位值个数、累积值、是否遇到填充符
+        var sextetCount = 0;
+        var bits = 0;
+        var padded = false;
+        // UTF-8 状态：尚缺的后续字节数 与 累积码点
+        var pending = 0;
+        var codePoint = 0;
+        for (int i = 0; ; i++) {
+            int byteCount;
+            if (i < length && !padded) {
+                var c = ciphertext.charAt(i);
+                var sextet = c < SEXTETS.length ? SEXTETS[c] : IGNORED;
+                if (sextet == IGNORED) continue;
+                if (sextet == PADDING) {
+                    padded = true;
+                    continue;
+                }
+                bits = bits << 6 | sextet;
+                if (++sextetCount < 4) continue;
+                // 每 4 个六位值产出 3 个字节
+                byteCount = 3;
+            } else {
+                // 输入结束：末尾分组 2 个六位值产出 1 字节，3 个产出 2 字节（与 java.util.Base64 行为一致）
+                if (sextetCount == 0) {
+                    if (padded) throw new IllegalArgumentException("Input byte array has incorrect ending byte");
+                    break;
+                }
+                if (sextetCount == 1) throw new IllegalArgumentException("Last unit does not have enough valid bits");
+                bits <<= 6 * (4 - sextetCount);
+                byteCount = sextetCount - 1;
+                // 收尾后令下一轮直接结束
+                padded = false;
+                length = i;
+            }
+            for (int n = 0, shift = 16; n < byteCount; n++, shift -= 8) {
+                var b = bits >> shift & 0xFF;
+                // UTF-8 解码：与 decode.js 相同，仅区分 1、2、3 字节序列
+                if (pending == 0) {
+                    if (b < 128) {
+                        if (position >= limit) throw new IndexOutOfBoundsException(position);
+                        dst[position++] = (char) b;
+                    } else if (b > 191 && b < 224) {
+                        codePoint = b & 31;
+                        pending = 1;
+                    } else {
+                        codePoint = b & 15;
+                        pending = 2;
+                    }
+                } else {
+                    codePoint = codePoint << 6 | b & 63;
+                    if (--pending == 0) {
+                        if (position >= limit) throw new IndexOutOfBoundsException(position);
+                        dst[position++] = (char) codePoint;
+                    }
+                }
+            }
+            sextetCount = 0;
+            bits = 0;
+        }
+        if (pending != 0) throw new IllegalArgumentException("Truncated UTF-8 sequence at end of plaintext");
+        return position;
+    }
+
+    // 借出缓冲区
+    private static char[] borrow(int minLength) {
+        var buffer = BUFFER_POOL.poll();
+        if (buffer != null && buffer.length >= minLength) return buffer;
+        // 池中缓冲区过小时直接丢弃，重新分配
+        return new char[Math.max(minLength, DEFAULT_BUFFER_SIZE)];
+    }
+
+    // 归还缓冲区，池满或过大时丢弃
+    private static void giveBack(char[] buffer) {
+        if (buffer.length <= MAX_POOLED_BUFFER_SIZE) BUFFER_POOL.offer(buffer);
+    }
+}
@@ -0,0 +1,193 @@
+package shop.zailushang.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+import shop.zailushang.flow.FlowEngine;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 汇总日志：以无锁累加器统计每本书各阶段的完成数、耗时与失败数，每个周期每本书只输出一行汇总
+ * 1. 逐章的明细日志按 1 / SAMPLE_EVERY 的概率采样输出，失败总是输出，且同一异常只在最先失败的阶段输出一次
+ * 2. 阶段统计由 Task#traced 在组装任务链时自动挂载，与飞行记录共用同一装饰器
+ * 3. 详细模式（-Dshuqi.log.verbose=true）下保持逐章输出，不做统计
+ */
+@Slf4j
+public class ProgressLog {
+    // 汇总输出周期，可通过 -Dshuqi.log.interval 调整（秒）
+    public static final Duration INTERVAL = Duration.ofSeconds(Long.getLong("shuqi.log.interval", 5L));
+    // 明细日志采样率：平均每 SAMPLE_EVERY 条输出一条，可通过 -Dshuqi.log.sample 调整
+    public static final Integer SAMPLE_EVERY = Integer.getInteger("shuqi.log.sample", 100);
+    // 組件名稱
+    private static final String NAME = "「功过格」";
+    // 书名 → 阶段统计
+    private static final Map<String, BookProgress> BOOKS = new ConcurrentHashMap<>();
+    // 汇总输出线程（守护线程，随首本书启动）
+    private static volatile ScheduledExecutorService reporter;
+    private static final ReentrantLock REPORTER_LOCK = new ReentrantLock();
+    // 已输出的异常（按对象标识，弱引用）：外层阶段因内层失败而失败时只计数，不重复输出
+    private static final Map<Throwable, Boolean> REPORTED = new WeakHashMap<>();
+    private static final ReentrantLock REPORTED_LOCK = new ReentrantLock();
+
+    private ProgressLog() {
+    }
+
+    // 明细日志：详细模式或命中采样时返回原日志器，否则返回空日志器
+    public static Logger sampled(Logger logger) {
+        return FlowEngine.VERBOSE_LOG || ThreadLocalRandom.current().nextInt(SAMPLE_EVERY) == 0 ? logger : NOPLogger.NOP_LOGGER;
+    }
+
+    // 开始统计一本书
+    public static void open(String bookName) {
+        if (FlowEngine.VERBOSE_LOG) return;
+        BOOKS.computeIfAbsent(bookName, _ -> new BookProgress());
+        if (reporter != null) return;
+        REPORTER_LOCK.lock();
+        try {
+            if (reporter == null) {
+                var executor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("progress-log").daemon().factory());
+                executor.scheduleAtFixedRate(ProgressLog::report, INTERVAL.toMillis(), INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                reporter = executor;
+            }
+        } finally {
+            REPORTER_LOCK.unlock();
+        }
+    }
+
+    // 结束统计一本书，输出总计
+    public static void close(String bookName) {
+        var progress = BOOKS.remove(bookName);
+        if (progress != null) log.info("{} - [{}] 总计 => {}", NAME, bookName, progress.summary());
+    }
+
+    /*
+     * 记录一次阶段完成：未开启统计的书籍忽略
+     */
+    public static void record(String bookName, String stage, int chapterOrdid, long startNanos, Throwable throwable) {
+        if (bookName == null) return;
+        var progress = BOOKS.get(bookName);
+        if (progress == null) return;
+        progress.stage(stage).record(System.nanoTime() - startNanos, throwable != null);
+        if (throwable != null) {
+            var cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            if (!firstReport(cause)) return;
+            log.error("{} - [{}] {} 失败 chapterOrdid => {} : {}", NAME, bookName, stage, chapterOrdid, cause.toString());
+        }
+    }
+
+    // 首次报告该异常时返回 true
+    private static boolean firstReport(Throwable cause) {
+        REPORTED_LOCK.lock();
+        try {
+            return REPORTED.put(cause, Boolean.TRUE) == null;
+        } finally {
+            REPORTED_LOCK.unlock();
+        }
+    }
+
+    // 周期汇总：仅输出本周期内有进展的书籍
+    private static void report() {
+        BOOKS.forEach((bookName, progress) -> {
+            var rollup = progress.rollup();
+            if (rollup != null) log.info("{} - [{}] {}", NAME, bookName, rollup);
+        });
+    }
+
+    /**
+     * 一本书的阶段统计，阶段按首次出现的顺序输出
+     */
+    private static class BookProgress {
+        private final Map<String, StageProgress> stages = new ConcurrentHashMap<>();
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        StageProgress stage(String stage) {
+            var progress = stages.get(stage);
+            return progress != null ? progress : stages.computeIfAbsent(stage, name -> new StageProgress(name, sequence.getAndIncrement()));
+        }
+
+        // 本周期汇总，无进展时返回 null
+        String rollup() {
+            var active = stages.values().stream().mapToLong(StageProgress::intervalCount).sum() > 0;
+            if (!active) return null;
+            return stages.values().stream()
+                    .sorted(Comparator.comparingInt(StageProgress::order))
+                    .map(StageProgress::rollup)
+                    .collect(Collectors.joining(" | "));
+        }
+
+        String summary() {
+            return stages.values().stream()
+                    .sorted(Comparator.comparingInt(StageProgress::order))
+                    .map(StageProgress::summary)
+                    .collect(Collectors.joining(" | "));
+        }
+    }
+
+    /**
+     * 单个阶段的累加器：累计值只增不减，周期值于每次汇总时读取并清零
+     */
+    private static class StageProgress {
+        private final String stage;
+        private final int order;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder intervalCount = new LongAdder();
+        private final LongAdder intervalNanos = new LongAdder();
+        private final LongAccumulator intervalMaxNanos = new LongAccumulator(Math::max, 0);
+
+        StageProgress(String stage, int order) {
+            this.stage = stage;
+            this.order = order;
+        }
+
+        int order() {
+            return order;
+        }
+
+        long intervalCount() {
+            return intervalCount.sum();
+        }
+
+        void record(long elapsedNanos, boolean failure) {
+            count.increment();
+            nanos.add(elapsedNanos);
+            intervalCount.increment();
+            intervalNanos.add(elapsedNanos);
+            intervalMaxNanos.accumulate(elapsedNanos);
+            if (failure) failed.increment();
+        }
+
+        // e.g. Reader 120 (+20, 均 350 ms, 峰 1200 ms, 失败 1)
+        String rollup() {
+            var n = intervalCount.sumThenReset();
+            var total = intervalNanos.sumThenReset();
+            var max = intervalMaxNanos.getThenReset();
+            var failures = failed.sum();
+            var detail = n == 0 ? "+0" : "+%d, 均 %d ms, 峰 %d ms".formatted(n, total / n / 1_000_000, max / 1_000_000);
+            return "%s %d (%s%s)".formatted(stage, count.sum(), detail, failures == 0 ? "" : ", 失败 " + failures);
+        }
+
+        // e.g. Reader 1200 (均 350 ms, 失败 1)
+        String summary() {
+            var n = count.sum();
+            var failures = failed.sum();
+            return "%s %d (均 %d ms%s)".formatted(stage, n, n == 0 ? 0 : nanos.sum() / n / 1_000_000, failures == 0 ? "" : ", 失败 " + failures);
+        }
+    }
+}
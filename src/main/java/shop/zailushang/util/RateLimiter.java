@@ -1,27 +1,267 @@
 package shop.zailushang.util;
 
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
+/**
+ * 流控：每个 host 一个令牌桶（速率 + 突发）与一个并发上限，二者相互独立
+ * 1. 令牌决定请求的发出节奏，等待令牌时不占用并发许可
+ * 2. 并发许可仅在请求执行期间持有
+ * 3. 速率按 AIMD 自适应：成功且延迟正常时线性增加（不超过上限），429 / 503 或延迟过高时乘性减少，并遵从 Retry-After
+ * 4. 预约令牌前按书经公平队列排队（见 FairQueue），多本书同时下载时按权重轮流领取令牌
+ */
+@Slf4j
 public class RateLimiter {
     // 用于控制下载章节内容时的休眠时间 : 别改！别改！别改！后果自负！！！
     public static final long DELAY = 2L;
     // 在下载章节内容时，最大允许并发数
     public static final Integer MAX_ALLOWED = 3;
-    // 信号量
-    public static final Semaphore SEMAPHORE = new Semaphore(MAX_ALLOWED);
+    // 速率上限（次/秒）：默认与旧实现的有效吞吐一致（MAX_ALLOWED 个许可，每个许可 DELAY 秒一次），可通过 -Dshuqi.rate.max 调整
+    public static final double MAX_RATE = Double.parseDouble(System.getProperty("shuqi.rate.max", String.valueOf((double) MAX_ALLOWED / DELAY)));
+    // 速率下限（次/秒）
+    public static final double MIN_RATE = 0.1;
+    // 令牌桶容量（允许的突发请求数）
+    public static final Integer BURST = MAX_ALLOWED;
+    // 加性增：每次正常响应增加的速率（次/秒）
+    public static final double ADDITIVE_STEP = 0.05;
+    // 乘性减：被限流时的速率系数
+    public static final double THROTTLED_FACTOR = 0.5;
+    // 乘性减：响应过慢时的速率系数
+    public static final double SLOW_FACTOR = 0.8;
+    // 响应过慢的阈值
+    public static final Duration SLOW_LATENCY = Duration.ofSeconds(5);
+    // 两次乘性减之间的最小间隔，避免并发的失败响应将速率连续减半
+    public static final Duration DECREASE_COOLDOWN = Duration.ofSeconds(1);
+    // 被限流时的最大重试次数
+    public static final Integer MAX_RETRIES = 3;
+    // 組件名稱
+    private static final String NAME = "「令旗」";
+    // host → 流控器
+    private static final Map<String, HostLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private RateLimiter() {
+    }
+
+    // 获取 host 对应的流控器
+    public static HostLimiter of(String host) {
+        return LIMITERS.computeIfAbsent(host, HostLimiter::new);
+    }
+
+    // 从请求地址中提取 host
+    public static String hostOf(String uri) {
+        return URI.create(uri).getHost();
+    }
+
+    /*
+     * 反馈响应结果：调整速率，被限流时抛出 ThrottledException
+     */
+    public static void feedback(String uri, int statusCode, HttpHeaders headers, long latencyNanos) {
+        of(hostOf(uri)).feedback(statusCode, headers, latencyNanos);
+    }
+
+    /**
+     * 被服务端限流（429 / 503）
+     */
+    public static class ThrottledException extends RuntimeException {
+        public ThrottledException(String host, int statusCode) {
+            super("throttled by " + host + " with status " + statusCode);
+        }
+    }
+
+    /**
+     * 流控统计
+     *
+     * @param host      主机
+     * @param rate      当前速率（次/秒）
+     * @param acquired  累计放行数
+     * @param waitNanos 累计等待令牌时间（纳秒）
+     * @param throttled 累计被限流次数
+     * @param retried   累计重试次数
+     */
+    public record Stats(String host, Double rate, Long acquired, Long waitNanos, Long throttled, Long retried) {
+    }
+
+    public static class HostLimiter {
+        private final String host;
+        private final Semaphore permits = new Semaphore(MAX_ALLOWED, true);
+        // 按书轮流预约令牌
+        private final FairQueue fairQueue = new FairQueue();
+        private final ReentrantLock lock = new ReentrantLock();
+        // 当前速率（次/秒）
+        private double rate = MAX_RATE;
+        // 桶内令牌数，预约后可为负数
+        private double tokens = BURST;
+        private long refilledAt = System.nanoTime();
+        // Retry-After 指定的暂停截止时间
+        private long pausedUntil = refilledAt;
+        private long decreasedAt = refilledAt - DECREASE_COOLDOWN.toNanos();
+
+        private final LongAdder acquired = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder throttled = new LongAdder();
+        private final LongAdder retried = new LongAdder();
+
+        private HostLimiter(String host) {
+            this.host = host;
+        }
+
+        // 补充令牌（持有锁时调用）
+        private void refill(long now) {
+            tokens = Math.min(BURST, tokens + (now - refilledAt) * rate / 1_000_000_000);
+            refilledAt = now;
+        }
 
-    // 获取信号量
-    public static <T> T acquire(T t) {
-        try {
-            SEMAPHORE.acquire();
-            return t;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        /*
+         * 预约一个令牌，返回需等待的时间（纳秒）
+         */
+        private long reserve() {
+            lock.lock();
+            try {
+                var now = System.nanoTime();
+                refill(now);
+                var wait = tokens >= 1 ? 0 : (long) ((1 - tokens) / rate * 1_000_000_000);
+                tokens -= 1;
+                return Math.max(0, pausedUntil - now) + wait;
+            } finally {
+                lock.unlock();
+            }
         }
+
+        /*
+         * 按书公平排队，等待令牌，再获取并发许可
+         */
+        public <T> T acquire(T t) {
+            var event = new FlightEvents.RateLimitWaitEvent();
+            event.begin();
+            try {
+                var wait = 0L;
+                // 同一时刻仅一个请求预约并等待令牌，令牌按轮询顺序发放
+                fairQueue.acquire(ScopedExecutor.ScopedExecutors.KEY.isBound() ? ScopedExecutor.ScopedExecutors.KEY.get() : "");
+                try {
+                    wait = reserve();
+                    if (wait > 0) Thread.sleep(Duration.ofNanos(wait));
+                } finally {
+                    fairQueue.release();
+                }
+                waitNanos.add(wait);
+                permits.acquire();
+                acquired.increment();
+                event.end();
+                if (event.shouldCommit()) {
+                    event.host = host;
+                    event.tokenWait = wait;
+                    event.rate = rate();
+                    event.commit();
+                }
+                return t;
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        // 释放并发许可，仅在 acquire 成功返回后调用
+        public void release() {
+            permits.release();
+        }
+
+        // 被限流时是否重试
+        public boolean shouldRetry(Throwable e, int attempt) {
+            var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (!(cause instanceof ThrottledException) || attempt >= MAX_RETRIES) return false;
+            retried.increment();
+            return true;
+        }
+
+        // 根据响应调整速率
+        void feedback(int statusCode, HttpHeaders headers, long latencyNanos) {
+            if (statusCode == 429 || statusCode == 503) {
+                throttled.increment();
+                var retryAfter = headers.firstValue("Retry-After").map(HostLimiter::parseRetryAfter).orElse(Duration.ofSeconds(DELAY));
+                lock.lock();
+                try {
+                    var now = System.nanoTime();
+                    pausedUntil = Math.max(pausedUntil, now + retryAfter.toNanos());
+                    // 暂停结束后重新积攒令牌，避免积压的请求同时发出
+                    refill(now);
+                    tokens = Math.min(tokens, 0);
+                    decrease(now, THROTTLED_FACTOR);
+                } finally {
+                    lock.unlock();
+                }
+                log.warn("{} - 被限流 [{}] status => {}, 暂停 => {}, 速率 => {} 次/秒", NAME, host, statusCode, retryAfter, rate());
+                throw new ThrottledException(host, statusCode);
+            }
+            lock.lock();
+            try {
+                if (latencyNanos > SLOW_LATENCY.toNanos()) decrease(System.nanoTime(), SLOW_FACTOR);
+                else if (statusCode < 400) rate = Math.min(MAX_RATE, rate + ADDITIVE_STEP);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // 乘性减（持有锁时调用）
+        private void decrease(long now, double factor) {
+            if (now - decreasedAt < DECREASE_COOLDOWN.toNanos()) return;
+            refill(now);
+            rate = Math.max(MIN_RATE, rate * factor);
+            decreasedAt = now;
+        }
+
+        // Retry-After：秒数或 HTTP 日期
+        private static Duration parseRetryAfter(String value) {
+            try {
+                return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+            } catch (NumberFormatException _) {
+                try {
+                    var until = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    var duration = Duration.between(ZonedDateTime.now(until.getZone()), until);
+                    return duration.isNegative() ? Duration.ZERO : duration;
+                } catch (Exception _) {
+                    return Duration.ofSeconds(DELAY);
+                }
+            }
+        }
+
+        public double rate() {
+            lock.lock();
+            try {
+                return rate;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public Stats stats() {
+            return new Stats(host, rate(), acquired.sum(), waitNanos.sum(), throttled.sum(), retried.sum());
+        }
+
+        // 各书在该 host 上的排队深度与排队时间
+        public List<FairQueue.Stats> fairStats() {
+            return fairQueue.stats();
+        }
+    }
+
+    // 所有 host 的统计快照
+    public static List<Stats> stats() {
+        return LIMITERS.values().stream().map(HostLimiter::stats).toList();
     }
 
-    // 释放信号量
-    public static <R, E extends Throwable> void release(R r, E e) {
-        SEMAPHORE.release();
+    // 所有 host 的公平队列统计：host → 各书统计
+    public static Map<String, List<FairQueue.Stats>> fairStats() {
+        return LIMITERS.values().stream().collect(Collectors.toMap(limiter -> limiter.host, HostLimiter::fairStats));
     }
 }
@@ -1,7 +1,9 @@
 package shop.zailushang.util;
 
 import java.lang.reflect.Proxy;
+import java.util.Objects;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 /**
@@ -23,6 +25,10 @@ public interface ScopedExecutor extends Executor {
         private static final ExecutorService DELEGATE = Executors.newVirtualThreadPerTaskExecutor();
         // 线程本地变量：传递当前下载的书籍名称
         public static final ScopedValue<String> KEY = ScopedValue.newInstance();
+        // 调度计数：提交至虚拟线程池的任务数
+        private static final LongAdder SCHEDULED = new LongAdder();
+        // 内联计数：在当前线程内联执行的任务数
+        private static final LongAdder INLINED = new LongAdder();
 
         public static ScopedExecutor newScopedExecutor() {
             // 在提交任务的线程中获取值
@@ -44,7 +50,34 @@ public interface ScopedExecutor extends Executor {
         // 装饰器 + 静态代理
         public static <T> ScopedExecutor newScopedExecutor(ScopedValue<T> key, T value) {
             // 在新创建的虚拟线程中重新绑定值
-            return r -> DELEGATE.execute(() -> ScopedValue.where(key, value).run(r));
+            return r -> {
+                SCHEDULED.increment();
+                DELEGATE.execute(() -> ScopedValue.where(key, value).run(r));
+            };
+        }
+
+        public static ScopedExecutor newInlineScopedExecutor() {
+            // 在提交任务的线程中获取值
+            return newInlineScopedExecutor(KEY, KEY.get());
+        }
+
+        // 内联执行器：不切换线程，直接在完成上一步骤的线程中执行，必要时重新绑定值
+        public static <T> ScopedExecutor newInlineScopedExecutor(ScopedValue<T> key, T value) {
+            return r -> {
+                INLINED.increment();
+                if (key.isBound() && Objects.equals(key.get(), value)) r.run();
+                else ScopedValue.where(key, value).run(r);
+            };
+        }
+
+        // 累计调度至虚拟线程池的任务数
+        public static long scheduledCount() {
+            return SCHEDULED.sum();
+        }
+
+        // 累计内联执行的任务数
+        public static long inlinedCount() {
+            return INLINED.sum();
         }
 
         // 动态代理 + 静态代理
@@ -0,0 +1,213 @@
+package shop.zailushang.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * 按字节计量的 W-TinyLFU 内存缓存：
+ * 1. 新条目先进入窗口区（LRU，占总容量 1%），吸收突发访问
+ * 2. 被窗口区淘汰的候选者与主区（SLRU：试用区 + 保护区）的淘汰者比较访问频率，频率更高者留下
+ * 3. 访问频率由 4 行 Count-Min Sketch 估算，计数达到采样上限后全体减半（老化）
+ */
+public class TinyLfuCache<K, V> {
+    // 窗口区占比
+    private static final double WINDOW_RATIO = 0.01;
+    // 保护区占主区比例
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final ToIntFunction<V> weigher;
+    private final FrequencySketch sketch;
+    private final ReentrantLock lock = new ReentrantLock();
+    // 三个分区均为访问顺序的 LinkedHashMap，迭代首项即最久未访问
+    private final LinkedHashMap<K, Node<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> protectedArea = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+    private final LongAdder evictions = new LongAdder();
+
+    private record Node<V>(V value, int weight) {
+    }
+
+    /**
+     * @param maximumWeight    总容量（字节）
+     * @param expectedEntries  预估条目数，决定频率统计的精度
+     * @param weigher          条目大小（字节）
+     */
+    public TinyLfuCache(long maximumWeight, int expectedEntries, ToIntFunction<V> weigher) {
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_RATIO));
+        this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_RATIO);
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    public Optional<V> get(K key) {
+        lock.lock();
+        try {
+            sketch.increment(key);
+            Node<V> node;
+            if ((node = window.get(key)) != null || (node = protectedArea.get(key)) != null) return Optional.of(node.value());
+            if ((node = probation.remove(key)) == null) return Optional.empty();
+            // 试用区再次命中：晋升至保护区，保护区溢出的条目降级回试用区
+            probationWeight -= node.weight();
+            protectedArea.put(key, node);
+            protectedWeight += node.weight();
+            while (protectedWeight > protectedMaximum) {
+                var eldest = pollEldest(protectedArea);
+                protectedWeight -= eldest.getValue().weight();
+                probation.put(eldest.getKey(), eldest.getValue());
+                probationWeight += eldest.getValue().weight();
+            }
+            return Optional.of(node.value());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        var weight = weigher.applyAsInt(value);
+        lock.lock();
+        try {
+            remove0(key);
+            // 超过主区容量的条目不缓存
+            if (weight > maximumWeight - windowMaximum) return;
+            sketch.increment(key);
+            window.put(key, new Node<>(value, weight));
+            windowWeight += weight;
+            while (windowWeight > windowMaximum && !window.isEmpty()) {
+                var candidate = pollEldest(window);
+                windowWeight -= candidate.getValue().weight();
+                admit(candidate.getKey(), candidate.getValue());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 窗口区淘汰的候选者尝试进入主区（持有锁时调用）
+    private void admit(K key, Node<V> candidate) {
+        var mainMaximum = maximumWeight - windowMaximum;
+        var candidateFrequency = sketch.frequency(key);
+        while (probationWeight + protectedWeight + candidate.weight() > mainMaximum) {
+            var victims = probation.isEmpty() ? protectedArea : probation;
+            var victim = victims.entrySet().iterator().next();
+            // 候选者频率不高于淘汰者时拒绝进入
+            if (candidateFrequency <= sketch.frequency(victim.getKey())) {
+                evictions.increment();
+                return;
+            }
+            victims.remove(victim.getKey());
+            if (victims == probation) probationWeight -= victim.getValue().weight();
+            else protectedWeight -= victim.getValue().weight();
+            evictions.increment();
+        }
+        probation.put(key, candidate);
+        probationWeight += candidate.weight();
+    }
+
+    private void remove0(K key) {
+        Node<V> node;
+        if ((node = window.remove(key)) != null) windowWeight -= node.weight();
+        else if ((node = probation.remove(key)) != null) probationWeight -= node.weight();
+        else if ((node = protectedArea.remove(key)) != null) protectedWeight -= node.weight();
+    }
+
+    private static <K, V> Map.Entry<K, V> pollEldest(LinkedHashMap<K, V> map) {
+        Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+        var eldest = iterator.next();
+        iterator.remove();
+        return Map.entry(eldest.getKey(), eldest.getValue());
+    }
+
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            remove0(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 当前占用（字节）
+    public long weightedSize() {
+        lock.lock();
+        try {
+            return windowWeight + probationWeight + protectedWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 当前条目数
+    public int size() {
+        lock.lock();
+        try {
+            return window.size() + probation.size() + protectedArea.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 累计淘汰数（含被拒绝进入主区的候选者）
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * 4 行 Count-Min Sketch，计数上限 15，采样达到上限后全体减半
+     */
+    private static class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = {0x97cb3127, 0xb1a8f3a5, 0x4f2a5e71, 0x6c3c1f9b};
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            var width = Integer.highestOneBit(Math.max(64, expectedEntries - 1) << 1);
+            this.table = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        private int index(Object key, int row) {
+            var hash = key.hashCode() * SEEDS[row];
+            return (hash ^ hash >>> 16) & mask;
+        }
+
+        void increment(Object key) {
+            var added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                var i = index(key, row);
+                if (table[row][i] < 15) {
+                    table[row][i]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) reset();
+        }
+
+        int frequency(Object key) {
+            var frequency = Integer.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) frequency = Math.min(frequency, table[row][index(key, row)]);
+            return frequency;
+        }
+
+        // 老化：全体减半
+        private void reset() {
+            for (var row : table) for (int i = 0; i < row.length; i++) row[i] >>= 1;
+            additions /= 2;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package shop.zailushang.util;
+
+import lombok.extern.slf4j.Slf4j;
+import shop.zailushang.flow.FlowEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 传输层：压缩协商 + 流式解压 + 超时 + 连接预热
+ * 响应体按到达的数据块逐块解压，不缓存压缩数据；同时统计线上字节数与解压后字节数
+ * 响应体以原始字节交给下游（站点统一为 UTF-8），由需要文本的步骤自行解码，JSON 直接由 Jackson 从字节解析
+ */
+@Slf4j
+public class Transport {
+    // 建立连接超时
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    // 单次请求超时（自发出请求至收到响应头）
+    public static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    // 支持的压缩格式
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+    // 章节内容所在的主机，章节并发下载前预热（-Dshuqi.content.origin 可指向本地替身服务，用于分布式模式的联调）
+    public static final URI CONTENT_ORIGIN = URI.create(System.getProperty("shuqi.content.origin", "https://c13.shuqireader.com/"));
+    // 搜索页、章节列表页所在的站点（-Dshuqi.site.origin 可指向本地替身服务，用于分布式模式的联调）
+    public static final URI SITE_ORIGIN = URI.create(System.getProperty("shuqi.site.origin", "https://www.shuqi.com/"));
+    // 組件名稱
+    private static final String NAME = "「缩地符」";
+    // 解压缓冲区大小
+    private static final int INFLATE_BUFFER_SIZE = 16 * 1024;
+    // 响应体缓冲的最大初始容量，避免按异常的 Content-Length 分配
+    private static final int MAX_INITIAL_CAPACITY = 8 * 1024 * 1024;
+
+    // 统计计数器
+    private static final LongAdder RESPONSES = new LongAdder();
+    private static final LongAdder COMPRESSED = new LongAdder();
+    private static final LongAdder WIRE_BYTES = new LongAdder();
+    private static final LongAdder DECODED_BYTES = new LongAdder();
+
+    private Transport() {
+    }
+
+    /**
+     * 传输统计
+     *
+     * @param responses    响应数
+     * @param compressed   其中压缩传输的响应数
+     * @param wireBytes    线上（响应体）字节数
+     * @param decodedBytes 解压后字节数
+     */
+    public record Stats(Long responses, Long compressed, Long wireBytes, Long decodedBytes) {
+        // 压缩率：线上字节数 / 解压后字节数
+        public double ratio() {
+            return decodedBytes == 0 ? 1 : (double) wireBytes / decodedBytes;
+        }
+    }
+
+    // 为请求设置压缩协商与超时
+    public static HttpRequest.Builder configure(HttpRequest.Builder builder) {
+        return builder.header("Accept-Encoding", ACCEPT_ENCODING)
+                .timeout(REQUEST_TIMEOUT);
+    }
+
+    // 按 Content-Encoding 流式解压，返回解压后的字节
+    public static HttpResponse.BodyHandler<byte[]> decoding() {
+        return responseInfo -> {
+            var headers = responseInfo.headers();
+            var encoding = headers.firstValue("Content-Encoding").orElse("identity").trim().toLowerCase();
+            var contentLength = headers.firstValueAsLong("Content-Length").orElse(-1L);
+            return new DecodingSubscriber(encoding, contentLength);
+        };
+    }
+
+    /*
+     * 预热：提前完成 DNS、TCP、TLS 与 HTTP/2 协商，随后的并发请求复用同一连接；失败不影响下载
+     */
+    public static void prewarm(URI origin) {
+        var request = HttpRequest.newBuilder(origin)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(CONNECT_TIMEOUT)
+                .build();
+        var start = System.nanoTime();
+        try {
+            var response = FlowEngine.HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.discarding());
+            log.info("{} - 预热连接 {} 协议 => {}, 耗时 => {} ms", NAME, origin, response.version(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.warn("{} - 预热连接失败 {} => {}", NAME, origin, e.toString());
+        }
+    }
+
+    // 获取统计快照
+    public static Stats stats() {
+        return new Stats(RESPONSES.sum(), COMPRESSED.sum(), WIRE_BYTES.sum(), DECODED_BYTES.sum());
+    }
+
+    /**
+     * 流式解压订阅者：gzip 头部逐字节解析，数据部分交由 Inflater，尾部校验 CRC32 与长度
+     */
+    private static class DecodingSubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final String encoding;
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private final BodyBuffer decoded;
+        private final byte[] buffer = new byte[INFLATE_BUFFER_SIZE];
+        private final CRC32 crc32 = new CRC32();
+        private Flow.Subscription subscription;
+        private Inflater inflater;
+        // gzip 头部与尾部的解析状态
+        private final GzipHeader gzipHeader = new GzipHeader();
+        private final ByteArrayOutputStream trailer = new ByteArrayOutputStream(8);
+        private long wireBytes;
+
+        DecodingSubscriber(String encoding, long contentLength) {
+            this.encoding = encoding;
+            // 未压缩且长度已知时按长度分配，完成时无需再复制；压缩时按经验放大
+            var expected = contentLength < 0 ? INFLATE_BUFFER_SIZE : "identity".equals(encoding) ? contentLength : contentLength * 4;
+            this.decoded = new BodyBuffer((int) Math.min(expected, MAX_INITIAL_CAPACITY));
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            try {
+                for (var item : items) {
+                    wireBytes += item.remaining();
+                    accept(item);
+                }
+            } catch (Exception e) {
+                subscription.cancel();
+                onError(e);
+            }
+        }
+
+        private void accept(ByteBuffer item) throws DataFormatException {
+            switch (encoding) {
+                case "gzip", "x-gzip" -> {
+                    // 跳过 gzip 头部
+                    while (!gzipHeader.complete() && item.hasRemaining()) gzipHeader.accept(item.get());
+                    if (!item.hasRemaining()) return;
+                    if (inflater == null) inflater = new Inflater(true);
+                    inflate(item);
+                }
+                case "deflate" -> {
+                    // 标准为 zlib 封装，部分服务端直接发送裸 deflate 数据，按首字节判断
+                    if (inflater == null) inflater = new Inflater(!isZlibHeader(item));
+                    inflate(item);
+                }
+                default -> decoded.write(item);
+            }
+        }
+
+        private void inflate(ByteBuffer item) throws DataFormatException {
+            if (inflater.finished()) {
+                // 解压已结束，剩余为 gzip 尾部
+                while (item.hasRemaining()) trailer.write(item.get());
+                return;
+            }
+            inflater.setInput(item);
+            while (!inflater.finished() && !inflater.needsInput()) {
+                var n = inflater.inflate(buffer);
+                crc32.update(buffer, 0, n);
+                decoded.write(buffer, 0, n);
+                if (n == 0 && inflater.needsDictionary()) throw new DataFormatException("preset dictionary is not supported");
+            }
+            // setInput(ByteBuffer) 会推进 item 的 position，解压结束后未消费的部分属于尾部
+            while (item.hasRemaining()) trailer.write(item.get());
+        }
+
+        private static boolean isZlibHeader(ByteBuffer item) {
+            if (item.remaining() < 2) return true;
+            var cmf = item.get(item.position()) & 0xFF;
+            var flg = item.get(item.position() + 1) & 0xFF;
+            return (cmf & 0x0F) == 8 && (cmf << 8 | flg) % 31 == 0;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (inflater != null) inflater.end();
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                if (inflater != null) {
+                    if (!inflater.finished()) throw new DataFormatException("truncated " + encoding + " body");
+                    if (encoding.endsWith("gzip")) verifyTrailer();
+                    inflater.end();
+                    COMPRESSED.increment();
+                }
+                RESPONSES.increment();
+                WIRE_BYTES.add(wireBytes);
+                DECODED_BYTES.add(decoded.size());
+                result.complete(decoded.toByteArray());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        // gzip 尾部：CRC32 + 原始长度（均为小端序）
+        private void verifyTrailer() throws DataFormatException {
+            var bytes = trailer.toByteArray();
+            if (bytes.length < 8) throw new DataFormatException("truncated gzip trailer");
+            var tail = ByteBuffer.wrap(bytes, 0, 8).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            if ((tail.getInt() & 0xFFFFFFFFL) != crc32.getValue() || (tail.getInt() & 0xFFFFFFFFL) != (decoded.size() & 0xFFFFFFFFL))
+                throw new DataFormatException("gzip trailer mismatch");
+        }
+    }
+
+    /**
+     * 响应体缓冲：可直接写入 ByteBuffer，容量恰好等于内容长度时直接交出内部数组
+     */
+    private static class BodyBuffer extends ByteArrayOutputStream {
+        BodyBuffer(int capacity) {
+            super(Math.max(capacity, 32));
+        }
+
+        void write(ByteBuffer item) {
+            var n = item.remaining();
+            if (count + n > buf.length) buf = Arrays.copyOf(buf, Math.max(count + n, buf.length << 1));
+            item.get(buf, count, n);
+            count += n;
+        }
+
+        // 仅由单个订阅者写入，无需监视器
+        @Override
+        public byte[] toByteArray() {
+            return count == buf.length ? buf : Arrays.copyOf(buf, count);
+        }
+    }
+
+    /**
+     * gzip 头部解析：固定 10 字节，随后按标志位依次为 FEXTRA、FNAME、FCOMMENT、FHCRC
+     */
+    private static class GzipHeader {
+        private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+        private int read;
+        private int flags;
+        // FEXTRA 数据剩余需跳过的字节数
+        private int skip;
+        // 0: 固定头部 1: FEXTRA 长度 2: FEXTRA 数据 3: FNAME 4: FCOMMENT 5: FHCRC 6: 完成
+        private int stage;
+        private int extraLength;
+
+        boolean complete() {
+            return stage == 6;
+        }
+
+        void accept(byte b) throws DataFormatException {
+            var value = b & 0xFF;
+            switch (stage) {
+                case 0 -> {
+                    if (read == 0 && value != 0x1F || read == 1 && value != 0x8B || read == 2 && value != 8)
+                        throw new DataFormatException("not in gzip format");
+                    if (read == 3) flags = value;
+                    if (++read == 10) next(1);
+                }
+                case 1 -> {
+                    extraLength |= value << (8 * read++);
+                    if (read == 2) {
+                        skip = extraLength;
+                        if (skip == 0) next(3);
+                        else stage = 2;
+                    }
+                }
+                case 2 -> {
+                    if (--skip == 0) next(3);
+                }
+                case 3, 4 -> {
+                    if (value == 0) next(stage + 1);
+                }
+                case 5 -> {
+                    if (++read == 2) stage = 6;
+                }
+                default -> {
+                }
+            }
+        }
+
+        // 进入下一个存在的字段
+        private void next(int from) {
+            read = 0;
+            stage = from;
+            if (stage == 1 && (flags & FEXTRA) == 0) stage = 3;
+            if (stage == 3 && (flags & FNAME) == 0) stage = 4;
+            if (stage == 4 && (flags & FCOMMENT) == 0) stage = 5;
+            if (stage == 5 && (flags & FHCRC) == 0) stage = 6;
+        }
+    }
+}